@@ -44,6 +44,11 @@ public final class SocksAuthResponse extends SocksResponse {
         return authStatus;
     }
 
+    @Override
+    public int encodedLength() {
+        return 2;
+    }
+
     @Override
     public void encodeAsBuffer(Buffer buffer) {
         buffer.writeByte(SUBNEGOTIATION_VERSION.byteValue());
@@ -106,6 +106,20 @@ public final class SocksCmdRequest extends SocksRequest {
         return port;
     }
 
+    @Override
+    public int encodedLength() {
+        switch (addressType) {
+            case IPv4:
+                return 4 + 4 + 2;
+            case DOMAIN:
+                return 4 + 1 + host.length() + 2;
+            case IPv6:
+                return 4 + 16 + 2;
+            default:
+                return 4;
+        }
+    }
+
     @Override
     public void encodeAsBuffer(Buffer buffer) {
         buffer.writeByte(protocolVersion().byteValue());
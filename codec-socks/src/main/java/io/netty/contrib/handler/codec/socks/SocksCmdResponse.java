@@ -137,6 +137,20 @@ public final class SocksCmdResponse extends SocksResponse {
         return port;
     }
 
+    @Override
+    public int encodedLength() {
+        switch (addressType) {
+            case IPv4:
+                return 4 + IPv4_HOSTNAME_ZEROED.length + 2;
+            case DOMAIN:
+                return 4 + 1 + (host != null ? host.length() : DOMAIN_ZEROED.length) + 2;
+            case IPv6:
+                return 4 + IPv6_HOSTNAME_ZEROED.length + 2;
+            default:
+                return 4;
+        }
+    }
+
     @Override
     public void encodeAsBuffer(Buffer buffer) {
         buffer.writeByte(protocolVersion().byteValue());
@@ -43,6 +43,11 @@ public final class SocksInitResponse extends SocksResponse {
         return authScheme;
     }
 
+    @Override
+    public int encodedLength() {
+        return 2;
+    }
+
     @Override
     public void encodeAsBuffer(Buffer buffer) {
         buffer.writeByte(protocolVersion().byteValue());
@@ -53,6 +53,16 @@ public abstract class SocksMessage {
         return protocolVersion;
     }
 
+    /**
+     * Returns the number of bytes this {@link SocksMessage} is encoded into, so that {@link SocksMessageEncoder} can
+     * allocate a {@link Buffer} of the exact size.
+     *
+     * @return the encoded length of this {@link SocksMessage}, or {@code -1} if it is unknown
+     */
+    public int encodedLength() {
+        return -1;
+    }
+
     /**
      * @deprecated Do not use; this method was intended for an internal use only.
      */
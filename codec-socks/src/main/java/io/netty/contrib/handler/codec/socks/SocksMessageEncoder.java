@@ -27,9 +27,12 @@ import io.netty5.handler.codec.MessageToByteEncoder;
  */
 public class SocksMessageEncoder extends MessageToByteEncoder<SocksMessage> {
 
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
     @Override
     protected Buffer allocateBuffer(ChannelHandlerContext ctx, SocksMessage msg) {
-        return ctx.bufferAllocator().allocate(256);
+        final int encodedLength = msg.encodedLength();
+        return ctx.bufferAllocator().allocate(encodedLength >= 0 ? encodedLength : DEFAULT_BUFFER_SIZE);
     }
 
     @Override
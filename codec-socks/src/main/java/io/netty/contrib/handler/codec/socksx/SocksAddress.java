@@ -0,0 +1,355 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.util.NetUtil;
+
+import java.net.IDN;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A binary representation of the address field of a SOCKS message.  An IPv4 address is kept as an {@code int}, an
+ * IPv6 address as two {@code long}s and a domain name as its ASCII bytes, so that an address can be decoded and
+ * encoded without being converted to a {@link String}.  The {@link String} representation is created lazily by
+ * {@link #toString()}.
+ */
+public final class SocksAddress {
+
+    private static final int IPv4_LEN = 4;
+    private static final int IPv6_LEN = 16;
+    private static final int MAX_DOMAIN_LEN = 255;
+
+    private enum Kind {
+        IPv4,
+        IPv6,
+        DOMAIN
+    }
+
+    /**
+     * Returns the IPv4 address whose network byte order representation is the specified {@code int}.
+     */
+    public static SocksAddress ipv4(int address) {
+        return new SocksAddress(Kind.IPv4, address, 0, 0, null, null);
+    }
+
+    /**
+     * Returns the IPv6 address whose network byte order representation is the concatenation of the specified
+     * {@code long}s.
+     */
+    public static SocksAddress ipv6(long high, long low) {
+        return new SocksAddress(Kind.IPv6, 0, high, low, null, null);
+    }
+
+    /**
+     * Returns the domain name address of the specified host name.  An internationalized domain name is converted
+     * into its ASCII form.
+     */
+    public static SocksAddress domain(String domain) {
+        requireNonNull(domain, "domain");
+        final String ascii = IDN.toASCII(domain);
+        if (ascii.length() > MAX_DOMAIN_LEN) {
+            throw new IllegalArgumentException("domain: " + ascii + " (expected: less than 256 chars)");
+        }
+        return new SocksAddress(Kind.DOMAIN, 0, 0, 0, ascii.getBytes(StandardCharsets.US_ASCII), ascii);
+    }
+
+    /**
+     * Reads a domain name address of the specified length from the specified {@link Buffer}.
+     *
+     * @param in the input buffer which contains the ASCII bytes of the domain name at its reader offset
+     * @param length the number of bytes to read
+     */
+    public static SocksAddress readDomain(Buffer in, int length) {
+        if (length < 0 || length > MAX_DOMAIN_LEN) {
+            throw new IllegalArgumentException("length: " + length + " (expected: 0~255)");
+        }
+        final byte[] domain = new byte[length];
+        in.readBytes(domain, 0, length);
+        return new SocksAddress(Kind.DOMAIN, 0, 0, 0, domain, null);
+    }
+
+    /**
+     * Returns the address of the specified {@link InetSocketAddress}.  The address is a domain name if the
+     * {@link InetSocketAddress} is unresolved; otherwise it is the IPv4 or IPv6 address it was resolved to.
+     */
+    public static SocksAddress of(InetSocketAddress address) {
+        requireNonNull(address, "address");
+        if (address.isUnresolved()) {
+            return domain(address.getHostString());
+        }
+        return of(address.getAddress());
+    }
+
+    /**
+     * Returns the address of the specified {@link InetAddress}.
+     */
+    public static SocksAddress of(InetAddress address) {
+        requireNonNull(address, "address");
+        if (address instanceof Inet4Address) {
+            // The hash code of an Inet4Address is the address in network byte order, which avoids copying it.
+            return ipv4(address.hashCode());
+        }
+        final byte[] bytes = address.getAddress();
+        if (bytes.length == IPv6_LEN) {
+            return ipv6(getLong(bytes, 0), getLong(bytes, 8));
+        }
+        throw new IllegalArgumentException("address: " + address + " (expected: an IPv4 or IPv6 address)");
+    }
+
+    /**
+     * Returns the address of the specified {@link String}, which is an IPv4 address, an IPv6 address or a domain
+     * name.  The specified {@link String} is retained as the {@link #toString()} of the returned address.
+     */
+    public static SocksAddress valueOf(String address) {
+        requireNonNull(address, "address");
+        if (NetUtil.isValidIpV4Address(address)) {
+            final byte[] bytes = NetUtil.createByteArrayFromIpAddressString(address);
+            return new SocksAddress(Kind.IPv4, getInt(bytes, 0), 0, 0, null, address);
+        }
+        if (NetUtil.isValidIpV6Address(address)) {
+            final byte[] bytes = NetUtil.createByteArrayFromIpAddressString(address);
+            return new SocksAddress(Kind.IPv6, 0, getLong(bytes, 0), getLong(bytes, 8), null, address);
+        }
+        return domain(address);
+    }
+
+    private final Kind kind;
+    private final int ipv4;
+    private final long ipv6High;
+    private final long ipv6Low;
+    private final byte[] domain;
+    private String text;
+
+    private SocksAddress(Kind kind, int ipv4, long ipv6High, long ipv6Low, byte[] domain, String text) {
+        this.kind = kind;
+        this.ipv4 = ipv4;
+        this.ipv6High = ipv6High;
+        this.ipv6Low = ipv6Low;
+        this.domain = domain;
+        this.text = text;
+    }
+
+    /**
+     * Returns {@code true} if and only if this address is an IPv4 address.
+     */
+    public boolean isIPv4() {
+        return kind == Kind.IPv4;
+    }
+
+    /**
+     * Returns {@code true} if and only if this address is an IPv6 address.
+     */
+    public boolean isIPv6() {
+        return kind == Kind.IPv6;
+    }
+
+    /**
+     * Returns {@code true} if and only if this address is a domain name.
+     */
+    public boolean isDomain() {
+        return kind == Kind.DOMAIN;
+    }
+
+    /**
+     * Returns the network byte order representation of this IPv4 address.
+     *
+     * @throws IllegalStateException if this address is not an IPv4 address
+     */
+    public int ipv4Address() {
+        checkKind(Kind.IPv4);
+        return ipv4;
+    }
+
+    /**
+     * Returns the first 8 bytes of the network byte order representation of this IPv6 address.
+     *
+     * @throws IllegalStateException if this address is not an IPv6 address
+     */
+    public long ipv6High() {
+        checkKind(Kind.IPv6);
+        return ipv6High;
+    }
+
+    /**
+     * Returns the last 8 bytes of the network byte order representation of this IPv6 address.
+     *
+     * @throws IllegalStateException if this address is not an IPv6 address
+     */
+    public long ipv6Low() {
+        checkKind(Kind.IPv6);
+        return ipv6Low;
+    }
+
+    /**
+     * Returns this IPv4 or IPv6 address as an {@link InetAddress}.  The {@link InetAddress} is created from the
+     * binary representation, so neither a {@link String} is parsed nor a name service is queried.
+     *
+     * @throws IllegalStateException if this address is a domain name
+     */
+    public InetAddress toInetAddress() {
+        final byte[] bytes;
+        switch (kind) {
+        case IPv4:
+            bytes = new byte[IPv4_LEN];
+            setInt(bytes, 0, ipv4);
+            break;
+        case IPv6:
+            bytes = new byte[IPv6_LEN];
+            setLong(bytes, 0, ipv6High);
+            setLong(bytes, 8, ipv6Low);
+            break;
+        default:
+            throw new IllegalStateException("not an IP address: " + this);
+        }
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            // Never happens, as the length of the address is valid.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #writeTo(Buffer)}.
+     */
+    public int length() {
+        switch (kind) {
+        case IPv4:
+            return IPv4_LEN;
+        case IPv6:
+            return IPv6_LEN;
+        default:
+            return domain.length;
+        }
+    }
+
+    /**
+     * Writes the binary representation of this address into the specified {@link Buffer}: 4 bytes for an IPv4
+     * address, 16 bytes for an IPv6 address, or the ASCII bytes of a domain name without any length prefix or
+     * terminator.
+     */
+    public void writeTo(Buffer out) {
+        switch (kind) {
+        case IPv4:
+            out.writeInt(ipv4);
+            break;
+        case IPv6:
+            out.writeLong(ipv6High);
+            out.writeLong(ipv6Low);
+            break;
+        default:
+            out.writeBytes(domain);
+            break;
+        }
+    }
+
+    private void checkKind(Kind expected) {
+        if (kind != expected) {
+            throw new IllegalStateException("not an " + expected + " address: " + this);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        switch (kind) {
+        case IPv4:
+            return ipv4;
+        case IPv6:
+            return Long.hashCode(ipv6High) * 31 + Long.hashCode(ipv6Low);
+        default:
+            return Arrays.hashCode(domain);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SocksAddress)) {
+            return false;
+        }
+
+        SocksAddress that = (SocksAddress) obj;
+        if (kind != that.kind) {
+            return false;
+        }
+        switch (kind) {
+        case IPv4:
+            return ipv4 == that.ipv4;
+        case IPv6:
+            return ipv6High == that.ipv6High && ipv6Low == that.ipv6Low;
+        default:
+            return Arrays.equals(domain, that.domain);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String text = this.text;
+        if (text == null) {
+            switch (kind) {
+            case IPv4:
+                text = NetUtil.intToIpAddress(ipv4);
+                break;
+            case IPv6:
+                byte[] bytes = new byte[IPv6_LEN];
+                setLong(bytes, 0, ipv6High);
+                setLong(bytes, 8, ipv6Low);
+                text = NetUtil.bytesToIpAddress(bytes);
+                break;
+            default:
+                text = new String(domain, StandardCharsets.US_ASCII);
+                break;
+            }
+            this.text = text;
+        }
+        return text;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 |
+               (bytes[offset + 1] & 0xFF) << 16 |
+               (bytes[offset + 2] & 0xFF) << 8 |
+               bytes[offset + 3] & 0xFF;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        return (getInt(bytes, offset) & 0xFFFFFFFFL) << 32 | getInt(bytes, offset + 4) & 0xFFFFFFFFL;
+    }
+
+    private static void setInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void setLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
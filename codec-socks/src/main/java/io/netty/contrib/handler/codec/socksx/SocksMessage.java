@@ -26,4 +26,14 @@ public interface SocksMessage extends DecoderResultProvider {
      * Returns the protocol version of this message.
      */
     SocksVersion version();
+
+    /**
+     * Returns the number of bytes this message is encoded into, so that an encoder can allocate a buffer of the
+     * exact size.
+     *
+     * @return the encoded length of this message, or {@code -1} if it is unknown
+     */
+    default int encodedLength() {
+        return -1;
+    }
 }
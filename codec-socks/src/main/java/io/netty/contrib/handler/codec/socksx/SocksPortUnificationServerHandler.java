@@ -23,6 +23,7 @@ import io.netty.contrib.handler.codec.socksx.v4.Socks4ServerEncoder;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5AddressEncoder;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialRequestDecoder;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5ServerEncoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5ServerHandshakeDecoder;
 import io.netty5.handler.codec.ByteToMessageDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +32,8 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Detects the version of the current SOCKS connection and initializes the pipeline with
- * {@link Socks4ServerDecoder} or {@link Socks5InitialRequestDecoder}.
+ * {@link Socks4ServerDecoder} or {@link Socks5InitialRequestDecoder}. If configured to, a
+ * {@link Socks5ServerHandshakeDecoder} is used for SOCKS5 instead of {@link Socks5InitialRequestDecoder}.
  */
 public class SocksPortUnificationServerHandler extends ByteToMessageDecoder {
 
@@ -39,6 +41,7 @@ public class SocksPortUnificationServerHandler extends ByteToMessageDecoder {
             LoggerFactory.getLogger(SocksPortUnificationServerHandler.class);
 
     private final Socks5ServerEncoder socks5encoder;
+    private final boolean socks5HandshakeDecoder;
 
     /**
      * Creates a new instance with the default configuration.
@@ -52,9 +55,22 @@ public class SocksPortUnificationServerHandler extends ByteToMessageDecoder {
      * This constructor is useful when a user wants to use an alternative {@link Socks5AddressEncoder}.
      */
     public SocksPortUnificationServerHandler(Socks5ServerEncoder socks5encoder) {
+        this(socks5encoder, false);
+    }
+
+    /**
+     * Creates a new instance with the specified {@link Socks5ServerEncoder}.
+     *
+     * @param socks5encoder the encoder of the SOCKS5 server-side messages
+     * @param socks5HandshakeDecoder {@code true} if a single {@link Socks5ServerHandshakeDecoder} should decode the
+     *                               whole SOCKS5 handshake, so that no decoder has to be added or replaced while the
+     *                               handshake is in progress
+     */
+    public SocksPortUnificationServerHandler(Socks5ServerEncoder socks5encoder, boolean socks5HandshakeDecoder) {
         requireNonNull(socks5encoder, "socks5encoder");
 
         this.socks5encoder = socks5encoder;
+        this.socks5HandshakeDecoder = socks5HandshakeDecoder;
     }
 
     @Override
@@ -76,8 +92,14 @@ public class SocksPortUnificationServerHandler extends ByteToMessageDecoder {
             break;
         case SOCKS5:
             logKnownVersion(ctx, version);
-            p.addAfter(ctx.name(), null, socks5encoder);
-            p.addAfter(ctx.name(), null, new Socks5InitialRequestDecoder());
+            if (socks5HandshakeDecoder) {
+                // Socks5ServerHandshakeDecoder watches the responses, so it goes between the handler and the encoder.
+                p.addAfter(ctx.name(), null, new Socks5ServerHandshakeDecoder());
+                p.addAfter(ctx.name(), null, socks5encoder);
+            } else {
+                p.addAfter(ctx.name(), null, socks5encoder);
+                p.addAfter(ctx.name(), null, new Socks5InitialRequestDecoder());
+            }
             break;
         default:
             logUnknownVersion(ctx, versionVal);
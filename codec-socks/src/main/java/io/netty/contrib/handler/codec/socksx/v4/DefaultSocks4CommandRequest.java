@@ -15,11 +15,10 @@
  */
 package io.netty.contrib.handler.codec.socksx.v4;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import io.netty5.handler.codec.DecoderResult;
 import io.netty5.util.internal.StringUtil;
 
-import java.net.IDN;
-
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -28,7 +27,7 @@ import static java.util.Objects.requireNonNull;
 public class DefaultSocks4CommandRequest extends AbstractSocks4Message implements Socks4CommandRequest {
 
     private final Socks4CommandType type;
-    private final String dstAddr;
+    private final SocksAddress dstAddress;
     private final int dstPort;
     private final String userId;
 
@@ -52,8 +51,20 @@ public class DefaultSocks4CommandRequest extends AbstractSocks4Message implement
      * @param userId the {@code USERID} field of the request
      */
     public DefaultSocks4CommandRequest(Socks4CommandType type, String dstAddr, int dstPort, String userId) {
+        this(type, SocksAddress.valueOf(requireNonNull(dstAddr, "dstAddr")), dstPort, userId);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param type the type of the request
+     * @param dstAddress the {@code DSTIP} field of the request, or the domain name of a SOCKS4a request
+     * @param dstPort the {@code DSTPORT} field of the request
+     * @param userId the {@code USERID} field of the request
+     */
+    public DefaultSocks4CommandRequest(Socks4CommandType type, SocksAddress dstAddress, int dstPort, String userId) {
         requireNonNull(type, "type");
-        requireNonNull(dstAddr, "dstAddr");
+        requireNonNull(dstAddress, "dstAddress");
         if (dstPort <= 0 || dstPort >= 65536) {
             throw new IllegalArgumentException("dstPort: " + dstPort + " (expected: 1~65535)");
         }
@@ -61,7 +72,7 @@ public class DefaultSocks4CommandRequest extends AbstractSocks4Message implement
 
         this.userId = userId;
         this.type = type;
-        this.dstAddr = IDN.toASCII(dstAddr);
+        this.dstAddress = dstAddress;
         this.dstPort = dstPort;
     }
 
@@ -72,7 +83,12 @@ public class DefaultSocks4CommandRequest extends AbstractSocks4Message implement
 
     @Override
     public String dstAddr() {
-        return dstAddr;
+        return dstAddress.toString();
+    }
+
+    @Override
+    public SocksAddress dstAddress() {
+        return dstAddress;
     }
 
     @Override
@@ -15,11 +15,11 @@
  */
 package io.netty.contrib.handler.codec.socksx.v4;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import io.netty5.buffer.Buffer;
 import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.handler.codec.MessageToByteEncoder;
 import java.nio.charset.StandardCharsets;
-import io.netty5.util.NetUtil;
 
 /**
  * Encodes a {@link Socks4CommandRequest} into a {@link Buffer}.
@@ -37,7 +37,7 @@ public final class Socks4ClientEncoder extends MessageToByteEncoder<Socks4Comman
 
     @Override
     protected Buffer allocateBuffer(ChannelHandlerContext ctx, Socks4CommandRequest msg) {
-        return ctx.bufferAllocator().allocate(256);
+        return ctx.bufferAllocator().allocate(msg.encodedLength());
     }
 
     @Override
@@ -45,15 +45,20 @@ public final class Socks4ClientEncoder extends MessageToByteEncoder<Socks4Comman
         out.writeByte(msg.version().byteValue());
         out.writeByte(msg.type().byteValue());
         out.writeShort((short) msg.dstPort());
-        if (NetUtil.isValidIpV4Address(msg.dstAddr())) {
-            out.writeBytes(NetUtil.createByteArrayFromIpAddressString(msg.dstAddr()));
+        final SocksAddress dstAddress = msg.dstAddress();
+        if (dstAddress.isIPv4()) {
+            dstAddress.writeTo(out);
             out.writeCharSequence(msg.userId(), StandardCharsets.US_ASCII);
             out.writeByte((byte) 0);
         } else {
             out.writeBytes(IPv4_DOMAIN_MARKER);
             out.writeCharSequence(msg.userId(), StandardCharsets.US_ASCII);
             out.writeByte((byte) 0);
-            out.writeCharSequence(msg.dstAddr(), StandardCharsets.US_ASCII);
+            if (dstAddress.isDomain()) {
+                dstAddress.writeTo(out);
+            } else {
+                out.writeCharSequence(dstAddress.toString(), StandardCharsets.US_ASCII);
+            }
             out.writeByte((byte) 0);
         }
     }
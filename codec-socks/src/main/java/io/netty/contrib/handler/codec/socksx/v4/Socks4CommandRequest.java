@@ -15,6 +15,8 @@
  */
 package io.netty.contrib.handler.codec.socksx.v4;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+
 /**
  * A SOCKS4a {@code CONNECT} or {@code BIND} request.
  */
@@ -35,8 +37,27 @@ public interface Socks4CommandRequest extends Socks4Message {
      */
     String dstAddr();
 
+    /**
+     * Returns the binary representation of the {@code DSTIP} field of this request, or of the domain name if this
+     * is a SOCKS4a request.
+     */
+    default SocksAddress dstAddress() {
+        return SocksAddress.valueOf(dstAddr());
+    }
+
     /**
      * Returns the {@code DSTPORT} field of this request.
      */
     int dstPort();
+
+    @Override
+    default int encodedLength() {
+        final SocksAddress dstAddress = dstAddress();
+        final int length = 8 + userId().length() + 1;
+        if (dstAddress.isIPv4()) {
+            return length;
+        }
+        // SOCKS4a: the domain name follows the user ID.
+        return length + (dstAddress.isDomain()? dstAddress.length() : dstAddress.toString().length()) + 1;
+    }
 }
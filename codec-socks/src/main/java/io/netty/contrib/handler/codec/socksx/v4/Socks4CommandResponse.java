@@ -34,4 +34,9 @@ public interface Socks4CommandResponse extends Socks4Message {
      * Returns the {@code DSTPORT} field of this response.
      */
     int dstPort();
+
+    @Override
+    default int encodedLength() {
+        return 8;
+    }
 }
@@ -20,9 +20,9 @@ import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.handler.codec.ByteToMessageDecoder;
 import io.netty5.handler.codec.DecoderException;
 import io.netty5.handler.codec.DecoderResult;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import io.netty.contrib.handler.codec.socksx.SocksVersion;
 import java.nio.charset.StandardCharsets;
-import io.netty5.util.NetUtil;
 
 /**
  * Decodes a single {@link Socks4CommandRequest} from the inbound {@link Buffer}s.
@@ -44,7 +44,7 @@ public class Socks4ServerDecoder extends ByteToMessageDecoder {
 
     private State state = State.START;
     private Socks4CommandType type;
-    private String dstAddr;
+    private SocksAddress dstAddr;
     private int dstPort;
     private String userId;
 
@@ -67,7 +67,7 @@ public class Socks4ServerDecoder extends ByteToMessageDecoder {
 
                 type = Socks4CommandType.valueOf(in.readByte());
                 dstPort = in.readUnsignedShort();
-                dstAddr = NetUtil.intToIpAddress(in.readInt());
+                dstAddr = SocksAddress.ipv4(in.readInt());
                 state = State.READ_USERID;
             }
             case READ_USERID: {
@@ -80,8 +80,9 @@ public class Socks4ServerDecoder extends ByteToMessageDecoder {
             }
             case READ_DOMAIN: {
                 // Check for Socks4a protocol marker 0.0.0.x
-                if (!"0.0.0.0".equals(dstAddr) && dstAddr.startsWith("0.0.0.")) {
-                    String addr = readString("dstAddr", in);
+                final int dstIp = dstAddr.ipv4Address();
+                if (dstIp != 0 && (dstIp & 0xFFFFFF00) == 0) {
+                    SocksAddress addr = readDomain(in);
                     if (addr == null) {
                         return;
                     }
@@ -114,7 +115,7 @@ public class Socks4ServerDecoder extends ByteToMessageDecoder {
 
         Socks4CommandRequest m = new DefaultSocks4CommandRequest(
                 type != null? type : Socks4CommandType.CONNECT,
-                dstAddr != null? dstAddr : "",
+                dstAddr != null? dstAddr : SocksAddress.valueOf(""),
                 dstPort != 0? dstPort : 65535,
                 userId != null? userId : "");
 
@@ -143,4 +144,25 @@ public class Socks4ServerDecoder extends ByteToMessageDecoder {
         }
         return null;
     }
+
+    /**
+     * Reads a variable-length NUL-terminated domain name of a SOCKS4a request without converting it into a
+     * {@link String}.
+     */
+    private static SocksAddress readDomain(Buffer in) {
+        int length = in.bytesBefore((byte) 0);
+        if (length >= 0 && length < MAX_FIELD_LENGTH) {
+            if (in.readableBytes() < length + 1) {
+                return null;
+            }
+            SocksAddress value = SocksAddress.readDomain(in, length);
+            in.skipReadableBytes(1); // Skip the NUL.
+
+            return value;
+        }
+        if (in.readableBytes() > MAX_FIELD_LENGTH + 1) {
+            throw new DecoderException("field 'dstAddr' longer than " + MAX_FIELD_LENGTH + " chars");
+        }
+        return null;
+    }
 }
@@ -15,12 +15,11 @@
  */
 package io.netty.contrib.handler.codec.socksx.v5;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import io.netty5.handler.codec.DecoderResult;
 import io.netty5.util.NetUtil;
 import io.netty5.util.internal.StringUtil;
 
-import java.net.IDN;
-
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -30,27 +29,34 @@ public final class DefaultSocks5CommandRequest extends AbstractSocks5Message imp
 
     private final Socks5CommandType type;
     private final Socks5AddressType dstAddrType;
-    private final String dstAddr;
+    private final SocksAddress dstAddress;
     private final int dstPort;
 
     public DefaultSocks5CommandRequest(
             Socks5CommandType type, Socks5AddressType dstAddrType, String dstAddr, int dstPort) {
+        this(type, dstAddrType, toSocksAddress(dstAddrType, dstAddr), dstPort);
+    }
+
+    /**
+     * Creates a new instance whose {@code ATYP} field is derived from the specified {@link SocksAddress}.
+     */
+    public DefaultSocks5CommandRequest(Socks5CommandType type, SocksAddress dstAddress, int dstPort) {
+        this(type, Socks5AddressType.valueOf(dstAddress), dstAddress, dstPort);
+    }
+
+    public DefaultSocks5CommandRequest(
+            Socks5CommandType type, Socks5AddressType dstAddrType, SocksAddress dstAddress, int dstPort) {
         requireNonNull(type, "type");
         requireNonNull(dstAddrType, "dstAddrType");
-        requireNonNull(dstAddr, "dstAddr");
+        requireNonNull(dstAddress, "dstAddress");
 
         if (dstAddrType == Socks5AddressType.IPv4) {
-            if (!NetUtil.isValidIpV4Address(dstAddr)) {
-                throw new IllegalArgumentException("dstAddr: " + dstAddr + " (expected: a valid IPv4 address)");
-            }
-        } else if (dstAddrType == Socks5AddressType.DOMAIN) {
-            dstAddr = IDN.toASCII(dstAddr);
-            if (dstAddr.length() > 255) {
-                throw new IllegalArgumentException("dstAddr: " + dstAddr + " (expected: less than 256 chars)");
+            if (!dstAddress.isIPv4()) {
+                throw new IllegalArgumentException("dstAddr: " + dstAddress + " (expected: a valid IPv4 address)");
             }
         } else if (dstAddrType == Socks5AddressType.IPv6) {
-            if (!NetUtil.isValidIpV6Address(dstAddr)) {
-                throw new IllegalArgumentException("dstAddr: " + dstAddr + " (expected: a valid IPv6 address");
+            if (!dstAddress.isIPv6()) {
+                throw new IllegalArgumentException("dstAddr: " + dstAddress + " (expected: a valid IPv6 address");
             }
         }
 
@@ -60,10 +66,28 @@ public final class DefaultSocks5CommandRequest extends AbstractSocks5Message imp
 
         this.type = type;
         this.dstAddrType = dstAddrType;
-        this.dstAddr = dstAddr;
+        this.dstAddress = dstAddress;
         this.dstPort = dstPort;
     }
 
+    private static SocksAddress toSocksAddress(Socks5AddressType dstAddrType, String dstAddr) {
+        requireNonNull(dstAddrType, "dstAddrType");
+        requireNonNull(dstAddr, "dstAddr");
+
+        if (dstAddrType == Socks5AddressType.IPv4) {
+            if (!NetUtil.isValidIpV4Address(dstAddr)) {
+                throw new IllegalArgumentException("dstAddr: " + dstAddr + " (expected: a valid IPv4 address)");
+            }
+        } else if (dstAddrType == Socks5AddressType.DOMAIN) {
+            return SocksAddress.domain(dstAddr);
+        } else if (dstAddrType == Socks5AddressType.IPv6) {
+            if (!NetUtil.isValidIpV6Address(dstAddr)) {
+                throw new IllegalArgumentException("dstAddr: " + dstAddr + " (expected: a valid IPv6 address");
+            }
+        }
+        return SocksAddress.valueOf(dstAddr);
+    }
+
     @Override
     public Socks5CommandType type() {
         return type;
@@ -76,7 +100,12 @@ public final class DefaultSocks5CommandRequest extends AbstractSocks5Message imp
 
     @Override
     public String dstAddr() {
-        return dstAddr;
+        return dstAddress.toString();
+    }
+
+    @Override
+    public SocksAddress dstAddress() {
+        return dstAddress;
     }
 
     @Override
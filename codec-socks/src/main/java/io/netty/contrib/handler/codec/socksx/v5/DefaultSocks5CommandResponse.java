@@ -15,12 +15,11 @@
  */
 package io.netty.contrib.handler.codec.socksx.v5;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import io.netty5.handler.codec.DecoderResult;
 import io.netty5.util.NetUtil;
 import io.netty5.util.internal.StringUtil;
 
-import java.net.IDN;
-
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -30,30 +29,37 @@ public final class DefaultSocks5CommandResponse extends AbstractSocks5Message im
 
     private final Socks5CommandStatus status;
     private final Socks5AddressType bndAddrType;
-    private final String bndAddr;
+    private final SocksAddress bndAddress;
     private final int bndPort;
 
     public DefaultSocks5CommandResponse(Socks5CommandStatus status, Socks5AddressType bndAddrType) {
-        this(status, bndAddrType, null, 0);
+        this(status, bndAddrType, (SocksAddress) null, 0);
     }
 
     public DefaultSocks5CommandResponse(
             Socks5CommandStatus status, Socks5AddressType bndAddrType, String bndAddr, int bndPort) {
+        this(status, bndAddrType, toSocksAddress(bndAddrType, bndAddr), bndPort);
+    }
+
+    /**
+     * Creates a new instance whose {@code ATYP} field is derived from the specified {@link SocksAddress}.
+     */
+    public DefaultSocks5CommandResponse(Socks5CommandStatus status, SocksAddress bndAddress, int bndPort) {
+        this(status, Socks5AddressType.valueOf(bndAddress), bndAddress, bndPort);
+    }
+
+    public DefaultSocks5CommandResponse(
+            Socks5CommandStatus status, Socks5AddressType bndAddrType, SocksAddress bndAddress, int bndPort) {
         requireNonNull(status, "status");
         requireNonNull(bndAddrType, "bndAddrType");
-        if (bndAddr != null) {
+        if (bndAddress != null) {
             if (bndAddrType == Socks5AddressType.IPv4) {
-                if (!NetUtil.isValidIpV4Address(bndAddr)) {
-                    throw new IllegalArgumentException("bndAddr: " + bndAddr + " (expected: a valid IPv4 address)");
-                }
-            } else if (bndAddrType == Socks5AddressType.DOMAIN) {
-                bndAddr = IDN.toASCII(bndAddr);
-                if (bndAddr.length() > 255) {
-                    throw new IllegalArgumentException("bndAddr: " + bndAddr + " (expected: less than 256 chars)");
+                if (!bndAddress.isIPv4()) {
+                    throw new IllegalArgumentException("bndAddr: " + bndAddress + " (expected: a valid IPv4 address)");
                 }
             } else if (bndAddrType == Socks5AddressType.IPv6) {
-                if (!NetUtil.isValidIpV6Address(bndAddr)) {
-                    throw new IllegalArgumentException("bndAddr: " + bndAddr + " (expected: a valid IPv6 address)");
+                if (!bndAddress.isIPv6()) {
+                    throw new IllegalArgumentException("bndAddr: " + bndAddress + " (expected: a valid IPv6 address)");
                 }
             }
         }
@@ -63,10 +69,30 @@ public final class DefaultSocks5CommandResponse extends AbstractSocks5Message im
         }
         this.status = status;
         this.bndAddrType = bndAddrType;
-        this.bndAddr = bndAddr;
+        this.bndAddress = bndAddress;
         this.bndPort = bndPort;
     }
 
+    private static SocksAddress toSocksAddress(Socks5AddressType bndAddrType, String bndAddr) {
+        requireNonNull(bndAddrType, "bndAddrType");
+        if (bndAddr == null) {
+            return null;
+        }
+
+        if (bndAddrType == Socks5AddressType.IPv4) {
+            if (!NetUtil.isValidIpV4Address(bndAddr)) {
+                throw new IllegalArgumentException("bndAddr: " + bndAddr + " (expected: a valid IPv4 address)");
+            }
+        } else if (bndAddrType == Socks5AddressType.DOMAIN) {
+            return SocksAddress.domain(bndAddr);
+        } else if (bndAddrType == Socks5AddressType.IPv6) {
+            if (!NetUtil.isValidIpV6Address(bndAddr)) {
+                throw new IllegalArgumentException("bndAddr: " + bndAddr + " (expected: a valid IPv6 address)");
+            }
+        }
+        return SocksAddress.valueOf(bndAddr);
+    }
+
     @Override
     public Socks5CommandStatus status() {
         return status;
@@ -79,7 +105,12 @@ public final class DefaultSocks5CommandResponse extends AbstractSocks5Message im
 
     @Override
     public String bndAddr() {
-        return bndAddr;
+        return bndAddress != null? bndAddress.toString() : null;
+    }
+
+    @Override
+    public SocksAddress bndAddress() {
+        return bndAddress;
     }
 
     @Override
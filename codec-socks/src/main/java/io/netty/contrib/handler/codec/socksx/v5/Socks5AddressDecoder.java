@@ -17,11 +17,12 @@ package io.netty.contrib.handler.codec.socksx.v5;
 
 import io.netty5.buffer.Buffer;
 import io.netty5.handler.codec.DecoderException;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import java.nio.charset.StandardCharsets;
 import io.netty5.util.NetUtil;
 
 /**
- * Decodes a SOCKS5 address field into its string representation.
+ * Decodes a SOCKS5 address field into its string or {@link SocksAddress} representation.
  *
  * @see Socks5CommandRequestDecoder
  * @see Socks5CommandResponseDecoder
@@ -63,6 +64,37 @@ public interface Socks5AddressDecoder {
                 throw new DecoderException("unsupported address type: " + (addrType.byteValue() & 0xFF));
             }
         }
+
+        @Override
+        public SocksAddress decodeSocksAddress(Socks5AddressType addrType, Buffer in) {
+            int readableBytes = in.readableBytes();
+            if (addrType == Socks5AddressType.IPv4) {
+                if (readableBytes < 4) {
+                    return null;
+                }
+                return SocksAddress.ipv4(in.readInt());
+            }
+            if (addrType == Socks5AddressType.DOMAIN) {
+                if (readableBytes < 1) {
+                    return null;
+                }
+                final int length = in.getUnsignedByte(in.readerOffset());
+                if (readableBytes - 1 < length) {
+                    return null;
+                }
+                in.skipReadableBytes(1);
+                return SocksAddress.readDomain(in, length);
+            }
+            if (addrType == Socks5AddressType.IPv6) {
+                if (readableBytes < IPv6_LEN) {
+                    return null;
+                }
+                final long high = in.readLong();
+                return SocksAddress.ipv6(high, in.readLong());
+            } else {
+                throw new DecoderException("unsupported address type: " + (addrType.byteValue() & 0xFF));
+            }
+        }
     };
 
     /**
@@ -73,4 +105,18 @@ public interface Socks5AddressDecoder {
      * @return the address or {@code null} if not enough bytes are readable yet.
      */
     String decodeAddress(Socks5AddressType addrType, Buffer in) throws Exception;
+
+    /**
+     * Decodes a SOCKS5 address field into its {@link SocksAddress} representation.  The default implementation
+     * converts the result of {@link #decodeAddress(Socks5AddressType, Buffer)}; {@link #DEFAULT} decodes the address
+     * without creating an intermediate {@link String}.
+     *
+     * @param addrType the type of the address
+     * @param in the input buffer which contains the SOCKS5 address field at its reader index
+     * @return the address or {@code null} if not enough bytes are readable yet.
+     */
+    default SocksAddress decodeSocksAddress(Socks5AddressType addrType, Buffer in) throws Exception {
+        final String addr = decodeAddress(addrType, in);
+        return addr != null? SocksAddress.valueOf(addr) : null;
+    }
 }
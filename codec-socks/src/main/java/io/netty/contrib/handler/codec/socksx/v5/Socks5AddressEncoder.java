@@ -17,6 +17,7 @@ package io.netty.contrib.handler.codec.socksx.v5;
 
 import io.netty5.buffer.Buffer;
 import io.netty5.handler.codec.EncoderException;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import java.nio.charset.StandardCharsets;
 import io.netty5.util.NetUtil;
 
@@ -28,30 +29,50 @@ import io.netty5.util.NetUtil;
  */
 public interface Socks5AddressEncoder {
 
-    Socks5AddressEncoder DEFAULT = (addrType, addrValue, out) -> {
-        final byte typeVal = addrType.byteValue();
-        if (typeVal == Socks5AddressType.IPv4.byteValue()) {
-            if (addrValue != null) {
-                out.writeBytes(NetUtil.createByteArrayFromIpAddressString(addrValue));
+    Socks5AddressEncoder DEFAULT = new Socks5AddressEncoder() {
+        @Override
+        public void encodeAddress(Socks5AddressType addrType, String addrValue, Buffer out) {
+            final byte typeVal = addrType.byteValue();
+            if (typeVal == Socks5AddressType.IPv4.byteValue()) {
+                if (addrValue != null) {
+                    out.writeBytes(NetUtil.createByteArrayFromIpAddressString(addrValue));
+                } else {
+                    out.writeInt(0);
+                }
+            } else if (typeVal == Socks5AddressType.DOMAIN.byteValue()) {
+                if (addrValue != null) {
+                    out.writeByte((byte) addrValue.length());
+                    out.writeCharSequence(addrValue, StandardCharsets.US_ASCII);
+                } else {
+                    out.writeByte((byte) 0);
+                }
+            } else if (typeVal == Socks5AddressType.IPv6.byteValue()) {
+                if (addrValue != null) {
+                    out.writeBytes(NetUtil.createByteArrayFromIpAddressString(addrValue));
+                } else {
+                    out.writeLong(0);
+                    out.writeLong(0);
+                }
             } else {
-                out.writeInt(0);
+                throw new EncoderException("unsupported addrType: " + (addrType.byteValue() & 0xFF));
             }
-        } else if (typeVal == Socks5AddressType.DOMAIN.byteValue()) {
-            if (addrValue != null) {
+        }
+
+        @Override
+        public void encodeSocksAddress(Socks5AddressType addrType, SocksAddress addrValue, Buffer out) {
+            final byte typeVal = addrType.byteValue();
+            if (addrValue == null) {
+                encodeAddress(addrType, null, out);
+            } else if (typeVal == Socks5AddressType.IPv4.byteValue() && addrValue.isIPv4() ||
+                       typeVal == Socks5AddressType.IPv6.byteValue() && addrValue.isIPv6()) {
+                addrValue.writeTo(out);
+            } else if (typeVal == Socks5AddressType.DOMAIN.byteValue() && addrValue.isDomain()) {
                 out.writeByte((byte) addrValue.length());
-                out.writeCharSequence(addrValue, StandardCharsets.US_ASCII);
+                addrValue.writeTo(out);
             } else {
-                out.writeByte((byte) 0);
+                // The address does not match the address type; fall back to its string representation.
+                encodeAddress(addrType, addrValue.toString(), out);
             }
-        } else if (typeVal == Socks5AddressType.IPv6.byteValue()) {
-            if (addrValue != null) {
-                out.writeBytes(NetUtil.createByteArrayFromIpAddressString(addrValue));
-            } else {
-                out.writeLong(0);
-                out.writeLong(0);
-            }
-        } else {
-            throw new EncoderException("unsupported addrType: " + (addrType.byteValue() & 0xFF));
         }
     };
 
@@ -63,4 +84,19 @@ public interface Socks5AddressEncoder {
      * @param out the output buffer where the encoded SOCKS5 address field will be written to
      */
     void encodeAddress(Socks5AddressType addrType, String addrValue, Buffer out) throws Exception;
+
+    /**
+     * Encodes a SOCKS5 address.  The default implementation encodes the string representation of the specified
+     * {@link SocksAddress} using {@link #encodeAddress(Socks5AddressType, String, Buffer)}; {@link #DEFAULT} encodes
+     * the binary representation directly.  This method has a distinct name so that
+     * {@code encodeAddress(addrType, null, out)} remains unambiguous.
+     *
+     * @param addrType the type of the address
+     * @param addrValue the address, or {@code null} for an all-zero address
+     * @param out the output buffer where the encoded SOCKS5 address field will be written to
+     */
+    default void encodeSocksAddress(Socks5AddressType addrType, SocksAddress addrValue, Buffer out)
+            throws Exception {
+        encodeAddress(addrType, addrValue != null? addrValue.toString() : null, out);
+    }
 }
@@ -15,6 +15,8 @@
  */
 package io.netty.contrib.handler.codec.socksx.v5;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -39,6 +41,20 @@ public class Socks5AddressType implements Comparable<Socks5AddressType> {
         return new Socks5AddressType(b);
     }
 
+    /**
+     * Returns the type of the specified {@link SocksAddress}.
+     */
+    public static Socks5AddressType valueOf(SocksAddress address) {
+        requireNonNull(address, "address");
+        if (address.isIPv4()) {
+            return IPv4;
+        }
+        if (address.isIPv6()) {
+            return IPv6;
+        }
+        return DOMAIN;
+    }
+
     private final byte byteValue;
     private final String name;
     private String text;
@@ -34,6 +34,8 @@ public class Socks5ClientEncoder extends MessageToByteEncoder<Socks5Message> {
 
     public static final Socks5ClientEncoder DEFAULT = new Socks5ClientEncoder();
 
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
     private final Socks5AddressEncoder addressEncoder;
 
     /**
@@ -43,11 +45,6 @@ public class Socks5ClientEncoder extends MessageToByteEncoder<Socks5Message> {
         this(Socks5AddressEncoder.DEFAULT);
     }
 
-    @Override
-    protected Buffer allocateBuffer(ChannelHandlerContext ctx, Socks5Message msg) {
-        return ctx.bufferAllocator().allocate(256);
-    }
-
     /**
      * Creates a new instance with the specified {@link Socks5AddressEncoder}.
      */
@@ -57,6 +54,15 @@ public class Socks5ClientEncoder extends MessageToByteEncoder<Socks5Message> {
         this.addressEncoder = addressEncoder;
     }
 
+    @Override
+    protected Buffer allocateBuffer(ChannelHandlerContext ctx, Socks5Message msg) {
+        // The encoded length of a message with an address is only known for the default address encoder.
+        final int encodedLength = addressEncoder == Socks5AddressEncoder.DEFAULT ||
+                                  !(msg instanceof Socks5CommandRequest || msg instanceof Socks5CommandResponse)?
+                msg.encodedLength() : -1;
+        return ctx.bufferAllocator().allocate(encodedLength >= 0? encodedLength : DEFAULT_BUFFER_SIZE);
+    }
+
     /**
      * Returns the {@link Socks5AddressEncoder} of this encoder.
      */
@@ -114,7 +120,7 @@ public class Socks5ClientEncoder extends MessageToByteEncoder<Socks5Message> {
 
         final Socks5AddressType dstAddrType = msg.dstAddrType();
         out.writeByte(dstAddrType.byteValue());
-        addressEncoder.encodeAddress(dstAddrType, msg.dstAddr(), out);
+        addressEncoder.encodeSocksAddress(dstAddrType, msg.dstAddress(), out);
         out.writeShort((short) msg.dstPort());
     }
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.handler.codec.ByteToMessageDecoder;
+import io.netty5.handler.codec.DecoderException;
+import io.netty5.handler.codec.DecoderResult;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty.contrib.handler.codec.socksx.SocksVersion;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes a complete client-side SOCKS5 handshake from the inbound {@link Buffer}s: a {@link Socks5InitialResponse},
+ * a {@link Socks5PasswordAuthResponse} if the server selected {@link Socks5AuthMethod#PASSWORD}, and a
+ * {@link Socks5CommandResponse}.
+ * <p>
+ * Unlike {@link Socks5InitialResponseDecoder}, {@link Socks5PasswordAuthResponseDecoder} and
+ * {@link Socks5CommandResponseDecoder}, this decoder does not need to be replaced by another handler between the
+ * handshake steps, so it can decode the responses to pipelined requests even if they arrive in a single read.
+ * On successful decode of the {@link Socks5CommandResponse}, this decoder will forward the received data to the next
+ * handler, so that other handler can remove this decoder later.  On failed decode, this decoder will discard the
+ * received data, so that other handler closes the connection later.
+ */
+public class Socks5ClientHandshakeDecoder extends ByteToMessageDecoder {
+
+    private enum State {
+        INIT,
+        PASSWORD_AUTH,
+        COMMAND,
+        SUCCESS,
+        FAILURE
+    }
+
+    private final Socks5AddressDecoder addressDecoder;
+
+    private State state = State.INIT;
+
+    public Socks5ClientHandshakeDecoder() {
+        this(Socks5AddressDecoder.DEFAULT);
+    }
+
+    public Socks5ClientHandshakeDecoder(Socks5AddressDecoder addressDecoder) {
+        this.addressDecoder = requireNonNull(addressDecoder, "addressDecoder");
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, Buffer in) throws Exception {
+        try {
+            switch (state) {
+            case INIT: {
+                if (in.readableBytes() < 2) {
+                    return;
+                }
+                final byte version = in.readByte();
+                if (version != SocksVersion.SOCKS5.byteValue()) {
+                    throw new DecoderException(
+                            "unsupported version: " + version + " (expected: " + SocksVersion.SOCKS5.byteValue() + ')');
+                }
+
+                final Socks5AuthMethod authMethod = Socks5AuthMethod.valueOf(in.readByte());
+                state = authMethod == Socks5AuthMethod.PASSWORD? State.PASSWORD_AUTH : State.COMMAND;
+                ctx.fireChannelRead(new DefaultSocks5InitialResponse(authMethod));
+                break;
+            }
+            case PASSWORD_AUTH: {
+                if (in.readableBytes() < 2) {
+                    return;
+                }
+                final byte version = in.readByte();
+                if (version != 1) {
+                    throw new DecoderException("unsupported subnegotiation version: " + version + " (expected: 1)");
+                }
+
+                state = State.COMMAND;
+                ctx.fireChannelRead(
+                        new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.valueOf(in.readByte())));
+                break;
+            }
+            case COMMAND: {
+                if (in.readableBytes() < 6) {
+                    return;
+                }
+                int readerIndex = in.readerOffset();
+                final byte version = in.readByte();
+                if (version != SocksVersion.SOCKS5.byteValue()) {
+                    throw new DecoderException(
+                            "unsupported version: " + version + " (expected: " + SocksVersion.SOCKS5.byteValue() + ')');
+                }
+                final Socks5CommandStatus status = Socks5CommandStatus.valueOf(in.readByte());
+                in.skipReadableBytes(1); // Reserved
+                final Socks5AddressType addrType = Socks5AddressType.valueOf(in.readByte());
+                final SocksAddress addr = addressDecoder.decodeSocksAddress(addrType, in);
+                if (addr == null || in.readableBytes() < 2) {
+                    in.readerOffset(readerIndex);
+                    return;
+                }
+                final int port = in.readUnsignedShort();
+
+                state = State.SUCCESS;
+                ctx.fireChannelRead(new DefaultSocks5CommandResponse(status, addrType, addr, port));
+                break;
+            }
+            case SUCCESS: {
+                int readableBytes = actualReadableBytes();
+                if (readableBytes > 0) {
+                    ctx.fireChannelRead(in.readSplit(readableBytes));
+                }
+                break;
+            }
+            case FAILURE: {
+                in.skipReadableBytes(actualReadableBytes());
+                break;
+            }
+            }
+        } catch (Exception e) {
+            fail(ctx, e);
+        }
+    }
+
+    private void fail(ChannelHandlerContext ctx, Exception cause) {
+        if (!(cause instanceof DecoderException)) {
+            cause = new DecoderException(cause);
+        }
+
+        final Socks5Message m;
+        switch (state) {
+        case INIT:
+            m = new DefaultSocks5InitialResponse(Socks5AuthMethod.UNACCEPTED);
+            break;
+        case PASSWORD_AUTH:
+            m = new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.FAILURE);
+            break;
+        default:
+            m = new DefaultSocks5CommandResponse(Socks5CommandStatus.FAILURE, Socks5AddressType.IPv4);
+            break;
+        }
+
+        state = State.FAILURE;
+
+        m.setDecoderResult(DecoderResult.failure(cause));
+        ctx.fireChannelRead(m);
+    }
+}
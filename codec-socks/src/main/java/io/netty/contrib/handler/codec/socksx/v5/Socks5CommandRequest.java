@@ -15,6 +15,8 @@
  */
 package io.netty.contrib.handler.codec.socksx.v5;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+
 /**
  * A SOCKS5 request detail message, as defined in
  * <a href="https://tools.ietf.org/html/rfc1928#section-4">the section 4, RFC1928</a>.
@@ -36,8 +38,25 @@ public interface Socks5CommandRequest extends Socks5Message {
      */
     String dstAddr();
 
+    /**
+     * Returns the binary representation of the {@code DST.ADDR} field of this request.
+     */
+    default SocksAddress dstAddress() {
+        return SocksAddress.valueOf(dstAddr());
+    }
+
     /**
      * Returns the {@code DST.PORT} field of this request.
      */
     int dstPort();
+
+    /**
+     * Returns the number of bytes this request is encoded into with {@link Socks5AddressEncoder#DEFAULT}, or
+     * {@code -1} if the {@code ATYP} field is not a well-known {@link Socks5AddressType}.
+     */
+    @Override
+    default int encodedLength() {
+        final int addressLength = Socks5CommonUtils.encodedAddressLength(dstAddrType(), dstAddress());
+        return addressLength >= 0? 4 + addressLength + 2 : -1;
+    }
 }
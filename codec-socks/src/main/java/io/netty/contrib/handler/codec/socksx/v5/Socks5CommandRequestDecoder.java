@@ -20,6 +20,7 @@ import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.handler.codec.ByteToMessageDecoder;
 import io.netty5.handler.codec.DecoderException;
 import io.netty5.handler.codec.DecoderResult;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import io.netty.contrib.handler.codec.socksx.SocksVersion;
 
 import static java.util.Objects.requireNonNull;
@@ -69,7 +70,7 @@ public class Socks5CommandRequestDecoder extends ByteToMessageDecoder {
                 in.skipReadableBytes(1); // RSV
                 final Socks5AddressType dstAddrType = Socks5AddressType.valueOf(in.readByte());
 
-                final String dstAddr = addressDecoder.decodeAddress(dstAddrType, in);
+                final SocksAddress dstAddr = addressDecoder.decodeSocksAddress(dstAddrType, in);
                 if (dstAddr == null || in.readableBytes() < 2) {
                     in.readerOffset(readerIndex);
                     return;
@@ -15,6 +15,8 @@
  */
 package io.netty.contrib.handler.codec.socksx.v5;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+
 /**
  * A response to a SOCKS5 request detail message, as defined in
  * <a href="https://tools.ietf.org/html/rfc1928#section-6">the section 6, RFC1928</a>.
@@ -36,8 +38,27 @@ public interface Socks5CommandResponse extends Socks5Message {
      */
     String bndAddr();
 
+    /**
+     * Returns the binary representation of the {@code BND.ADDR} field of this response, or {@code null} if the
+     * field is not set.
+     */
+    default SocksAddress bndAddress() {
+        final String bndAddr = bndAddr();
+        return bndAddr != null? SocksAddress.valueOf(bndAddr) : null;
+    }
+
     /**
      * Returns the {@code BND.PORT} field of this response.
      */
     int bndPort();
+
+    /**
+     * Returns the number of bytes this response is encoded into with {@link Socks5AddressEncoder#DEFAULT}, or
+     * {@code -1} if the {@code ATYP} field is not a well-known {@link Socks5AddressType}.
+     */
+    @Override
+    default int encodedLength() {
+        final int addressLength = Socks5CommonUtils.encodedAddressLength(bndAddrType(), bndAddress());
+        return addressLength >= 0? 4 + addressLength + 2 : -1;
+    }
 }
@@ -20,6 +20,7 @@ import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.handler.codec.ByteToMessageDecoder;
 import io.netty5.handler.codec.DecoderException;
 import io.netty5.handler.codec.DecoderResult;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import io.netty.contrib.handler.codec.socksx.SocksVersion;
 
 import static java.util.Objects.requireNonNull;
@@ -65,7 +66,7 @@ public class Socks5CommandResponseDecoder extends ByteToMessageDecoder {
                 final Socks5CommandStatus status = Socks5CommandStatus.valueOf(in.readByte());
                 in.skipReadableBytes(1); // Reserved
                 final Socks5AddressType addrType = Socks5AddressType.valueOf(in.readByte());
-                final String addr = addressDecoder.decodeAddress(addrType, in);
+                final SocksAddress addr = addressDecoder.decodeSocksAddress(addrType, in);
                 if (addr == null || in.readableBytes() < 2) {
                     in.readerOffset(readerIndex);
                     return;
@@ -99,8 +100,7 @@ public class Socks5CommandResponseDecoder extends ByteToMessageDecoder {
 
         state = State.FAILURE;
 
-        Socks5Message m = new DefaultSocks5CommandResponse(
-                Socks5CommandStatus.FAILURE, Socks5AddressType.IPv4, null, 0);
+        Socks5Message m = new DefaultSocks5CommandResponse(Socks5CommandStatus.FAILURE, Socks5AddressType.IPv4);
         m.setDecoderResult(DecoderResult.failure(cause));
         ctx.fireChannelRead(m);
     }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+
+final class Socks5CommonUtils {
+
+    /**
+     * A constructor to stop this class being constructed.
+     */
+    private Socks5CommonUtils() {
+        // NOOP
+    }
+
+    /**
+     * Returns the number of bytes {@link Socks5AddressEncoder#DEFAULT} encodes the specified address into, or
+     * {@code -1} if the address type is not a well-known {@link Socks5AddressType}.
+     */
+    static int encodedAddressLength(Socks5AddressType addrType, SocksAddress addr) {
+        final byte typeVal = addrType.byteValue();
+        if (typeVal == Socks5AddressType.IPv4.byteValue()) {
+            return 4;
+        }
+        if (typeVal == Socks5AddressType.IPv6.byteValue()) {
+            return 16;
+        }
+        if (typeVal == Socks5AddressType.DOMAIN.byteValue()) {
+            if (addr == null) {
+                return 1;
+            }
+            return 1 + (addr.isDomain()? addr.length() : addr.toString().length());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.BufferAddressedEnvelope;
+import io.netty5.util.internal.StringUtil;
+
+import java.net.InetSocketAddress;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A datagram which is relayed by a SOCKS5 server after a {@link Socks5CommandType#UDP_ASSOCIATE} request, as
+ * specified in <a href="https://www.rfc-editor.org/rfc/rfc1928#section-7">RFC 1928, section 7</a>.  The
+ * {@linkplain #content() content} is the {@code DATA} field, and the {@code DST.ADDR} and {@code DST.PORT} fields
+ * are the address of the destination of a datagram sent by the client, or the address of the source of a datagram
+ * sent to the client.  The {@linkplain #recipient() recipient} and the {@linkplain #sender() sender} are the UDP
+ * addresses of the datagram itself.
+ *
+ * @see Socks5DatagramPacketDecoder
+ * @see Socks5DatagramPacketEncoder
+ */
+public final class Socks5DatagramPacket
+        extends BufferAddressedEnvelope<InetSocketAddress, Socks5DatagramPacket> {
+
+    private final int frag;
+    private final Socks5AddressType dstAddrType;
+    private final SocksAddress dstAddress;
+    private final int dstPort;
+
+    /**
+     * Creates a new standalone datagram, whose {@code ATYP} field is derived from the specified {@link SocksAddress}.
+     */
+    public Socks5DatagramPacket(Buffer content, InetSocketAddress recipient, SocksAddress dstAddress, int dstPort) {
+        this(content, recipient, null, 0, Socks5AddressType.valueOf(dstAddress), dstAddress, dstPort);
+    }
+
+    /**
+     * Creates a new datagram.
+     *
+     * @param content the {@code DATA} field
+     * @param recipient the UDP address of the recipient of the datagram
+     * @param sender the UDP address of the sender of the datagram, or {@code null}
+     * @param frag the {@code FRAG} field: {@code 0} for a standalone datagram, otherwise the position of the fragment,
+     *             whose high-order bit is set for the last fragment
+     * @param dstAddrType the {@code ATYP} field
+     * @param dstAddress the {@code DST.ADDR} field
+     * @param dstPort the {@code DST.PORT} field
+     */
+    public Socks5DatagramPacket(Buffer content, InetSocketAddress recipient, InetSocketAddress sender, int frag,
+                                Socks5AddressType dstAddrType, SocksAddress dstAddress, int dstPort) {
+        super(content, recipient, sender);
+        requireNonNull(dstAddrType, "dstAddrType");
+        requireNonNull(dstAddress, "dstAddress");
+        if (frag < 0 || frag > 255) {
+            throw new IllegalArgumentException("frag: " + frag + " (expected: 0~255)");
+        }
+        if (dstAddrType == Socks5AddressType.IPv4 && !dstAddress.isIPv4() ||
+            dstAddrType == Socks5AddressType.IPv6 && !dstAddress.isIPv6()) {
+            throw new IllegalArgumentException(
+                    "dstAddress: " + dstAddress + " (expected: a valid " + dstAddrType + " address)");
+        }
+        if (dstPort < 0 || dstPort > 65535) {
+            throw new IllegalArgumentException("dstPort: " + dstPort + " (expected: 0~65535)");
+        }
+        this.frag = frag;
+        this.dstAddrType = dstAddrType;
+        this.dstAddress = dstAddress;
+        this.dstPort = dstPort;
+    }
+
+    /**
+     * Returns the {@code FRAG} field: {@code 0} for a standalone datagram, otherwise the position of the fragment,
+     * whose high-order bit is set for the last fragment.
+     */
+    public int frag() {
+        return frag;
+    }
+
+    /**
+     * Returns {@code true} if this datagram is a fragment of a larger one.
+     */
+    public boolean isFragment() {
+        return frag != 0;
+    }
+
+    /**
+     * Returns the {@code ATYP} field.
+     */
+    public Socks5AddressType dstAddrType() {
+        return dstAddrType;
+    }
+
+    /**
+     * Returns the {@code DST.ADDR} field.
+     */
+    public SocksAddress dstAddress() {
+        return dstAddress;
+    }
+
+    /**
+     * Returns the {@code DST.PORT} field.
+     */
+    public int dstPort() {
+        return dstPort;
+    }
+
+    @Override
+    public Socks5DatagramPacket replace(Buffer content) {
+        return new Socks5DatagramPacket(content, recipient(), sender(), frag, dstAddrType, dstAddress, dstPort);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder(128)
+            .append(StringUtil.simpleClassName(this))
+            .append("(frag: ")
+            .append(frag)
+            .append(", dstAddrType: ")
+            .append(dstAddrType)
+            .append(", dstAddr: ")
+            .append(dstAddress)
+            .append(", dstPort: ")
+            .append(dstPort)
+            .append(", ")
+            .append(sender())
+            .append(" => ")
+            .append(recipient())
+            .append(", content: ")
+            .append(content())
+            .append(')');
+        return buf.toString();
+    }
+}
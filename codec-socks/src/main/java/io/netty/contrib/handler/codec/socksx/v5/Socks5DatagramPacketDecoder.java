@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.socket.DatagramPacket;
+import io.netty5.handler.codec.MessageToMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes the {@link DatagramPacket}s which are relayed by a SOCKS5 server into {@link Socks5DatagramPacket}s.
+ * The header is parsed in place, and the {@linkplain Socks5DatagramPacket#content() content} of the decoded datagram
+ * is a split of the received {@link Buffer} rather than a copy.  Malformed datagrams are dropped, as required by
+ * <a href="https://www.rfc-editor.org/rfc/rfc1928#section-7">RFC 1928</a>.
+ */
+public class Socks5DatagramPacketDecoder extends MessageToMessageDecoder<DatagramPacket> {
+
+    public static final Socks5DatagramPacketDecoder DEFAULT =
+            new Socks5DatagramPacketDecoder(Socks5AddressDecoder.DEFAULT);
+
+    private static final Logger logger = LoggerFactory.getLogger(Socks5DatagramPacketDecoder.class);
+
+    /**
+     * The length of the {@code RSV}, {@code FRAG} and {@code ATYP} fields.
+     */
+    private static final int HEADER_PREFIX_LENGTH = 4;
+
+    private final Socks5AddressDecoder addressDecoder;
+
+    public Socks5DatagramPacketDecoder() {
+        this(Socks5AddressDecoder.DEFAULT);
+    }
+
+    public Socks5DatagramPacketDecoder(Socks5AddressDecoder addressDecoder) {
+        this.addressDecoder = requireNonNull(addressDecoder, "addressDecoder");
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, DatagramPacket msg) throws Exception {
+        final Buffer in = msg.content();
+        if (in.readableBytes() < HEADER_PREFIX_LENGTH) {
+            drop(msg, "too short");
+            return;
+        }
+        final int offset = in.readerOffset();
+        if (in.getUnsignedShort(offset) != 0) {
+            drop(msg, "non-zero RSV");
+            return;
+        }
+        final int frag = in.getUnsignedByte(offset + 2);
+        final Socks5AddressType dstAddrType = Socks5AddressType.valueOf(in.getByte(offset + 3));
+        if (dstAddrType != Socks5AddressType.IPv4 && dstAddrType != Socks5AddressType.DOMAIN &&
+            dstAddrType != Socks5AddressType.IPv6) {
+            drop(msg, "unsupported address type: " + (dstAddrType.byteValue() & 0xFF));
+            return;
+        }
+
+        in.skipReadableBytes(HEADER_PREFIX_LENGTH);
+        final SocksAddress dstAddress = addressDecoder.decodeSocksAddress(dstAddrType, in);
+        if (dstAddress == null || in.readableBytes() < 2) {
+            drop(msg, "truncated address");
+            return;
+        }
+        final int dstPort = in.readUnsignedShort();
+
+        // The rest of the datagram is the payload, which is split off instead of copied.  The header is disposed of
+        // together with the received datagram.
+        final Buffer content = in.readSplit(in.readableBytes());
+        ctx.fireChannelRead(new Socks5DatagramPacket(
+                content, msg.recipient(), msg.sender(), frag, dstAddrType, dstAddress, dstPort));
+    }
+
+    private static void drop(DatagramPacket msg, String reason) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Dropping a malformed SOCKS5 datagram from {}: {}", msg.sender(), reason);
+        }
+    }
+
+    @Override
+    public boolean isSharable() {
+        return true;
+    }
+}
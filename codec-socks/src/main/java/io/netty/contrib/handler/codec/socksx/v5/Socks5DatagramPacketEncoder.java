@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.BufferAllocator;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.socket.DatagramPacket;
+import io.netty5.handler.codec.MessageToMessageEncoder;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encodes a {@link Socks5DatagramPacket} into a {@link DatagramPacket}, prepending the SOCKS5 UDP request header to
+ * its {@linkplain Socks5DatagramPacket#content() content}.  The header is composed with the content, so that the
+ * payload is not copied.
+ */
+public class Socks5DatagramPacketEncoder extends MessageToMessageEncoder<Socks5DatagramPacket> {
+
+    public static final Socks5DatagramPacketEncoder DEFAULT =
+            new Socks5DatagramPacketEncoder(Socks5AddressEncoder.DEFAULT);
+
+    /**
+     * The length of the longest header, which has a domain name of 255 bytes.
+     */
+    private static final int MAX_HEADER_LENGTH = 4 + 1 + 255 + 2;
+
+    private final Socks5AddressEncoder addressEncoder;
+
+    public Socks5DatagramPacketEncoder() {
+        this(Socks5AddressEncoder.DEFAULT);
+    }
+
+    public Socks5DatagramPacketEncoder(Socks5AddressEncoder addressEncoder) {
+        this.addressEncoder = requireNonNull(addressEncoder, "addressEncoder");
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Socks5DatagramPacket msg, List<Object> out) throws Exception {
+        final BufferAllocator allocator = ctx.bufferAllocator();
+        // The length of the header is only known for the default address encoder.
+        final boolean exactLength = addressEncoder == Socks5AddressEncoder.DEFAULT;
+        Buffer header = allocator.allocate(exactLength? headerLength(msg) : MAX_HEADER_LENGTH);
+        try {
+            header.writeShort((short) 0); // RSV
+            header.writeByte((byte) msg.frag());
+            header.writeByte(msg.dstAddrType().byteValue());
+            addressEncoder.encodeSocksAddress(msg.dstAddrType(), msg.dstAddress(), header);
+            header.writeShort((short) msg.dstPort());
+            if (!exactLength) {
+                // The unused capacity would leave a gap in front of the payload.
+                try (Buffer unused = header) {
+                    header = unused.split();
+                }
+            }
+        } catch (Throwable t) {
+            header.close();
+            throw t;
+        }
+        final Buffer payload = readableBytes(msg.content());
+        out.add(new DatagramPacket(allocator.compose(Arrays.asList(header.send(), payload.send())),
+                                   msg.recipient(), msg.sender()));
+    }
+
+    /**
+     * Splits off exactly the readable bytes of the specified buffer, without copying them, so that they can be
+     * composed behind the header without gaps.  The specified buffer is left empty, and closed with the message.
+     */
+    private static Buffer readableBytes(Buffer content) {
+        content.split(content.readerOffset()).close();
+        return content.split();
+    }
+
+    /**
+     * Returns the length of the header of the specified datagram, from the {@code RSV} field to the {@code DST.PORT}
+     * field.
+     */
+    static int headerLength(Socks5DatagramPacket msg) {
+        final int addressLength = msg.dstAddress().length();
+        return 4 + (msg.dstAddrType() == Socks5AddressType.DOMAIN? 1 + addressLength : addressLength) + 2;
+    }
+
+    @Override
+    public boolean isSharable() {
+        return true;
+    }
+}
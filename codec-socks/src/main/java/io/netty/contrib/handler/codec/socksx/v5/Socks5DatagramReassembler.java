@@ -0,0 +1,200 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.CompositeBuffer;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.util.Send;
+import io.netty5.util.concurrent.Future;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty5.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Reassembles the fragmented {@link Socks5DatagramPacket}s of a single UDP association, as specified in
+ * <a href="https://www.rfc-editor.org/rfc/rfc1928#section-7">RFC 1928, section 7</a>, and passes the standalone
+ * datagrams on as they are.  Add it right after a {@link Socks5DatagramPacketDecoder}.
+ * <p>
+ * The fragments are joined into a {@link CompositeBuffer} without copying.  A fragment sequence is abandoned when
+ * a fragment is missing or out of order, when a standalone datagram or a datagram to another destination arrives,
+ * when the fragments exceed the memory budget, or when the sequence is not complete before the reassembly timeout.
+ */
+public class Socks5DatagramReassembler implements ChannelHandler {
+
+    /**
+     * The default memory budget: 65507 bytes, the largest payload of an IPv4 UDP datagram, which is the largest
+     * datagram the relay can send on anyway.
+     */
+    public static final int DEFAULT_MAX_REASSEMBLY_BYTES = 65507;
+
+    /**
+     * The default reassembly timeout: 5 seconds, the minimum required by RFC 1928.
+     */
+    public static final long DEFAULT_REASSEMBLY_TIMEOUT_MILLIS = 5000;
+
+    private static final int END_OF_SEQUENCE = 0x80;
+
+    private final int maxReassemblyBytes;
+    private final long reassemblyTimeoutMillis;
+
+    private final List<Buffer> fragments = new ArrayList<>();
+    private int reassemblyBytes;
+    private int lastPosition;
+    private Socks5AddressType dstAddrType;
+    private SocksAddress dstAddress;
+    private int dstPort;
+    private InetSocketAddress sender;
+    private Future<Void> timeoutFuture;
+
+    public Socks5DatagramReassembler() {
+        this(DEFAULT_MAX_REASSEMBLY_BYTES, DEFAULT_REASSEMBLY_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxReassemblyBytes the maximum number of bytes of the fragments which are held while reassembling
+     * @param reassemblyTimeoutMillis the time after which an incomplete fragment sequence is abandoned
+     */
+    public Socks5DatagramReassembler(int maxReassemblyBytes, long reassemblyTimeoutMillis) {
+        this.maxReassemblyBytes = checkPositive(maxReassemblyBytes, "maxReassemblyBytes");
+        this.reassemblyTimeoutMillis = checkPositive(reassemblyTimeoutMillis, "reassemblyTimeoutMillis");
+    }
+
+    /**
+     * Returns the number of bytes of the fragments which are currently held.
+     */
+    public final int reassemblyBytes() {
+        return reassemblyBytes;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Socks5DatagramPacket)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        final Socks5DatagramPacket packet = (Socks5DatagramPacket) msg;
+        if (!packet.isFragment()) {
+            // A standalone datagram abandons the current fragment sequence.
+            discardFragments();
+            ctx.fireChannelRead(packet);
+            return;
+        }
+
+        final int position = packet.frag() & ~END_OF_SEQUENCE;
+        if (position == 1) {
+            discardFragments();
+        } else if (position != lastPosition + 1 || !isSameSequence(packet)) {
+            // A fragment is missing or out of order, so the sequence cannot be completed anymore.
+            discardFragments();
+            packet.close();
+            return;
+        }
+
+        final Buffer content = packet.content();
+        if (reassemblyBytes + content.readableBytes() > maxReassemblyBytes) {
+            discardFragments();
+            packet.close();
+            return;
+        }
+
+        if (position == 1) {
+            dstAddrType = packet.dstAddrType();
+            dstAddress = packet.dstAddress();
+            dstPort = packet.dstPort();
+            sender = packet.sender();
+            timeoutFuture = ctx.executor().schedule(
+                    this::discardFragments, reassemblyTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        lastPosition = position;
+        reassemblyBytes += content.readableBytes();
+        fragments.add(readableBytes(content));
+
+        if ((packet.frag() & END_OF_SEQUENCE) != 0) {
+            fireReassembled(ctx, packet);
+        }
+    }
+
+    private boolean isSameSequence(Socks5DatagramPacket packet) {
+        return packet.dstPort() == dstPort && packet.dstAddress().equals(dstAddress) &&
+               (sender == null? packet.sender() == null : sender.equals(packet.sender()));
+    }
+
+    /**
+     * Returns a buffer which holds exactly the readable bytes of the specified buffer, without copying them, so that
+     * the fragments can be composed without gaps.  The specified buffer is closed.
+     */
+    private static Buffer readableBytes(Buffer content) {
+        try (content) {
+            content.split(content.readerOffset()).close();
+            return content.split();
+        }
+    }
+
+    private void fireReassembled(ChannelHandlerContext ctx, Socks5DatagramPacket last) {
+        final List<Send<Buffer>> sends = new ArrayList<>(fragments.size());
+        for (Buffer fragment : fragments) {
+            sends.add(fragment.send());
+        }
+        fragments.clear();
+        final CompositeBuffer content = ctx.bufferAllocator().compose(sends);
+        final Socks5DatagramPacket reassembled = new Socks5DatagramPacket(
+                content, last.recipient(), sender, 0, dstAddrType, dstAddress, dstPort);
+        resetSequence();
+        ctx.fireChannelRead(reassembled);
+    }
+
+    private void discardFragments() {
+        for (Buffer fragment : fragments) {
+            fragment.close();
+        }
+        fragments.clear();
+        resetSequence();
+    }
+
+    private void resetSequence() {
+        reassemblyBytes = 0;
+        lastPosition = 0;
+        dstAddrType = null;
+        dstAddress = null;
+        dstPort = 0;
+        sender = null;
+        if (timeoutFuture != null) {
+            timeoutFuture.cancel();
+            timeoutFuture = null;
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        discardFragments();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discardFragments();
+        ctx.fireChannelInactive();
+    }
+}
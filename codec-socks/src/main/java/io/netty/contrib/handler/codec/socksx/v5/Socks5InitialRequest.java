@@ -26,4 +26,9 @@ public interface Socks5InitialRequest extends Socks5Message {
      * Returns the list of desired authentication methods.
      */
     List<Socks5AuthMethod> authMethods();
+
+    @Override
+    default int encodedLength() {
+        return 2 + authMethods().size();
+    }
 }
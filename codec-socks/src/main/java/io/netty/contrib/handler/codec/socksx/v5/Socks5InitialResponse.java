@@ -25,4 +25,9 @@ public interface Socks5InitialResponse extends Socks5Message {
      * Returns the {@code METHOD} field of this response.
      */
     Socks5AuthMethod authMethod();
+
+    @Override
+    default int encodedLength() {
+        return 2;
+    }
 }
@@ -30,4 +30,9 @@ public interface Socks5PasswordAuthRequest extends Socks5Message {
      * Returns the password of this request.
      */
     String password();
+
+    @Override
+    default int encodedLength() {
+        return 3 + username().length() + password().length();
+    }
 }
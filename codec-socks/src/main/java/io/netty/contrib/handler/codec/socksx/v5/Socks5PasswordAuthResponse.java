@@ -24,4 +24,9 @@ public interface Socks5PasswordAuthResponse extends Socks5Message {
      * Returns the status of this response.
      */
     Socks5PasswordAuthStatus status();
+
+    @Override
+    default int encodedLength() {
+        return 2;
+    }
 }
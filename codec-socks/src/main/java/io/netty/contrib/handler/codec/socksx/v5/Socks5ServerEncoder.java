@@ -15,22 +15,70 @@
  */
 package io.netty.contrib.handler.codec.socksx.v5;
 
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty.contrib.handler.codec.socksx.SocksVersion;
 import io.netty5.buffer.Buffer;
 import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.handler.codec.EncoderException;
 import io.netty5.handler.codec.MessageToByteEncoder;
+import io.netty5.util.concurrent.Future;
 import io.netty5.util.internal.StringUtil;
 
+import java.util.function.Supplier;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Encodes a server-side {@link Socks5Message} into a {@link Buffer}.
+ * <p>
+ * The most common responses, such as a {@link Socks5InitialResponse} with a well-known {@link Socks5AuthMethod}, a
+ * {@link Socks5PasswordAuthResponse} and a {@link Socks5CommandResponse} with an all-zero {@code IPv4} bind address
+ * and port, are not encoded again for every handshake but are written as read-only copies of shared pre-encoded
+ * {@link Buffer}s.  A subclass, which may encode these responses differently, does not use them unless it overrides
+ * {@link #usePreEncodedResponses()}.
  */
 public class Socks5ServerEncoder extends MessageToByteEncoder<Socks5Message> {
 
     public static final Socks5ServerEncoder DEFAULT = new Socks5ServerEncoder(Socks5AddressEncoder.DEFAULT);
 
+    private static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private static final byte SOCKS5 = SocksVersion.SOCKS5.byteValue();
+
+    private static final Supplier<Buffer> NO_AUTH_RESPONSE = constant(SOCKS5, Socks5AuthMethod.NO_AUTH.byteValue());
+    private static final Supplier<Buffer> GSSAPI_RESPONSE = constant(SOCKS5, Socks5AuthMethod.GSSAPI.byteValue());
+    private static final Supplier<Buffer> PASSWORD_RESPONSE = constant(SOCKS5, Socks5AuthMethod.PASSWORD.byteValue());
+    private static final Supplier<Buffer> UNACCEPTED_RESPONSE =
+            constant(SOCKS5, Socks5AuthMethod.UNACCEPTED.byteValue());
+
+    private static final Supplier<Buffer> AUTH_SUCCESS_RESPONSE =
+            constant((byte) 0x01, Socks5PasswordAuthStatus.SUCCESS.byteValue());
+    private static final Supplier<Buffer> AUTH_FAILURE_RESPONSE =
+            constant((byte) 0x01, Socks5PasswordAuthStatus.FAILURE.byteValue());
+
+    /**
+     * The pre-encoded {@link Socks5CommandResponse}s with an all-zero {@code IPv4} bind address and port, indexed by
+     * the well-known {@link Socks5CommandStatus} values ({@code 0x00} to {@code 0x08}).
+     */
+    private static final Supplier<Buffer>[] ZERO_ADDRESS_COMMAND_RESPONSES = newZeroAddressCommandResponses();
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Buffer>[] newZeroAddressCommandResponses() {
+        final Supplier<Buffer>[] responses = new Supplier[Socks5CommandStatus.ADDRESS_UNSUPPORTED.byteValue() + 1];
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = constant(SOCKS5, (byte) i, (byte) 0x00, Socks5AddressType.IPv4.byteValue(),
+                                    (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0);
+        }
+        return responses;
+    }
+
+    private static Supplier<Buffer> constant(byte... bytes) {
+        return preferredAllocator().constBufferSupplier(bytes);
+    }
+
     private final Socks5AddressEncoder addressEncoder;
+    private final boolean preEncodedResponses;
 
     /**
      * Creates a new instance with the default {@link Socks5AddressEncoder}.
@@ -39,11 +87,6 @@ public class Socks5ServerEncoder extends MessageToByteEncoder<Socks5Message> {
         this(Socks5AddressEncoder.DEFAULT);
     }
 
-    @Override
-    protected Buffer allocateBuffer(ChannelHandlerContext ctx, Socks5Message msg) {
-        return ctx.bufferAllocator().allocate(256);
-    }
-
     /**
      * Creates a new instance with the specified {@link Socks5AddressEncoder}.
      */
@@ -51,6 +94,18 @@ public class Socks5ServerEncoder extends MessageToByteEncoder<Socks5Message> {
         requireNonNull(addressEncoder, "addressEncoder");
 
         this.addressEncoder = addressEncoder;
+        // Subclasses may override encode(...) and custom address encoders may encode a zero address differently,
+        // so the pre-encoded responses are only used when the encoding is known to be identical.
+        preEncodedResponses = getClass() == Socks5ServerEncoder.class && addressEncoder == Socks5AddressEncoder.DEFAULT;
+    }
+
+    @Override
+    protected Buffer allocateBuffer(ChannelHandlerContext ctx, Socks5Message msg) {
+        // The encoded length of a message with an address is only known for the default address encoder.
+        final int encodedLength = addressEncoder == Socks5AddressEncoder.DEFAULT ||
+                                  !(msg instanceof Socks5CommandRequest || msg instanceof Socks5CommandResponse)?
+                msg.encodedLength() : -1;
+        return ctx.bufferAllocator().allocate(encodedLength >= 0? encodedLength : DEFAULT_BUFFER_SIZE);
     }
 
     /**
@@ -60,6 +115,76 @@ public class Socks5ServerEncoder extends MessageToByteEncoder<Socks5Message> {
         return addressEncoder;
     }
 
+    /**
+     * Returns {@code true} if the common responses are written from pre-encoded buffers instead of being passed to
+     * {@link #encode(ChannelHandlerContext, Socks5Message, Buffer)}.  The default implementation returns {@code true}
+     * only if this encoder is not a subclass and uses {@link Socks5AddressEncoder#DEFAULT}.  A subclass which encodes
+     * these responses like this class does may override it to return {@code true}.
+     */
+    protected boolean usePreEncodedResponses() {
+        return preEncodedResponses;
+    }
+
+    @Override
+    public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof Socks5Message && usePreEncodedResponses()) {
+            final Supplier<Buffer> encoded = preEncoded((Socks5Message) msg);
+            if (encoded != null) {
+                return ctx.write(encoded.get());
+            }
+        }
+        return super.write(ctx, msg);
+    }
+
+    /**
+     * Returns the pre-encoded form of the specified message, or {@code null} if the message has to be encoded.
+     */
+    private static Supplier<Buffer> preEncoded(Socks5Message msg) {
+        if (msg instanceof Socks5InitialResponse) {
+            final Socks5InitialResponse res = (Socks5InitialResponse) msg;
+            if (res.version() != SocksVersion.SOCKS5) {
+                return null;
+            }
+            switch (res.authMethod().byteValue()) {
+            case 0x00:
+                return NO_AUTH_RESPONSE;
+            case 0x01:
+                return GSSAPI_RESPONSE;
+            case 0x02:
+                return PASSWORD_RESPONSE;
+            case (byte) 0xFF:
+                return UNACCEPTED_RESPONSE;
+            default:
+                return null;
+            }
+        }
+        if (msg instanceof Socks5PasswordAuthResponse) {
+            final byte status = ((Socks5PasswordAuthResponse) msg).status().byteValue();
+            if (status == Socks5PasswordAuthStatus.SUCCESS.byteValue()) {
+                return AUTH_SUCCESS_RESPONSE;
+            }
+            if (status == Socks5PasswordAuthStatus.FAILURE.byteValue()) {
+                return AUTH_FAILURE_RESPONSE;
+            }
+            return null;
+        }
+        if (msg instanceof Socks5CommandResponse) {
+            final Socks5CommandResponse res = (Socks5CommandResponse) msg;
+            final int status = res.status().byteValue();
+            if (res.version() != SocksVersion.SOCKS5 ||
+                res.bndAddrType().byteValue() != Socks5AddressType.IPv4.byteValue() || res.bndPort() != 0 ||
+                status < 0 || status >= ZERO_ADDRESS_COMMAND_RESPONSES.length) {
+                return null;
+            }
+            final SocksAddress bndAddress = res.bndAddress();
+            if (bndAddress != null && (!bndAddress.isIPv4() || bndAddress.ipv4Address() != 0)) {
+                return null;
+            }
+            return ZERO_ADDRESS_COMMAND_RESPONSES[status];
+        }
+        return null;
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, Socks5Message msg, Buffer out) throws Exception {
         if (msg instanceof Socks5InitialResponse) {
@@ -90,7 +215,7 @@ public class Socks5ServerEncoder extends MessageToByteEncoder<Socks5Message> {
 
         final Socks5AddressType bndAddrType = msg.bndAddrType();
         out.writeByte(bndAddrType.byteValue());
-        addressEncoder.encodeAddress(bndAddrType, msg.bndAddr(), out);
+        addressEncoder.encodeSocksAddress(bndAddrType, msg.bndAddress(), out);
 
         out.writeShort((short) msg.bndPort());
     }
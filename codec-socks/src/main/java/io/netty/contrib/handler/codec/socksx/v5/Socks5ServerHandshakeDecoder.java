@@ -0,0 +1,305 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.handler.codec.ByteToMessageDecoder;
+import io.netty5.handler.codec.DecoderException;
+import io.netty5.handler.codec.DecoderResult;
+import io.netty5.util.concurrent.Future;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty.contrib.handler.codec.socksx.SocksVersion;
+
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes a complete server-side SOCKS5 handshake from the inbound {@link Buffer}s: a {@link Socks5InitialRequest},
+ * an optional {@link Socks5PasswordAuthRequest} and a {@link Socks5CommandRequest}.
+ * <p>
+ * Unlike {@link Socks5InitialRequestDecoder}, {@link Socks5PasswordAuthRequestDecoder} and
+ * {@link Socks5CommandRequestDecoder}, this decoder does not need to be replaced by another handler between the
+ * handshake steps.  Instead, it watches the responses written by the server: the {@link Socks5InitialResponse} tells
+ * whether a {@link Socks5PasswordAuthRequest} or a {@link Socks5CommandRequest} comes next, and if
+ * {@link Socks5AuthMethod#PASSWORD} was selected, a {@link Socks5CommandRequest} is only decoded after a successful
+ * {@link Socks5PasswordAuthResponse}.  A client which sends a command request instead of the authentication request
+ * fails the decode.  This decoder must be placed between the {@link Socks5ServerEncoder} and the handler which writes
+ * the responses, so that it sees the responses before they are encoded.
+ * <p>
+ * The data received before a response has been written is kept, and decoded once the response has been written.  If
+ * the server writes its responses while it handles the requests, the messages pipelined by a client in a single
+ * segment are decoded and emitted in order in a single decode pass.  Once the {@link Socks5CommandRequest} has been
+ * decoded, this decoder removes itself from the pipeline and forwards the remaining data to the next handler.  On
+ * failed decode, this decoder stays in the pipeline and discards the received data, so that other handler closes the
+ * connection later.
+ */
+public class Socks5ServerHandshakeDecoder extends ByteToMessageDecoder {
+
+    private enum State {
+        INIT,
+        AWAIT_AUTH_METHOD,
+        PASSWORD_AUTH,
+        AWAIT_AUTH_STATUS,
+        COMMAND,
+        SUCCESS,
+        FAILURE
+    }
+
+    private final Socks5AddressDecoder addressDecoder;
+
+    private State state = State.INIT;
+    private boolean decoding;
+
+    public Socks5ServerHandshakeDecoder() {
+        this(Socks5AddressDecoder.DEFAULT);
+    }
+
+    public Socks5ServerHandshakeDecoder(Socks5AddressDecoder addressDecoder) {
+        this.addressDecoder = requireNonNull(addressDecoder, "addressDecoder");
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, Buffer in) throws Exception {
+        decoding = true;
+        try {
+            // Decode as many handshake messages as the cumulation contains in a single pass, so that the requests of
+            // a pipelining client are emitted in order and can be answered with a single write.
+            for (;;) {
+                switch (state) {
+                case INIT: {
+                    Socks5InitialRequest msg = decodeInitialRequest(in);
+                    if (msg == null) {
+                        return;
+                    }
+                    // The server selects the authentication method while it handles the initial request.
+                    state = State.AWAIT_AUTH_METHOD;
+                    ctx.fireChannelRead(msg);
+                    break;
+                }
+                case AWAIT_AUTH_METHOD:
+                case AWAIT_AUTH_STATUS: {
+                    // Decoded once the server has written its response; see write().
+                    return;
+                }
+                case PASSWORD_AUTH: {
+                    if (in.readableBytes() < 1) {
+                        return;
+                    }
+                    if (in.getByte(in.readerOffset()) == SocksVersion.SOCKS5.byteValue()) {
+                        throw new DecoderException("command request received before password authentication");
+                    }
+                    Socks5PasswordAuthRequest msg = decodePasswordAuthRequest(in);
+                    if (msg == null) {
+                        return;
+                    }
+                    state = State.AWAIT_AUTH_STATUS;
+                    ctx.fireChannelRead(msg);
+                    break;
+                }
+                case COMMAND: {
+                    Socks5CommandRequest msg = decodeCommandRequest(in);
+                    if (msg == null) {
+                        return;
+                    }
+                    state = State.SUCCESS;
+                    ctx.fireChannelRead(msg);
+
+                    // The handshake is complete; the data received after the command request (if any) is forwarded
+                    // to the next handler when this decoder is removed.
+                    if (!ctx.isRemoved()) {
+                        ctx.pipeline().remove(this);
+                    }
+                    return;
+                }
+                case SUCCESS: {
+                    int readableBytes = actualReadableBytes();
+                    if (readableBytes > 0) {
+                        ctx.fireChannelRead(in.readSplit(readableBytes));
+                    }
+                    return;
+                }
+                case FAILURE: {
+                    in.skipReadableBytes(actualReadableBytes());
+                    return;
+                }
+                }
+
+                if (ctx.isRemoved()) {
+                    // A handler removed this decoder while handling the decoded message.
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            fail(ctx, e);
+        } finally {
+            decoding = false;
+        }
+    }
+
+    @Override
+    public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+        final State state = this.state;
+        if (state == State.AWAIT_AUTH_METHOD && msg instanceof Socks5InitialResponse) {
+            final Socks5AuthMethod authMethod = ((Socks5InitialResponse) msg).authMethod();
+            if (authMethod == Socks5AuthMethod.NO_AUTH) {
+                resumeDecoding(ctx, State.COMMAND);
+            } else if (authMethod == Socks5AuthMethod.PASSWORD) {
+                resumeDecoding(ctx, State.PASSWORD_AUTH);
+            } else {
+                // No acceptable method, or one this decoder does not support; the server closes the connection.
+                this.state = State.FAILURE;
+            }
+        } else if (state == State.AWAIT_AUTH_STATUS && msg instanceof Socks5PasswordAuthResponse) {
+            if (((Socks5PasswordAuthResponse) msg).status() == Socks5PasswordAuthStatus.SUCCESS) {
+                resumeDecoding(ctx, State.COMMAND);
+            } else {
+                this.state = State.FAILURE;
+            }
+        }
+        return ctx.write(msg);
+    }
+
+    /**
+     * Moves on to the specified state.  If the response has not been written while the request was handled, the
+     * data which has been received in the meantime is decoded later, as it will not be decoded on the next read if
+     * the client waits for the response.
+     */
+    private void resumeDecoding(ChannelHandlerContext ctx, State state) {
+        this.state = state;
+        if (!decoding && actualReadableBytes() > 0) {
+            ctx.executor().execute(() -> decodeCumulation(ctx));
+        }
+    }
+
+    /**
+     * Decodes the data which has been received while this decoder waited for a response, outside a read.
+     */
+    private void decodeCumulation(ChannelHandlerContext ctx) {
+        if (ctx.isRemoved() || actualReadableBytes() == 0) {
+            return;
+        }
+        final State state = this.state;
+        try {
+            decode(ctx, internalBuffer());
+        } catch (Exception e) {
+            ctx.fireChannelExceptionCaught(e);
+            return;
+        }
+        // Every decoded message moves this decoder to another state.
+        if (this.state != state) {
+            ctx.fireChannelReadComplete();
+        }
+    }
+
+    private static Socks5InitialRequest decodeInitialRequest(Buffer in) {
+        if (in.readableBytes() < 2) {
+            return null;
+        }
+        final int startOffset = in.readerOffset();
+        final byte version = in.getByte(startOffset);
+        if (version != SocksVersion.SOCKS5.byteValue()) {
+            throw new DecoderException(
+                    "unsupported version: " + version + " (expected: " + SocksVersion.SOCKS5.byteValue() + ')');
+        }
+
+        final int authMethodCnt = in.getUnsignedByte(startOffset + 1);
+        if (in.readableBytes() < 2 + authMethodCnt) {
+            return null;
+        }
+        in.skipReadableBytes(2);
+        final Socks5AuthMethod[] authMethods = new Socks5AuthMethod[authMethodCnt];
+        for (int i = 0; i < authMethodCnt; i++) {
+            authMethods[i] = Socks5AuthMethod.valueOf(in.readByte());
+        }
+        return new DefaultSocks5InitialRequest(authMethods);
+    }
+
+    private static Socks5PasswordAuthRequest decodePasswordAuthRequest(Buffer in) {
+        if (in.readableBytes() < 3) {
+            return null;
+        }
+        final int startOffset = in.readerOffset();
+        final byte version = in.getByte(startOffset);
+        if (version != 1) {
+            throw new DecoderException("unsupported subnegotiation version: " + version + " (expected: 1)");
+        }
+
+        final int usernameLength = in.getUnsignedByte(startOffset + 1);
+        if (in.readableBytes() < usernameLength + 3) {
+            return null;
+        }
+        final int passwordLength = in.getUnsignedByte(startOffset + 2 + usernameLength);
+        if (in.readableBytes() < usernameLength + passwordLength + 3) {
+            return null;
+        }
+        in.skipReadableBytes(2);
+        String username = in.readCharSequence(usernameLength, StandardCharsets.US_ASCII).toString();
+        in.skipReadableBytes(1);
+        String password = in.readCharSequence(passwordLength, StandardCharsets.US_ASCII).toString();
+        return new DefaultSocks5PasswordAuthRequest(username, password);
+    }
+
+    private Socks5CommandRequest decodeCommandRequest(Buffer in) throws Exception {
+        if (in.readableBytes() < 6) {
+            return null;
+        }
+        final int readerIndex = in.readerOffset();
+        final byte version = in.readByte();
+        if (version != SocksVersion.SOCKS5.byteValue()) {
+            throw new DecoderException(
+                    "unsupported version: " + version + " (expected: " + SocksVersion.SOCKS5.byteValue() + ')');
+        }
+
+        final Socks5CommandType type = Socks5CommandType.valueOf(in.readByte());
+        in.skipReadableBytes(1); // RSV
+        final Socks5AddressType dstAddrType = Socks5AddressType.valueOf(in.readByte());
+
+        final SocksAddress dstAddr = addressDecoder.decodeSocksAddress(dstAddrType, in);
+        if (dstAddr == null || in.readableBytes() < 2) {
+            in.readerOffset(readerIndex);
+            return null;
+        }
+
+        final int dstPort = in.readUnsignedShort();
+        return new DefaultSocks5CommandRequest(type, dstAddrType, dstAddr, dstPort);
+    }
+
+    private void fail(ChannelHandlerContext ctx, Exception cause) {
+        if (!(cause instanceof DecoderException)) {
+            cause = new DecoderException(cause);
+        }
+
+        final Socks5Message m;
+        switch (state) {
+        case INIT:
+            m = new DefaultSocks5InitialRequest(Socks5AuthMethod.NO_AUTH);
+            break;
+        case PASSWORD_AUTH:
+            m = new DefaultSocks5PasswordAuthRequest("", "");
+            break;
+        default:
+            m = new DefaultSocks5CommandRequest(Socks5CommandType.CONNECT, Socks5AddressType.IPv4, "0.0.0.0", 1);
+            break;
+        }
+
+        state = State.FAILURE;
+
+        m.setDecoderResult(DecoderResult.failure(cause));
+        ctx.fireChannelRead(m);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socks;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SocksMessageEncoderTest {
+
+    @Test
+    public void testExactSizeEncoding() {
+        testExactSize(new SocksInitRequest(Arrays.asList(SocksAuthScheme.NO_AUTH, SocksAuthScheme.AUTH_PASSWORD)));
+        testExactSize(new SocksInitResponse(SocksAuthScheme.NO_AUTH));
+        testExactSize(new SocksAuthRequest("username", "password"));
+        testExactSize(new SocksAuthResponse(SocksAuthStatus.SUCCESS));
+        testExactSize(new SocksCmdRequest(SocksCmdType.CONNECT, SocksAddressType.IPv4, "127.0.0.1", 80));
+        testExactSize(new SocksCmdRequest(SocksCmdType.CONNECT, SocksAddressType.DOMAIN, "netty.io", 443));
+        testExactSize(new SocksCmdRequest(SocksCmdType.CONNECT, SocksAddressType.IPv6, "::1", 80));
+        testExactSize(new SocksCmdResponse(SocksCmdStatus.SUCCESS, SocksAddressType.IPv4));
+        testExactSize(new SocksCmdResponse(SocksCmdStatus.SUCCESS, SocksAddressType.DOMAIN));
+        testExactSize(new SocksCmdResponse(SocksCmdStatus.SUCCESS, SocksAddressType.DOMAIN, "netty.io", 443));
+        testExactSize(new SocksCmdResponse(SocksCmdStatus.SUCCESS, SocksAddressType.IPv6, "::1", 80));
+    }
+
+    private static void testExactSize(SocksMessage msg) {
+        EmbeddedChannel channel = new EmbeddedChannel(new SocksMessageEncoder());
+        assertTrue(channel.writeOutbound(msg));
+        try (Buffer encoded = channel.readOutbound()) {
+            assertEquals(msg.encodedLength(), encoded.readableBytes());
+            assertEquals(encoded.readableBytes(), encoded.capacity());
+        }
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.BufferAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SocksAddressTest {
+
+    @Test
+    public void testIpv4() {
+        SocksAddress address = SocksAddress.ipv4(0x7F000001);
+        assertTrue(address.isIPv4());
+        assertFalse(address.isIPv6());
+        assertFalse(address.isDomain());
+        assertEquals(4, address.length());
+        assertEquals("127.0.0.1", address.toString());
+        assertEquals(address, SocksAddress.valueOf("127.0.0.1"));
+        assertEquals(address.hashCode(), SocksAddress.valueOf("127.0.0.1").hashCode());
+        assertThrows(IllegalStateException.class, address::ipv6High);
+    }
+
+    @Test
+    public void testIpv6() {
+        SocksAddress address = SocksAddress.valueOf("::1");
+        assertTrue(address.isIPv6());
+        assertEquals(16, address.length());
+        assertEquals(0, address.ipv6High());
+        assertEquals(1, address.ipv6Low());
+        assertEquals(SocksAddress.ipv6(0, 1), address);
+        assertEquals("::1", address.toString());
+        assertEquals("::1", SocksAddress.ipv6(0, 1).toString());
+        assertThrows(IllegalStateException.class, address::ipv4Address);
+    }
+
+    @Test
+    public void testDomain() {
+        SocksAddress address = SocksAddress.domain("netty.io");
+        assertTrue(address.isDomain());
+        assertEquals(8, address.length());
+        assertEquals("netty.io", address.toString());
+        assertEquals(address, SocksAddress.valueOf("netty.io"));
+        assertNotEquals(address, SocksAddress.valueOf("127.0.0.1"));
+
+        assertEquals("xn--e1aybc.xn--p1ai", SocksAddress.domain("\u0442\u0435\u0441\u0442.\u0440\u0444").toString());
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 256; i++) {
+            sb.append('a');
+        }
+        assertThrows(IllegalArgumentException.class, () -> SocksAddress.domain(sb.toString()));
+    }
+
+    @Test
+    public void testValueOfRetainsText() {
+        String text = "0:0:0:0:0:0:0:1";
+        assertSame(text, SocksAddress.valueOf(text).toString());
+    }
+
+    @Test
+    public void testOfInetSocketAddress() throws Exception {
+        assertEquals(SocksAddress.domain("netty.io"),
+                     SocksAddress.of(InetSocketAddress.createUnresolved("netty.io", 443)));
+        assertEquals(SocksAddress.ipv4(0x7F000001),
+                     SocksAddress.of(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 80)));
+        assertEquals(SocksAddress.ipv4(0xC0A80001), SocksAddress.of(InetAddress.getByName("192.168.0.1")));
+        assertEquals(SocksAddress.ipv6(0, 1),
+                     SocksAddress.of(new InetSocketAddress(InetAddress.getByName("::1"), 80)));
+    }
+
+    @Test
+    public void testToInetAddress() throws Exception {
+        assertEquals(InetAddress.getByName("192.168.0.1"), SocksAddress.ipv4(0xC0A80001).toInetAddress());
+        assertEquals(InetAddress.getByName("2001:db8::1"),
+                     SocksAddress.ipv6(0x20010DB800000000L, 1).toInetAddress());
+        assertThrows(IllegalStateException.class, () -> SocksAddress.domain("netty.io").toInetAddress());
+    }
+
+    @Test
+    public void testWriteAndRead() {
+        try (Buffer buffer = BufferAllocator.onHeapUnpooled().allocate(64)) {
+            SocksAddress.ipv4(0x0A000001).writeTo(buffer);
+            SocksAddress.ipv6(0x20010DB800000000L, 1).writeTo(buffer);
+            SocksAddress.domain("netty.io").writeTo(buffer);
+
+            assertEquals(SocksAddress.valueOf("10.0.0.1"), SocksAddress.ipv4(buffer.readInt()));
+            long high = buffer.readLong();
+            assertEquals(SocksAddress.valueOf("2001:db8::1"), SocksAddress.ipv6(high, buffer.readLong()));
+            assertEquals(SocksAddress.domain("netty.io"), SocksAddress.readDomain(buffer, 8));
+            assertEquals(0, buffer.readableBytes());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v4;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Socks4ClientEncoderTest {
+
+    @Test
+    public void testExactSizeEncoding() {
+        testExactSize(new DefaultSocks4CommandRequest(Socks4CommandType.CONNECT, "127.0.0.1", 80, "user"));
+        testExactSize(new DefaultSocks4CommandRequest(Socks4CommandType.CONNECT, "netty.io", 443, "user"));
+        testExactSize(new DefaultSocks4CommandRequest(Socks4CommandType.BIND, "netty.io", 443));
+    }
+
+    private static void testExactSize(Socks4CommandRequest msg) {
+        EmbeddedChannel channel = new EmbeddedChannel(Socks4ClientEncoder.INSTANCE);
+        assertTrue(channel.writeOutbound(msg));
+        try (Buffer encoded = channel.readOutbound()) {
+            assertEquals(msg.encodedLength(), encoded.readableBytes());
+            assertEquals(encoded.readableBytes(), encoded.capacity());
+        }
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Socks5ClientEncoderTest {
+
+    @Test
+    public void testExactSizeEncoding() {
+        testExactSize(new DefaultSocks5InitialRequest(Socks5AuthMethod.NO_AUTH, Socks5AuthMethod.PASSWORD));
+        testExactSize(new DefaultSocks5PasswordAuthRequest("username", "password"));
+        testExactSize(new DefaultSocks5CommandRequest(
+                Socks5CommandType.CONNECT, Socks5AddressType.IPv4, "127.0.0.1", 80));
+        testExactSize(new DefaultSocks5CommandRequest(
+                Socks5CommandType.CONNECT, Socks5AddressType.DOMAIN, "netty.io", 443));
+        testExactSize(new DefaultSocks5CommandRequest(
+                Socks5CommandType.CONNECT, Socks5AddressType.IPv6, "::1", 80));
+    }
+
+    @Test
+    public void testCustomAddressEncoderFallsBackToDefaultBufferSize() {
+        Socks5ClientEncoder encoder = new Socks5ClientEncoder(Socks5AddressEncoder.DEFAULT::encodeAddress);
+        EmbeddedChannel channel = new EmbeddedChannel(encoder);
+        assertTrue(channel.writeOutbound(new DefaultSocks5CommandRequest(
+                Socks5CommandType.CONNECT, Socks5AddressType.DOMAIN, "netty.io", 443)));
+        try (Buffer encoded = channel.readOutbound()) {
+            assertEquals(4 + 1 + 8 + 2, encoded.readableBytes());
+        }
+        assertFalse(channel.finish());
+    }
+
+    private static void testExactSize(Socks5Message msg) {
+        EmbeddedChannel channel = new EmbeddedChannel(Socks5ClientEncoder.DEFAULT);
+        assertTrue(channel.writeOutbound(msg));
+        try (Buffer encoded = channel.readOutbound()) {
+            assertEquals(msg.encodedLength(), encoded.readableBytes());
+            assertEquals(encoded.readableBytes(), encoded.capacity());
+        }
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Socks5ClientHandshakeDecoderTest {
+
+    @Test
+    public void testNoAuthResponsesInSingleRead() {
+        EmbeddedChannel e = new EmbeddedChannel(new Socks5ClientHandshakeDecoder());
+        assertTrue(e.writeInbound(e.bufferAllocator().copyOf(new byte[] {
+                5, 0,                             // initial response: NO_AUTH
+                5, 0, 0, 1, 127, 0, 0, 1, 0, 80,  // command response: SUCCESS, 127.0.0.1:80
+                'A' })));
+
+        Socks5InitialResponse initialResponse = e.readInbound();
+        assertTrue(initialResponse.decoderResult().isSuccess());
+        assertEquals(Socks5AuthMethod.NO_AUTH, initialResponse.authMethod());
+
+        Socks5CommandResponse commandResponse = e.readInbound();
+        assertTrue(commandResponse.decoderResult().isSuccess());
+        assertEquals(Socks5CommandStatus.SUCCESS, commandResponse.status());
+        assertEquals("127.0.0.1", commandResponse.bndAddr());
+        assertEquals(80, commandResponse.bndPort());
+
+        try (Buffer remaining = e.readInbound()) {
+            assertEquals(1, remaining.readableBytes());
+            assertEquals('A', remaining.readByte());
+        }
+        assertNull(e.readInbound());
+        assertFalse(e.finish());
+    }
+
+    @Test
+    public void testPasswordAuthResponses() {
+        EmbeddedChannel e = new EmbeddedChannel(new Socks5ClientHandshakeDecoder());
+        assertTrue(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 5, 2, 1 })));
+        Socks5InitialResponse initialResponse = e.readInbound();
+        assertEquals(Socks5AuthMethod.PASSWORD, initialResponse.authMethod());
+        assertNull(e.readInbound());
+
+        assertTrue(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 0, 5, 0, 0, 1, 10, 0 })));
+        Socks5PasswordAuthResponse authResponse = e.readInbound();
+        assertTrue(authResponse.decoderResult().isSuccess());
+        assertEquals(Socks5PasswordAuthStatus.SUCCESS, authResponse.status());
+        assertNull(e.readInbound());
+
+        assertTrue(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 0, 0, 1, 1, (byte) 0xBB })));
+        Socks5CommandResponse commandResponse = e.readInbound();
+        assertEquals(Socks5CommandStatus.SUCCESS, commandResponse.status());
+        assertEquals("10.0.0.1", commandResponse.bndAddr());
+        assertEquals(443, commandResponse.bndPort());
+
+        assertNull(e.readInbound());
+        assertFalse(e.finish());
+    }
+
+    @Test
+    public void testInvalidSubnegotiationVersionCausesDecodeFail() {
+        EmbeddedChannel e = new EmbeddedChannel(new Socks5ClientHandshakeDecoder());
+        assertTrue(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 5, 2, 5, 0 })));
+        Socks5InitialResponse initialResponse = e.readInbound();
+        assertTrue(initialResponse.decoderResult().isSuccess());
+
+        Socks5PasswordAuthResponse authResponse = e.readInbound();
+        assertTrue(authResponse.decoderResult().isFailure());
+        assertEquals(Socks5PasswordAuthStatus.FAILURE, authResponse.status());
+
+        assertFalse(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 5, 0 })));
+        assertFalse(e.finish());
+    }
+}
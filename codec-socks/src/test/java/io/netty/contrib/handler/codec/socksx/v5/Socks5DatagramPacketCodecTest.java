@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.CompositeBuffer;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.channel.socket.DatagramPacket;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class Socks5DatagramPacketCodecTest {
+
+    private static final InetSocketAddress CLIENT = new InetSocketAddress("127.0.0.1", 40000);
+    private static final InetSocketAddress RELAY = new InetSocketAddress("127.0.0.1", 1080);
+
+    @Test
+    public void testDecodeIPv4() {
+        EmbeddedChannel ch = new EmbeddedChannel(Socks5DatagramPacketDecoder.DEFAULT);
+        byte[] datagram = { 0, 0, 0, 1, 10, 0, 0, 1, 0, 53, 'h', 'e', 'l', 'l', 'o' };
+        ch.writeInbound(new DatagramPacket(preferredAllocator().copyOf(datagram), RELAY, CLIENT));
+
+        try (Socks5DatagramPacket packet = ch.readInbound()) {
+            assertEquals(0, packet.frag());
+            assertFalse(packet.isFragment());
+            assertSame(Socks5AddressType.IPv4, packet.dstAddrType());
+            assertEquals(SocksAddress.valueOf("10.0.0.1"), packet.dstAddress());
+            assertEquals(53, packet.dstPort());
+            assertEquals(RELAY, packet.recipient());
+            assertEquals(CLIENT, packet.sender());
+            assertEquals("hello", packet.content().toString(US_ASCII));
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testDecodeDomainFragment() {
+        EmbeddedChannel ch = new EmbeddedChannel(Socks5DatagramPacketDecoder.DEFAULT);
+        byte[] datagram = { 0, 0, (byte) 0x81, 3, 8, 'n', 'e', 't', 't', 'y', '.', 'i', 'o', 1, (byte) 0xbb, 'x' };
+        ch.writeInbound(new DatagramPacket(preferredAllocator().copyOf(datagram), RELAY, CLIENT));
+
+        try (Socks5DatagramPacket packet = ch.readInbound()) {
+            assertEquals(0x81, packet.frag());
+            assertSame(Socks5AddressType.DOMAIN, packet.dstAddrType());
+            assertEquals("netty.io", packet.dstAddress().toString());
+            assertEquals(443, packet.dstPort());
+            assertEquals("x", packet.content().toString(US_ASCII));
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testMalformedDatagramsAreDropped() {
+        EmbeddedChannel ch = new EmbeddedChannel(Socks5DatagramPacketDecoder.DEFAULT);
+        byte[][] datagrams = {
+                { 0, 0, 0 },                               // Too short
+                { 0, 1, 0, 1, 10, 0, 0, 1, 0, 53 },        // Non-zero RSV
+                { 0, 0, 0, 2, 10, 0, 0, 1, 0, 53 },        // Unsupported ATYP
+                { 0, 0, 0, 1, 10, 0, 0 },                  // Truncated IPv4 address
+                { 0, 0, 0, 3, 8, 'n', 'e', 't', 't', 'y' } // Truncated domain
+        };
+        for (byte[] datagram : datagrams) {
+            ch.writeInbound(new DatagramPacket(preferredAllocator().copyOf(datagram), RELAY, CLIENT));
+            assertNull(ch.readInbound());
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testEncode() {
+        EmbeddedChannel ch = new EmbeddedChannel(Socks5DatagramPacketEncoder.DEFAULT);
+        Buffer content = preferredAllocator().copyOf("hello".getBytes(US_ASCII));
+        ch.writeOutbound(new Socks5DatagramPacket(content, CLIENT, SocksAddress.valueOf("10.0.0.1"), 53));
+
+        try (DatagramPacket packet = ch.readOutbound()) {
+            assertEquals(CLIENT, packet.recipient());
+            byte[] encoded = new byte[packet.content().readableBytes()];
+            packet.content().readBytes(encoded, 0, encoded.length);
+            assertArrayEquals(new byte[] { 0, 0, 0, 1, 10, 0, 0, 1, 0, 53, 'h', 'e', 'l', 'l', 'o' }, encoded);
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testEncodeWithCustomAddressEncoder() {
+        Socks5AddressEncoder addressEncoder = Socks5AddressEncoder.DEFAULT::encodeAddress;
+        EmbeddedChannel ch = new EmbeddedChannel(new Socks5DatagramPacketEncoder(addressEncoder));
+        Buffer content = preferredAllocator().copyOf("hello".getBytes(US_ASCII));
+        ch.writeOutbound(new Socks5DatagramPacket(content, CLIENT, SocksAddress.valueOf("netty.io"), 443));
+
+        try (DatagramPacket packet = ch.readOutbound()) {
+            byte[] encoded = new byte[packet.content().readableBytes()];
+            packet.content().readBytes(encoded, 0, encoded.length);
+            assertArrayEquals(new byte[] { 0, 0, 0, 3, 8, 'n', 'e', 't', 't', 'y', '.', 'i', 'o', 1, (byte) 0xbb,
+                                           'h', 'e', 'l', 'l', 'o' }, encoded);
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testEncodeComposesPayload() {
+        EmbeddedChannel ch = new EmbeddedChannel(Socks5DatagramPacketEncoder.DEFAULT);
+        Buffer content = preferredAllocator().allocate(16).writeBytes("xxhello".getBytes(US_ASCII));
+        content.skipReadableBytes(2);
+        ch.writeOutbound(new Socks5DatagramPacket(content, CLIENT, SocksAddress.valueOf("10.0.0.1"), 53));
+
+        try (DatagramPacket packet = ch.readOutbound()) {
+            // The header is a separate component, and the skipped and unwritten bytes of the payload are not sent.
+            CompositeBuffer encoded = assertInstanceOf(CompositeBuffer.class, packet.content());
+            assertEquals(2, encoded.countComponents());
+            assertEquals(15, encoded.readableBytes());
+            encoded.skipReadableBytes(10);
+            assertEquals("hello", encoded.toString(US_ASCII));
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        EmbeddedChannel ch = new EmbeddedChannel(Socks5DatagramPacketEncoder.DEFAULT);
+        for (String address : new String[] { "::1", "netty.io", "192.168.0.1" }) {
+            Buffer content = preferredAllocator().copyOf(new byte[] { 1, 2, 3 });
+            ch.writeOutbound(new Socks5DatagramPacket(content, RELAY, SocksAddress.valueOf(address), 8080));
+            DatagramPacket encoded = ch.readOutbound();
+
+            EmbeddedChannel decoder = new EmbeddedChannel(Socks5DatagramPacketDecoder.DEFAULT);
+            decoder.writeInbound(encoded);
+            try (Socks5DatagramPacket packet = decoder.readInbound()) {
+                assertEquals(SocksAddress.valueOf(address), packet.dstAddress());
+                assertEquals(8080, packet.dstPort());
+                assertEquals(3, packet.content().readableBytes());
+            }
+            assertFalse(decoder.finish());
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testInvalidFields() {
+        SocksAddress address = SocksAddress.valueOf("10.0.0.1");
+        try (Buffer content = preferredAllocator().allocate(0)) {
+            assertThrows(IllegalArgumentException.class, () -> new Socks5DatagramPacket(
+                    content, RELAY, null, 256, Socks5AddressType.IPv4, address, 53));
+            assertThrows(IllegalArgumentException.class, () -> new Socks5DatagramPacket(
+                    content, RELAY, null, 0, Socks5AddressType.IPv6, address, 53));
+            assertThrows(IllegalArgumentException.class, () -> new Socks5DatagramPacket(
+                    content, RELAY, address, 65536));
+        }
+    }
+}
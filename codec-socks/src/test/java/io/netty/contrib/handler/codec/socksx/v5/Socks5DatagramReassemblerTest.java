@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.channel.socket.DatagramPacket;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class Socks5DatagramReassemblerTest {
+
+    private static final InetSocketAddress CLIENT = new InetSocketAddress("127.0.0.1", 40000);
+    private static final InetSocketAddress RELAY = new InetSocketAddress("127.0.0.1", 1080);
+    private static final SocksAddress DESTINATION = SocksAddress.valueOf("10.0.0.1");
+
+    @Test
+    public void testReassembly() {
+        EmbeddedChannel ch = new EmbeddedChannel(new Socks5DatagramReassembler());
+        ch.writeInbound(fragment(1, "Hello, "));
+        ch.writeInbound(fragment(2, "fragmented "));
+        assertNull(ch.readInbound());
+        ch.writeInbound(fragment(0x83, "world"));
+
+        try (Socks5DatagramPacket packet = ch.readInbound()) {
+            assertEquals(0, packet.frag());
+            assertEquals(DESTINATION, packet.dstAddress());
+            assertEquals(53, packet.dstPort());
+            assertEquals(CLIENT, packet.sender());
+            assertEquals("Hello, fragmented world", packet.content().toString(US_ASCII));
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testFragmentsAreSplitsOfDecodedDatagrams() {
+        EmbeddedChannel ch = new EmbeddedChannel(Socks5DatagramPacketDecoder.DEFAULT, new Socks5DatagramReassembler());
+        for (byte[] datagram : new byte[][] {
+                { 0, 0, 1, 1, 10, 0, 0, 1, 0, 53, 'a', 'b' },
+                { 0, 0, (byte) 0x82, 1, 10, 0, 0, 1, 0, 53, 'c' } }) {
+            ch.writeInbound(new DatagramPacket(
+                    preferredAllocator().copyOf(datagram), RELAY, CLIENT));
+        }
+
+        try (Socks5DatagramPacket packet = ch.readInbound()) {
+            assertEquals("abc", packet.content().toString(US_ASCII));
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testStandaloneDatagramsPassThrough() {
+        EmbeddedChannel ch = new EmbeddedChannel(new Socks5DatagramReassembler());
+        ch.writeInbound(fragment(1, "lost"));
+        ch.writeInbound(fragment(0, "standalone"));
+
+        try (Socks5DatagramPacket packet = ch.readInbound()) {
+            assertEquals("standalone", packet.content().toString(US_ASCII));
+        }
+        // The standalone datagram has abandoned the fragment sequence.
+        ch.writeInbound(fragment(0x82, "end"));
+        assertNull(ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testMissingFragmentAbandonsSequence() {
+        Socks5DatagramReassembler reassembler = new Socks5DatagramReassembler();
+        EmbeddedChannel ch = new EmbeddedChannel(reassembler);
+        ch.writeInbound(fragment(1, "a"));
+        ch.writeInbound(fragment(0x83, "c"));
+        assertNull(ch.readInbound());
+        assertEquals(0, reassembler.reassemblyBytes());
+
+        // A new sequence can start right away.
+        ch.writeInbound(fragment(1, "x"));
+        ch.writeInbound(fragment(0x82, "y"));
+        try (Socks5DatagramPacket packet = ch.readInbound()) {
+            assertEquals("xy", packet.content().toString(US_ASCII));
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        Socks5DatagramReassembler reassembler = new Socks5DatagramReassembler(8, 5000);
+        EmbeddedChannel ch = new EmbeddedChannel(reassembler);
+        ch.writeInbound(fragment(1, "12345"));
+        assertEquals(5, reassembler.reassemblyBytes());
+        ch.writeInbound(fragment(0x82, "6789"));
+        assertNull(ch.readInbound());
+        assertEquals(0, reassembler.reassemblyBytes());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testReassemblyTimeout() throws Exception {
+        Socks5DatagramReassembler reassembler = new Socks5DatagramReassembler(1024, 10);
+        EmbeddedChannel ch = new EmbeddedChannel(reassembler);
+        ch.writeInbound(fragment(1, "a"));
+        assertEquals(1, reassembler.reassemblyBytes());
+
+        Thread.sleep(50);
+        ch.runPendingTasks();
+        assertEquals(0, reassembler.reassemblyBytes());
+        ch.writeInbound(fragment(0x82, "b"));
+        assertNull(ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
+    private static Socks5DatagramPacket fragment(int frag, String content) {
+        return new Socks5DatagramPacket(preferredAllocator().copyOf(content.getBytes(US_ASCII)), RELAY, CLIENT,
+                                        frag, Socks5AddressType.IPv4, DESTINATION, 53);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Socks5ServerEncoderTest {
+
+    /**
+     * A subclass always encodes the messages itself, so it is used as the reference for the pre-encoded responses.
+     */
+    private static final Socks5ServerEncoder REFERENCE_ENCODER =
+            new Socks5ServerEncoder(Socks5AddressEncoder.DEFAULT) { };
+
+    @Test
+    public void testPreEncodedInitialResponses() {
+        testPreEncoded(new DefaultSocks5InitialResponse(Socks5AuthMethod.NO_AUTH));
+        testPreEncoded(new DefaultSocks5InitialResponse(Socks5AuthMethod.GSSAPI));
+        testPreEncoded(new DefaultSocks5InitialResponse(Socks5AuthMethod.PASSWORD));
+        testPreEncoded(new DefaultSocks5InitialResponse(Socks5AuthMethod.UNACCEPTED));
+    }
+
+    @Test
+    public void testPreEncodedPasswordAuthResponses() {
+        testPreEncoded(new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.SUCCESS));
+        testPreEncoded(new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.FAILURE));
+    }
+
+    @Test
+    public void testPreEncodedCommandResponses() {
+        testPreEncoded(new DefaultSocks5CommandResponse(Socks5CommandStatus.FAILURE, Socks5AddressType.IPv4));
+        testPreEncoded(new DefaultSocks5CommandResponse(Socks5CommandStatus.SUCCESS, Socks5AddressType.IPv4));
+        testPreEncoded(new DefaultSocks5CommandResponse(
+                Socks5CommandStatus.COMMAND_UNSUPPORTED, Socks5AddressType.IPv4, "0.0.0.0", 0));
+    }
+
+    @Test
+    public void testEncodedCommandResponses() {
+        testEncoded(new DefaultSocks5CommandResponse(
+                Socks5CommandStatus.SUCCESS, Socks5AddressType.IPv4, "127.0.0.1", 1080));
+        testEncoded(new DefaultSocks5CommandResponse(
+                Socks5CommandStatus.SUCCESS, Socks5AddressType.IPv4, "0.0.0.0", 1080));
+        testEncoded(new DefaultSocks5CommandResponse(Socks5CommandStatus.FAILURE, Socks5AddressType.DOMAIN));
+        testEncoded(new DefaultSocks5CommandResponse(new Socks5CommandStatus(0x42), Socks5AddressType.IPv4));
+    }
+
+    @Test
+    public void testSubclassCanUsePreEncodedResponses() {
+        Socks5ServerEncoder encoder = new Socks5ServerEncoder(Socks5AddressEncoder.DEFAULT) {
+            @Override
+            protected boolean usePreEncodedResponses() {
+                return true;
+            }
+        };
+        Socks5Message msg = new DefaultSocks5InitialResponse(Socks5AuthMethod.NO_AUTH);
+        try (Buffer encoded = encode(encoder, msg);
+             Buffer reference = encode(REFERENCE_ENCODER, msg)) {
+            assertTrue(encoded.readOnly());
+            assertFalse(reference.readOnly());
+        }
+    }
+
+    private static void testPreEncoded(Socks5Message msg) {
+        try (Buffer expected = encode(REFERENCE_ENCODER, msg);
+             Buffer actual = encode(Socks5ServerEncoder.DEFAULT, msg)) {
+            assertTrue(actual.readOnly());
+            assertArrayEquals(toByteArray(expected), toByteArray(actual));
+        }
+    }
+
+    private static void testEncoded(Socks5Message msg) {
+        try (Buffer expected = encode(REFERENCE_ENCODER, msg);
+             Buffer actual = encode(Socks5ServerEncoder.DEFAULT, msg)) {
+            assertFalse(actual.readOnly());
+            assertEquals(msg.encodedLength(), actual.readableBytes());
+            assertEquals(actual.readableBytes(), actual.capacity());
+            assertArrayEquals(toByteArray(expected), toByteArray(actual));
+        }
+    }
+
+    private static Buffer encode(Socks5ServerEncoder encoder, Socks5Message msg) {
+        EmbeddedChannel channel = new EmbeddedChannel(encoder);
+        assertTrue(channel.writeOutbound(msg));
+        Buffer encoded = channel.readOutbound();
+        assertFalse(channel.finish());
+        return encoded;
+    }
+
+    private static byte[] toByteArray(Buffer buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.copyInto(buffer.readerOffset(), bytes, 0, bytes.length);
+        return bytes;
+    }
+}
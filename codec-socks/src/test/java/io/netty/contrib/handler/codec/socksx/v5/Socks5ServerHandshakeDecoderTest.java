@@ -0,0 +1,322 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.socksx.v5;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Socks5ServerHandshakeDecoderTest {
+
+    @Test
+    public void testNoAuthHandshake() {
+        EmbeddedChannel e = newChannel(Socks5AuthMethod.NO_AUTH);
+        Socks5CommonTestUtils.writeFromClientToServer(
+                e, new DefaultSocks5InitialRequest(Socks5AuthMethod.NO_AUTH));
+        Socks5InitialRequest initialRequest = e.readInbound();
+        assertTrue(initialRequest.decoderResult().isSuccess());
+        assertEquals(Socks5AuthMethod.NO_AUTH, initialRequest.authMethods().get(0));
+        assertNotNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+
+        Socks5CommonTestUtils.writeFromClientToServer(e, new DefaultSocks5CommandRequest(
+                Socks5CommandType.CONNECT, Socks5AddressType.DOMAIN, "netty.io", 443));
+        Socks5CommandRequest commandRequest = e.readInbound();
+        assertTrue(commandRequest.decoderResult().isSuccess());
+        assertEquals(Socks5CommandType.CONNECT, commandRequest.type());
+        assertEquals("netty.io", commandRequest.dstAddr());
+        assertEquals(443, commandRequest.dstPort());
+        assertNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+
+        assertNull(e.readInbound());
+        finish(e);
+    }
+
+    @Test
+    public void testPasswordAuthHandshake() {
+        EmbeddedChannel e = newChannel(Socks5AuthMethod.PASSWORD);
+        Socks5CommonTestUtils.writeFromClientToServer(
+                e, new DefaultSocks5InitialRequest(Socks5AuthMethod.NO_AUTH, Socks5AuthMethod.PASSWORD));
+        Socks5InitialRequest initialRequest = e.readInbound();
+        assertEquals(2, initialRequest.authMethods().size());
+
+        Socks5CommonTestUtils.writeFromClientToServer(e, new DefaultSocks5PasswordAuthRequest("user", "pass"));
+        Socks5PasswordAuthRequest authRequest = e.readInbound();
+        assertTrue(authRequest.decoderResult().isSuccess());
+        assertEquals("user", authRequest.username());
+        assertEquals("pass", authRequest.password());
+        assertNotNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+
+        Socks5CommonTestUtils.writeFromClientToServer(e, new DefaultSocks5CommandRequest(
+                Socks5CommandType.CONNECT, Socks5AddressType.IPv4, "127.0.0.1", 80));
+        Socks5CommandRequest commandRequest = e.readInbound();
+        assertEquals("127.0.0.1", commandRequest.dstAddr());
+        assertNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+
+        assertNull(e.readInbound());
+        finish(e);
+    }
+
+    @Test
+    public void testFragmentedHandshakeForwardsRemainingData() {
+        EmbeddedChannel e = newChannel(Socks5AuthMethod.NO_AUTH);
+        assertFalse(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 5, 1 })));
+        assertTrue(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 0, 5, 1, 0, 1, 127 })));
+        Socks5InitialRequest initialRequest = e.readInbound();
+        assertTrue(initialRequest.decoderResult().isSuccess());
+        assertNull(e.readInbound());
+
+        assertTrue(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 0, 0, 1, 0, 80, 'A', 'B' })));
+        Socks5CommandRequest commandRequest = e.readInbound();
+        assertEquals("127.0.0.1", commandRequest.dstAddr());
+        assertEquals(80, commandRequest.dstPort());
+
+        try (Buffer remaining = e.readInbound()) {
+            assertEquals(2, remaining.readableBytes());
+            assertEquals('A', remaining.readByte());
+            assertEquals('B', remaining.readByte());
+        }
+        assertNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+        finish(e);
+    }
+
+    @Test
+    public void testPipelinedHandshakeInSingleBuffer() {
+        EmbeddedChannel e = newChannel(Socks5AuthMethod.PASSWORD);
+        try (Buffer initialRequest = Socks5CommonTestUtils.encodeClient(
+                     new DefaultSocks5InitialRequest(Socks5AuthMethod.PASSWORD));
+             Buffer authRequest = Socks5CommonTestUtils.encodeClient(
+                     new DefaultSocks5PasswordAuthRequest("user", "pass"));
+             Buffer commandRequest = Socks5CommonTestUtils.encodeClient(new DefaultSocks5CommandRequest(
+                     Socks5CommandType.CONNECT, Socks5AddressType.DOMAIN, "netty.io", 443))) {
+            Buffer pipelined = e.bufferAllocator().allocate(initialRequest.readableBytes() +
+                                                            authRequest.readableBytes() +
+                                                            commandRequest.readableBytes() + 1);
+            pipelined.writeBytes(initialRequest);
+            pipelined.writeBytes(authRequest);
+            pipelined.writeBytes(commandRequest);
+            pipelined.writeByte((byte) 'A');
+            assertTrue(e.writeInbound(pipelined));
+        }
+
+        Socks5InitialRequest initialRequest = e.readInbound();
+        assertEquals(Socks5AuthMethod.PASSWORD, initialRequest.authMethods().get(0));
+        Socks5PasswordAuthRequest authRequest = e.readInbound();
+        assertEquals("user", authRequest.username());
+        Socks5CommandRequest commandRequest = e.readInbound();
+        assertEquals("netty.io", commandRequest.dstAddr());
+        assertEquals(443, commandRequest.dstPort());
+        try (Buffer remaining = e.readInbound()) {
+            assertEquals(1, remaining.readableBytes());
+            assertEquals('A', remaining.readByte());
+        }
+        assertNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+        finish(e);
+    }
+
+    @Test
+    public void testCommandWithoutPasswordAuthIsRejected() {
+        EmbeddedChannel e = newChannel(Socks5AuthMethod.PASSWORD);
+        try (Buffer initialRequest = Socks5CommonTestUtils.encodeClient(
+                     new DefaultSocks5InitialRequest(Socks5AuthMethod.NO_AUTH, Socks5AuthMethod.PASSWORD));
+             Buffer commandRequest = Socks5CommonTestUtils.encodeClient(new DefaultSocks5CommandRequest(
+                     Socks5CommandType.CONNECT, Socks5AddressType.DOMAIN, "netty.io", 443))) {
+            Buffer pipelined = e.bufferAllocator().allocate(initialRequest.readableBytes() +
+                                                            commandRequest.readableBytes());
+            pipelined.writeBytes(initialRequest);
+            pipelined.writeBytes(commandRequest);
+            assertTrue(e.writeInbound(pipelined));
+        }
+
+        Socks5InitialRequest initialRequest = e.readInbound();
+        assertTrue(initialRequest.decoderResult().isSuccess());
+        // The server selected PASSWORD, so the command request must not be decoded.
+        Socks5PasswordAuthRequest authRequest = e.readInbound();
+        assertTrue(authRequest.decoderResult().isFailure());
+        assertNull(e.readInbound());
+
+        assertFalse(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 5, 1, 0, 1, 127, 0, 0, 1, 0, 80 })));
+        assertNotNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+        finish(e);
+    }
+
+    @Test
+    public void testCommandAfterFailedPasswordAuthIsDiscarded() {
+        EmbeddedChannel e = new EmbeddedChannel(new Socks5ServerHandshakeDecoder());
+        Socks5CommonTestUtils.writeFromClientToServer(
+                e, new DefaultSocks5InitialRequest(Socks5AuthMethod.PASSWORD));
+        assertNotNull(e.readInbound());
+        e.writeOutbound(new DefaultSocks5InitialResponse(Socks5AuthMethod.PASSWORD));
+
+        Socks5CommonTestUtils.writeFromClientToServer(e, new DefaultSocks5PasswordAuthRequest("user", "wrong"));
+        assertNotNull(e.readInbound());
+        e.writeOutbound(new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.FAILURE));
+
+        assertFalse(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 5, 1, 0, 1, 127, 0, 0, 1, 0, 80 })));
+        finish(e);
+    }
+
+    @Test
+    public void testRequestsReceivedBeforeResponseAreDecodedLater() {
+        EmbeddedChannel e = new EmbeddedChannel(new Socks5ServerHandshakeDecoder());
+        try (Buffer initialRequest = Socks5CommonTestUtils.encodeClient(
+                     new DefaultSocks5InitialRequest(Socks5AuthMethod.NO_AUTH));
+             Buffer commandRequest = Socks5CommonTestUtils.encodeClient(new DefaultSocks5CommandRequest(
+                     Socks5CommandType.CONNECT, Socks5AddressType.DOMAIN, "netty.io", 443))) {
+            Buffer pipelined = e.bufferAllocator().allocate(initialRequest.readableBytes() +
+                                                            commandRequest.readableBytes());
+            pipelined.writeBytes(initialRequest);
+            pipelined.writeBytes(commandRequest);
+            assertTrue(e.writeInbound(pipelined));
+        }
+        assertNotNull(e.readInbound());
+        // The command request waits for the server to select the authentication method.
+        assertNull(e.readInbound());
+
+        e.writeOutbound(new DefaultSocks5InitialResponse(Socks5AuthMethod.NO_AUTH));
+        e.runPendingTasks();
+        Socks5CommandRequest commandRequest = e.readInbound();
+        assertTrue(commandRequest.decoderResult().isSuccess());
+        assertEquals("netty.io", commandRequest.dstAddr());
+        assertNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+        finish(e);
+    }
+
+    @Test
+    public void testPipelinedHandshakeWithAsynchronousResponses() {
+        ReadCompleteCounter readCompletes = new ReadCompleteCounter();
+        EmbeddedChannel e = new EmbeddedChannel(
+                new Socks5ServerHandshakeDecoder(), new Responder(Socks5AuthMethod.PASSWORD, true), readCompletes);
+        try (Buffer initialRequest = Socks5CommonTestUtils.encodeClient(
+                     new DefaultSocks5InitialRequest(Socks5AuthMethod.PASSWORD));
+             Buffer authRequest = Socks5CommonTestUtils.encodeClient(
+                     new DefaultSocks5PasswordAuthRequest("user", "pass"));
+             Buffer commandRequest = Socks5CommonTestUtils.encodeClient(new DefaultSocks5CommandRequest(
+                     Socks5CommandType.CONNECT, Socks5AddressType.DOMAIN, "netty.io", 443))) {
+            Buffer pipelined = e.bufferAllocator().allocate(initialRequest.readableBytes() +
+                                                            authRequest.readableBytes() +
+                                                            commandRequest.readableBytes());
+            pipelined.writeBytes(initialRequest);
+            pipelined.writeBytes(authRequest);
+            pipelined.writeBytes(commandRequest);
+            assertTrue(e.writeInbound(pipelined));
+        }
+        // The responses are written by tasks which run after the read has completed.
+        e.runPendingTasks();
+
+        Socks5InitialRequest initialRequest = e.readInbound();
+        assertEquals(Socks5AuthMethod.PASSWORD, initialRequest.authMethods().get(0));
+        Socks5PasswordAuthRequest authRequest = e.readInbound();
+        assertTrue(authRequest.decoderResult().isSuccess());
+        assertEquals("user", authRequest.username());
+        Socks5CommandRequest commandRequest = e.readInbound();
+        assertTrue(commandRequest.decoderResult().isSuccess());
+        assertEquals("netty.io", commandRequest.dstAddr());
+        assertNull(e.readInbound());
+        assertNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+
+        // One for the read, and one for each request decoded after a response.
+        assertEquals(3, readCompletes.count);
+        finish(e);
+    }
+
+    @Test
+    public void testInvalidVersionCausesDecodeFail() {
+        EmbeddedChannel e = new EmbeddedChannel(new Socks5ServerHandshakeDecoder());
+        assertTrue(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 4, 1, 0 })));
+        Socks5InitialRequest initialRequest = e.readInbound();
+        assertTrue(initialRequest.decoderResult().isFailure());
+
+        assertFalse(e.writeInbound(e.bufferAllocator().copyOf(new byte[] { 5, 1, 0 })));
+        assertNotNull(e.pipeline().get(Socks5ServerHandshakeDecoder.class));
+        finish(e);
+    }
+
+    private static EmbeddedChannel newChannel(Socks5AuthMethod authMethod) {
+        return new EmbeddedChannel(new Socks5ServerHandshakeDecoder(), new Responder(authMethod));
+    }
+
+    private static void finish(EmbeddedChannel e) {
+        // Discard the responses, which are not encoded.
+        Object response;
+        do {
+            response = e.readOutbound();
+        } while (response != null);
+        assertFalse(e.finish());
+    }
+
+    /**
+     * Writes the responses of a server which selects the specified authentication method and accepts any
+     * credentials, and passes the requests on.  An asynchronous responder writes each response from a task, as a
+     * server which looks up the credentials would.
+     */
+    private static final class Responder implements ChannelHandler {
+
+        private final Socks5AuthMethod authMethod;
+        private final boolean async;
+
+        Responder(Socks5AuthMethod authMethod) {
+            this(authMethod, false);
+        }
+
+        Responder(Socks5AuthMethod authMethod, boolean async) {
+            this.authMethod = authMethod;
+            this.async = async;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            final Object response = newResponse(msg);
+            if (response != null) {
+                if (async) {
+                    ctx.executor().execute(() -> ctx.writeAndFlush(response));
+                } else {
+                    ctx.writeAndFlush(response);
+                }
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        private Object newResponse(Object msg) {
+            if (msg instanceof Socks5InitialRequest) {
+                return new DefaultSocks5InitialResponse(authMethod);
+            }
+            if (msg instanceof Socks5PasswordAuthRequest &&
+                ((Socks5PasswordAuthRequest) msg).decoderResult().isSuccess()) {
+                return new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.SUCCESS);
+            }
+            return null;
+        }
+    }
+
+    private static final class ReadCompleteCounter implements ChannelHandler {
+
+        int count;
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            count ++;
+            ctx.fireChannelReadComplete();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.example.socksproxy;
+
+import io.netty5.bootstrap.ServerBootstrap;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelInitializer;
+import io.netty5.channel.ChannelOption;
+import io.netty5.channel.EventLoop;
+import io.netty5.channel.epoll.EpollServerSocketChannel;
+import io.netty5.channel.socket.nio.NioServerSocketChannel;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+
+/**
+ * A bounded pool of listening channels for the BIND command.  A {@link Listener} waits for the connection of a single
+ * BIND request at a time, and is reused by the next request once it has accepted the connection, so that the server
+ * does not bind a new port per data connection and the number of ports it listens on is bounded.  A listener whose
+ * request has failed is {@linkplain #discard(Listener) closed} instead, because the expected host may still connect to
+ * its port.  The accepted connections do not read until {@link ChannelOption#AUTO_READ} is turned on.
+ * <p>
+ * A listener and the connections it accepts are served by the event loop it was bound on, and it is only handed to
+ * the requests of control connections served by the same event loop, so that a relayed connection and its control
+ * connection never touch each other from different threads.
+ */
+public final class BindListenerPool {
+
+    private final int maxListeners;
+    private final Queue<Listener> idleListeners = new ArrayDeque<>();
+    private int listeners;
+
+    public BindListenerPool(int maxListeners) {
+        if (maxListeners <= 0) {
+            throw new IllegalArgumentException("maxListeners: " + maxListeners + " (expected: > 0)");
+        }
+        this.maxListeners = maxListeners;
+    }
+
+    /**
+     * Takes an idle listener of the specified event loop out of the pool, or binds a new one on the specified address
+     * and event loop if there is no such listener.  If the pool is full, an idle listener of another event loop is
+     * closed to make room.
+     */
+    Future<Listener> acquire(EventLoop eventLoop, InetAddress bindAddress) {
+        synchronized (this) {
+            for (Iterator<Listener> i = idleListeners.iterator(); i.hasNext();) {
+                Listener listener = i.next();
+                if (listener.channel.executor() == eventLoop) {
+                    i.remove();
+                    return eventLoop.newSucceededFuture(listener);
+                }
+            }
+            if (listeners >= maxListeners) {
+                Listener idleListener = idleListeners.poll();
+                if (idleListener == null) {
+                    return eventLoop.newFailedFuture(
+                            new IllegalStateException("all " + maxListeners + " bind listeners are in use"));
+                }
+                // Its close future listener gives up its place once it has been closed.
+                idleListener.channel.close();
+            }
+            listeners++;
+        }
+
+        Listener listener = new Listener();
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(eventLoop)
+         .channel(SocksServer.EPOLL? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+         .childOption(ChannelOption.AUTO_READ, false)
+         .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, SocksServer.WATER_MARK)
+         .childHandler(new ChannelInitializer<Channel>() {
+             @Override
+             protected void initChannel(Channel ch) {
+                 listener.accept(ch);
+             }
+         });
+
+        Promise<Listener> promise = eventLoop.newPromise();
+        b.bind(new InetSocketAddress(bindAddress, 0)).addListener(future -> {
+            if (future.isFailed()) {
+                synchronized (this) {
+                    listeners--;
+                }
+                promise.setFailure(future.cause());
+                return;
+            }
+            listener.channel = future.getNow();
+            listener.channel.closeFuture().addListener(f -> {
+                synchronized (this) {
+                    idleListeners.remove(listener);
+                    listeners--;
+                }
+            });
+            promise.setSuccess(listener);
+        });
+        return promise.asFuture();
+    }
+
+    /**
+     * Closes the specified listener, whose port must not be handed to another request.
+     */
+    void discard(Listener listener) {
+        listener.expect(null, null);
+        // The close future listener removes it from the pool.
+        listener.channel.close();
+    }
+
+    /**
+     * Returns the specified listener to the pool after it has accepted the expected connection.
+     */
+    void release(Listener listener) {
+        listener.expect(null, null);
+        synchronized (this) {
+            if (listener.channel.isActive()) {
+                idleListeners.offer(listener);
+            }
+        }
+    }
+
+    /**
+     * A listening channel, which hands the next connection from the expected address to the pending BIND request,
+     * and closes all other connections.
+     */
+    static final class Listener {
+
+        private Channel channel;
+        private InetAddress expectedAddress;
+        private Promise<Channel> pending;
+
+        /**
+         * Returns the address the listener is bound to.
+         */
+        InetSocketAddress localAddress() {
+            return (InetSocketAddress) channel.localAddress();
+        }
+
+        /**
+         * Completes the specified promise with the next connection from the specified address.  Both are {@code null}
+         * when no request is pending.
+         */
+        synchronized void expect(InetAddress expectedAddress, Promise<Channel> pending) {
+            this.expectedAddress = expectedAddress;
+            this.pending = pending;
+        }
+
+        void accept(Channel child) {
+            Promise<Channel> pending;
+            synchronized (this) {
+                pending = this.pending;
+                InetAddress remoteAddress = ((InetSocketAddress) child.remoteAddress()).getAddress();
+                if (pending != null && expectedAddress.equals(remoteAddress)) {
+                    this.pending = null;
+                } else {
+                    pending = null;
+                }
+            }
+            if (pending == null || !pending.trySuccess(child)) {
+                // Nobody is waiting for this connection, or the request has timed out just now.
+                child.close();
+            }
+        }
+    }
+}
@@ -18,14 +18,44 @@ package io.netty.contrib.handler.codec.example.socksproxy;
 import io.netty5.channel.Channel;
 import io.netty5.channel.ChannelHandler;
 import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelOption;
 import io.netty5.util.ReferenceCountUtil;
 
+/**
+ * Relays everything read from a channel to another channel.  A pair of handlers, one on each channel, makes a tunnel.
+ * <p>
+ * The relay is flow-controlled: when the channel relayed to becomes unwritable because more than its high
+ * {@linkplain ChannelOption#WRITE_BUFFER_WATER_MARK water mark} is pending, this channel stops reading, and the handler
+ * of the other channel starts it again once the pending bytes have dropped below the low water mark.  The memory of a
+ * tunnel is therefore bounded by the water marks, even if one side is much faster than the other.
+ * <p>
+ * The buffers read in a single read loop are written as they are read, and flushed together when the read loop
+ * completes, so that they are sent with as few system calls as possible.  To bound the latency of the first buffer of
+ * a long read loop, the number of reads merged into a single flush can be capped.
+ */
 public final class RelayHandler implements ChannelHandler {
 
     private final Channel relayChannel;
+    private final int maxReadsPerFlush;
+    private int unflushedReads;
 
     public RelayHandler(Channel relayChannel) {
+        this(relayChannel, SocksServer.MAX_READS_PER_FLUSH);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param relayChannel the channel to relay to
+     * @param maxReadsPerFlush the maximum number of reads which are flushed together, or {@code 0} to flush only
+     *                         when the read loop completes; {@code 1} flushes every read
+     */
+    public RelayHandler(Channel relayChannel, int maxReadsPerFlush) {
+        if (maxReadsPerFlush < 0) {
+            throw new IllegalArgumentException("maxReadsPerFlush: " + maxReadsPerFlush + " (expected: >= 0)");
+        }
         this.relayChannel = relayChannel;
+        this.maxReadsPerFlush = maxReadsPerFlush;
     }
 
     @Override
@@ -36,12 +66,48 @@ public final class RelayHandler implements ChannelHandler {
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
         if (relayChannel.isActive()) {
-            relayChannel.writeAndFlush(msg);
+            relayChannel.write(msg);
+            unflushedReads++;
+            if (unflushedReads == maxReadsPerFlush) {
+                flush();
+            }
+            if (!relayChannel.isWritable()) {
+                // Start draining right away rather than at the end of the read loop.
+                flush();
+                // Stop reading until the relay channel has drained; see channelWritabilityChanged().  The relay channel
+                // may be served by another event loop and have drained in the meantime, so check again.
+                ctx.channel().setOption(ChannelOption.AUTO_READ, false);
+                if (relayChannel.isWritable()) {
+                    ctx.channel().setOption(ChannelOption.AUTO_READ, true);
+                }
+            }
         } else {
             ReferenceCountUtil.release(msg);
         }
     }
 
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        flush();
+        ctx.fireChannelReadComplete();
+    }
+
+    private void flush() {
+        if (unflushedReads > 0) {
+            unflushedReads = 0;
+            relayChannel.flush();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (ctx.channel().isWritable()) {
+            // This channel has drained, so the relay channel, whose reads are written to this channel, may read again.
+            relayChannel.setOption(ChannelOption.AUTO_READ, true);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         if (relayChannel.isActive()) {
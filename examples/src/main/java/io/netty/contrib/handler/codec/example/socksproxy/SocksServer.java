@@ -17,29 +17,76 @@ package io.netty.contrib.handler.codec.example.socksproxy;
 
 import io.netty5.bootstrap.ServerBootstrap;
 import io.netty5.channel.EventLoopGroup;
+import io.netty5.channel.IoHandlerFactory;
+import io.netty5.channel.ChannelOption;
 import io.netty5.channel.MultithreadEventLoopGroup;
+import io.netty5.channel.WriteBufferWaterMark;
+import io.netty5.channel.epoll.Epoll;
+import io.netty5.channel.epoll.EpollHandler;
+import io.netty5.channel.epoll.EpollServerSocketChannel;
+import io.netty5.channel.epoll.EpollDatagramChannel;
 import io.netty5.channel.nio.NioHandler;
+import io.netty5.channel.socket.nio.NioDatagramChannel;
 import io.netty5.channel.socket.nio.NioServerSocketChannel;
 import io.netty5.handler.logging.LogLevel;
 import io.netty5.handler.logging.LoggingHandler;
+import io.netty5.resolver.AddressResolverGroup;
+import io.netty5.resolver.dns.DnsAddressResolverGroup;
+import io.netty5.resolver.dns.DnsNameResolverBuilder;
+
+import java.net.InetSocketAddress;
 
 public final class SocksServer {
 
     static final int PORT = Integer.parseInt(System.getProperty("port", "1080"));
 
+    /**
+     * The water marks of the write buffers of the relayed connections.  A connection stops reading once more than the
+     * high water mark is pending on the connection it is relayed to, so they bound the memory of a tunnel.
+     */
+    static final WriteBufferWaterMark WATER_MARK = new WriteBufferWaterMark(
+            Integer.parseInt(System.getProperty("lowWaterMark", "32768")),
+            Integer.parseInt(System.getProperty("highWaterMark", "65536")));
+
+    /**
+     * The maximum number of reads of a relayed connection which are flushed together, or {@code 0} to flush once per
+     * read loop.
+     */
+    static final int MAX_READS_PER_FLUSH = Integer.parseInt(System.getProperty("maxReadsPerFlush", "0"));
+
+    /**
+     * The maximum number of ports which listen for the connections of BIND requests at the same time.
+     */
+    static final int BIND_LISTENERS = Integer.parseInt(System.getProperty("bindListeners", "16"));
+
+    /**
+     * Whether the native epoll transport is used, which relays UDP datagrams in batches.  Run with {@code -Dnio=true}
+     * to compare with NIO.
+     */
+    static final boolean EPOLL = !Boolean.getBoolean("nio") && Epoll.isAvailable();
+
+    /**
+     * Resolves the domain names of the relayed UDP datagrams without blocking the event loop.
+     */
+    static final AddressResolverGroup<InetSocketAddress> RESOLVER = new DnsAddressResolverGroup(
+            new DnsNameResolverBuilder().channelType(EPOLL? EpollDatagramChannel.class : NioDatagramChannel.class));
+
     public static void main(String[] args) throws Exception {
-        EventLoopGroup bossGroup = new MultithreadEventLoopGroup(1, NioHandler.newFactory());
-        EventLoopGroup workerGroup = new MultithreadEventLoopGroup(NioHandler.newFactory());
+        IoHandlerFactory ioHandlerFactory = EPOLL? EpollHandler.newFactory() : NioHandler.newFactory();
+        EventLoopGroup bossGroup = new MultithreadEventLoopGroup(1, ioHandlerFactory);
+        EventLoopGroup workerGroup = new MultithreadEventLoopGroup(ioHandlerFactory);
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-             .channel(NioServerSocketChannel.class)
+             .channel(EPOLL? EpollServerSocketChannel.class : NioServerSocketChannel.class)
              .handler(new LoggingHandler(LogLevel.INFO))
+             .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, WATER_MARK)
              .childHandler(new SocksServerInitializer());
             b.bind(PORT).asStage().get().closeFuture().asStage().sync();
         } finally {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            RESOLVER.close();
         }
     }
 }
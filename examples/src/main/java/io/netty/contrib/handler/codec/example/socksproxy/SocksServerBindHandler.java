@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.example.socksproxy;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty.contrib.handler.codec.socksx.SocksMessage;
+import io.netty.contrib.handler.codec.socksx.v4.DefaultSocks4CommandResponse;
+import io.netty.contrib.handler.codec.socksx.v4.Socks4CommandRequest;
+import io.netty.contrib.handler.codec.socksx.v4.Socks4CommandStatus;
+import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5CommandResponse;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandRequest;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandStatus;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelOption;
+import io.netty5.channel.SimpleChannelInboundHandler;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handles a SOCKS4 or SOCKS5 BIND request.  The server takes a listener out of the {@link BindListenerPool} and
+ * replies twice: first with the address of the listener, which the client passes on to the host that is expected to
+ * connect, and then with the address of the host once it has connected.  After the second reply, the connection is
+ * relayed like a CONNECT request.
+ * <p>
+ * Only the host named by {@code DST.ADDR} may connect.  A domain name is resolved with {@link SocksServer#RESOLVER}
+ * and the connection is expected from the address it resolves to; a request with an all-zero address is refused,
+ * because any host could take over the connection otherwise.  If no connection arrives from the expected host within
+ * the accept timeout, the request fails and the listener is closed rather than returned to the pool, so that a late
+ * connection of the host cannot be handed to another client.
+ */
+public final class SocksServerBindHandler extends SimpleChannelInboundHandler<SocksMessage> {
+
+    private static final long ACCEPT_TIMEOUT_SECONDS = 60;
+
+    private final BindListenerPool listeners;
+
+    public SocksServerBindHandler(BindListenerPool listeners) {
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void messageReceived(final ChannelHandlerContext ctx, final SocksMessage request) throws Exception {
+        final SocksAddress dstAddress;
+        if (request instanceof Socks4CommandRequest) {
+            dstAddress = ((Socks4CommandRequest) request).dstAddress();
+        } else if (request instanceof Socks5CommandRequest) {
+            dstAddress = ((Socks5CommandRequest) request).dstAddress();
+        } else {
+            ctx.close();
+            return;
+        }
+
+        if (dstAddress.isDomain()) {
+            // The connection is expected from the address the domain name resolves to.
+            Future<InetSocketAddress> resolveFuture = SocksServer.RESOLVER.getResolver(ctx.executor())
+                    .resolve(InetSocketAddress.createUnresolved(dstAddress.toString(), 0));
+            resolveFuture.addListener(future -> {
+                if (future.isFailed()) {
+                    fail(ctx.channel(), request, Socks5CommandStatus.HOST_UNREACHABLE);
+                } else {
+                    bind(ctx, request, future.getNow().getAddress());
+                }
+            });
+        } else if (dstAddress.isIPv4()? dstAddress.ipv4Address() == 0
+                                      : dstAddress.ipv6High() == 0 && dstAddress.ipv6Low() == 0) {
+            fail(ctx.channel(), request, Socks5CommandStatus.FORBIDDEN);
+        } else {
+            bind(ctx, request, dstAddress.toInetAddress());
+        }
+    }
+
+    private void bind(ChannelHandlerContext ctx, SocksMessage request, InetAddress expectedAddress) {
+        final Channel controlChannel = ctx.channel();
+        final InetAddress bindAddress = ((InetSocketAddress) controlChannel.localAddress()).getAddress();
+        listeners.acquire(controlChannel.executor(), bindAddress).addListener(future -> {
+            if (future.isFailed()) {
+                fail(controlChannel, request, Socks5CommandStatus.FAILURE);
+                return;
+            }
+
+            final BindListenerPool.Listener listener = future.getNow();
+            final Promise<Channel> promise = ctx.executor().newPromise();
+            final Future<Void> timeoutFuture = ctx.executor().schedule(
+                    () -> { promise.tryFailure(new TimeoutException()); }, ACCEPT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            listener.expect(expectedAddress, promise);
+            controlChannel.closeFuture().addListener(f -> promise.tryFailure(new ClosedChannelException()));
+
+            promise.asFuture().addListener(f -> {
+                timeoutFuture.cancel();
+                if (f.isFailed()) {
+                    // The expected host may still connect; do not let another request receive its connection.
+                    listeners.discard(listener);
+                    fail(controlChannel, request, Socks5CommandStatus.FAILURE);
+                    return;
+                }
+                listeners.release(listener);
+
+                final Channel peerChannel = f.getNow();
+                controlChannel.writeAndFlush(successReply(request, (InetSocketAddress) peerChannel.remoteAddress()))
+                              .addListener(fut -> {
+                                  ctx.pipeline().remove(this);
+                                  peerChannel.pipeline().addLast(new RelayHandler(controlChannel));
+                                  ctx.pipeline().addLast(new RelayHandler(peerChannel));
+                                  peerChannel.setOption(ChannelOption.AUTO_READ, true);
+                              });
+            });
+
+            controlChannel.writeAndFlush(successReply(request, listener.localAddress()));
+        });
+    }
+
+    private static void fail(Channel controlChannel, SocksMessage request, Socks5CommandStatus status) {
+        controlChannel.writeAndFlush(failureReply(request, status));
+        SocksServerUtils.closeOnFlush(controlChannel);
+    }
+
+    private static Object successReply(SocksMessage request, InetSocketAddress address) {
+        if (request instanceof Socks4CommandRequest) {
+            // SOCKS4 replies carry IPv4 addresses only; an all-zero address tells the client to use the address of the
+            // proxy server instead.
+            String host = address.getAddress() instanceof Inet4Address? address.getAddress().getHostAddress()
+                                                                        : "0.0.0.0";
+            return new DefaultSocks4CommandResponse(Socks4CommandStatus.SUCCESS, host, address.getPort());
+        }
+        return new DefaultSocks5CommandResponse(
+                Socks5CommandStatus.SUCCESS, SocksAddress.of(address.getAddress()), address.getPort());
+    }
+
+    private static Object failureReply(SocksMessage request, Socks5CommandStatus status) {
+        if (request instanceof Socks4CommandRequest) {
+            return new DefaultSocks4CommandResponse(Socks4CommandStatus.REJECTED_OR_FAILED);
+        }
+        return new DefaultSocks5CommandResponse(status, ((Socks5CommandRequest) request).dstAddrType());
+    }
+
+    @Override
+    public void channelExceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        SocksServerUtils.closeOnFlush(ctx.channel());
+    }
+}
@@ -20,6 +20,7 @@ import io.netty5.channel.Channel;
 import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.channel.ChannelOption;
 import io.netty5.channel.SimpleChannelInboundHandler;
+import io.netty5.channel.epoll.EpollSocketChannel;
 import io.netty5.channel.socket.nio.NioSocketChannel;
 import io.netty.contrib.handler.codec.socksx.SocksMessage;
 import io.netty.contrib.handler.codec.socksx.v4.DefaultSocks4CommandResponse;
@@ -60,9 +61,10 @@ public final class SocksServerConnectHandler extends SimpleChannelInboundHandler
 
             final Channel inboundChannel = ctx.channel();
             b.group(inboundChannel.executor())
-                    .channel(NioSocketChannel.class)
+                    .channel(SocksServer.EPOLL? EpollSocketChannel.class : NioSocketChannel.class)
                     .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
                     .option(ChannelOption.SO_KEEPALIVE, true)
+                    .option(ChannelOption.WRITE_BUFFER_WATER_MARK, SocksServer.WATER_MARK)
                     .handler(new DirectClientHandler(promise));
 
             b.connect(request.dstAddr(), request.dstPort()).addListener(future -> {
@@ -103,9 +105,10 @@ public final class SocksServerConnectHandler extends SimpleChannelInboundHandler
 
             final Channel inboundChannel = ctx.channel();
             b.group(inboundChannel.executor())
-                    .channel(NioSocketChannel.class)
+                    .channel(SocksServer.EPOLL? EpollSocketChannel.class : NioSocketChannel.class)
                     .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
                     .option(ChannelOption.SO_KEEPALIVE, true)
+                    .option(ChannelOption.WRITE_BUFFER_WATER_MARK, SocksServer.WATER_MARK)
                     .handler(new DirectClientHandler(promise));
 
             b.connect(request.dstAddr(), request.dstPort()).addListener(future -> {
@@ -24,20 +24,28 @@ import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5InitialResponse;
 import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5PasswordAuthResponse;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5AuthMethod;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandRequest;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandRequestDecoder;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandType;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialRequest;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthRequest;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthStatus;
 
+import java.util.List;
+
 public final class SocksServerHandler extends SimpleChannelInboundHandler<SocksMessage> {
 
     public static final SocksServerHandler INSTANCE = new SocksServerHandler();
 
+    private final BindListenerPool bindListeners = new BindListenerPool(SocksServer.BIND_LISTENERS);
+
     private SocksServerHandler() { }
 
     @Override
     public void messageReceived(ChannelHandlerContext ctx, SocksMessage socksRequest) throws Exception {
+        if (socksRequest.decoderResult().isFailure()) {
+            // For example, a SOCKS5 command request which skipped the password authentication.
+            ctx.close();
+            return;
+        }
         switch (socksRequest.version()) {
             case SOCKS4a:
                 Socks4CommandRequest socksV4CmdRequest = (Socks4CommandRequest) socksRequest;
@@ -45,19 +53,30 @@ public final class SocksServerHandler extends SimpleChannelInboundHandler<SocksM
                     ctx.pipeline().addLast(new SocksServerConnectHandler());
                     ctx.fireChannelRead(socksRequest);
                     ctx.pipeline().remove(this);
+                } else if (socksV4CmdRequest.type() == Socks4CommandType.BIND) {
+                    ctx.pipeline().addLast(new SocksServerBindHandler(bindListeners));
+                    ctx.fireChannelRead(socksRequest);
+                    ctx.pipeline().remove(this);
                 } else {
                     ctx.close();
                 }
                 break;
             case SOCKS5:
+                // Socks5ServerHandshakeDecoder decodes all handshake messages, so no decoder has to be added here.
+                // The responses are written without flushing; they are flushed on channelReadComplete() or together
+                // with the command response, so that a client pipelining its requests gets a single write.
                 if (socksRequest instanceof Socks5InitialRequest) {
-                    // auth support example
-                    //ctx.pipeline().addFirst(new Socks5PasswordAuthRequestDecoder());
-                    //ctx.write(new DefaultSocks5AuthMethodResponse(Socks5AuthMethod.PASSWORD));
-                    ctx.pipeline().addFirst(new Socks5CommandRequestDecoder());
-                    ctx.write(new DefaultSocks5InitialResponse(Socks5AuthMethod.NO_AUTH));
+                    // auth support example: prefer PASSWORD over NO_AUTH instead.
+                    List<Socks5AuthMethod> authMethods = ((Socks5InitialRequest) socksRequest).authMethods();
+                    if (authMethods.contains(Socks5AuthMethod.NO_AUTH)) {
+                        ctx.write(new DefaultSocks5InitialResponse(Socks5AuthMethod.NO_AUTH));
+                    } else if (authMethods.contains(Socks5AuthMethod.PASSWORD)) {
+                        ctx.write(new DefaultSocks5InitialResponse(Socks5AuthMethod.PASSWORD));
+                    } else {
+                        ctx.write(new DefaultSocks5InitialResponse(Socks5AuthMethod.UNACCEPTED));
+                        SocksServerUtils.closeOnFlush(ctx.channel());
+                    }
                 } else if (socksRequest instanceof Socks5PasswordAuthRequest) {
-                    ctx.pipeline().addFirst(new Socks5CommandRequestDecoder());
                     ctx.write(new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.SUCCESS));
                 } else if (socksRequest instanceof Socks5CommandRequest) {
                     Socks5CommandRequest socks5CmdRequest = (Socks5CommandRequest) socksRequest;
@@ -65,6 +84,14 @@ public final class SocksServerHandler extends SimpleChannelInboundHandler<SocksM
                         ctx.pipeline().addLast(new SocksServerConnectHandler());
                         ctx.fireChannelRead(socksRequest);
                         ctx.pipeline().remove(this);
+                    } else if (socks5CmdRequest.type() == Socks5CommandType.BIND) {
+                        ctx.pipeline().addLast(new SocksServerBindHandler(bindListeners));
+                        ctx.fireChannelRead(socksRequest);
+                        ctx.pipeline().remove(this);
+                    } else if (socks5CmdRequest.type() == Socks5CommandType.UDP_ASSOCIATE) {
+                        ctx.pipeline().addLast(new SocksServerUdpAssociateHandler());
+                        ctx.fireChannelRead(socksRequest);
+                        ctx.pipeline().remove(this);
                     } else {
                         ctx.close();
                     }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.example.socksproxy;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5CommandResponse;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandRequest;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandStatus;
+import io.netty5.bootstrap.Bootstrap;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelInitializer;
+import io.netty5.channel.SimpleChannelInboundHandler;
+import io.netty5.channel.epoll.EpollChannelOption;
+import io.netty5.channel.epoll.EpollDatagramChannel;
+import io.netty5.channel.socket.DatagramChannel;
+import io.netty5.channel.socket.nio.NioDatagramChannel;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Handles a SOCKS5 UDP ASSOCIATE request by binding a relay {@link DatagramChannel} on the event loop of the control
+ * connection.  The association lasts as long as the control connection: closing either of them closes the other.
+ * <p>
+ * With the epoll transport, the relay receives up to a read buffer full of datagrams with a single
+ * {@code recvmmsg} call, and the datagrams written during a read loop are flushed with a single {@code sendmmsg}
+ * call.  Each datagram is received into a slot of {@link UdpRelayHandler#MAX_DATAGRAM_SIZE} bytes; a datagram which
+ * fills its slot may have been truncated, so the relay drops it rather than relaying corrupt data.
+ */
+public final class SocksServerUdpAssociateHandler extends SimpleChannelInboundHandler<Object> {
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, Object message) throws Exception {
+        if (!(message instanceof Socks5CommandRequest)) {
+            // The client must not send anything else over the control connection once the association exists.
+            return;
+        }
+
+        final Socks5CommandRequest request = (Socks5CommandRequest) message;
+        final Channel controlChannel = ctx.channel();
+        final InetSocketAddress controlLocal = (InetSocketAddress) controlChannel.localAddress();
+        final InetSocketAddress controlRemote = (InetSocketAddress) controlChannel.remoteAddress();
+        final UdpRelayHandler relayHandler = new UdpRelayHandler(
+                controlRemote.getAddress(), request.dstAddress(), request.dstPort());
+
+        final Bootstrap bootstrap = new Bootstrap().group(controlChannel.executor());
+        if (SocksServer.EPOLL) {
+            bootstrap.channel(EpollDatagramChannel.class)
+                     .option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, UdpRelayHandler.MAX_DATAGRAM_SIZE);
+        } else {
+            bootstrap.channel(NioDatagramChannel.class);
+        }
+        bootstrap.handler(new ChannelInitializer<DatagramChannel>() {
+            @Override
+            protected void initChannel(DatagramChannel ch) {
+                relayHandler.addTo(ch.pipeline());
+            }
+        });
+        bootstrap.bind(new InetSocketAddress(controlLocal.getAddress(), 0)).addListener(future -> {
+            if (future.isFailed()) {
+                ctx.channel().writeAndFlush(new DefaultSocks5CommandResponse(
+                        Socks5CommandStatus.FAILURE, request.dstAddrType()));
+                SocksServerUtils.closeOnFlush(controlChannel);
+                return;
+            }
+
+            final Channel relayChannel = future.getNow();
+            controlChannel.closeFuture().addListener(relayChannel, (ch, f) -> ch.close());
+            relayChannel.closeFuture().addListener(controlChannel, (ch, f) -> ch.close());
+
+            final InetSocketAddress bound = (InetSocketAddress) relayChannel.localAddress();
+            controlChannel.writeAndFlush(new DefaultSocks5CommandResponse(
+                    Socks5CommandStatus.SUCCESS, SocksAddress.of(bound.getAddress()), bound.getPort()));
+        });
+    }
+
+    @Override
+    public void channelExceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        SocksServerUtils.closeOnFlush(ctx.channel());
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.example.socksproxy;
+
+import io.netty5.util.concurrent.EventExecutor;
+import io.netty5.util.concurrent.Future;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Maps UDP socket addresses to values, without boxing.  IPv4 addresses and their ports are packed into a single
+ * {@code long} and kept in an open-addressing table; IPv6 addresses, which need three {@code long}s, are kept in a
+ * second table of the same kind.  A lookup does not allocate, except for {@link #get(InetSocketAddress)} with an IPv6
+ * address, which copies the address out of the {@link InetAddress}; hot paths which have decoded an IPv6 address
+ * already should use {@link #get(long, long, int)} instead.  Entries which are not looked up for the idle timeout are
+ * evicted by a timing wheel, which is advanced by a task on the event loop only while the table is not empty.
+ * <p>
+ * An instance must only be accessed from its event loop.
+ */
+public final class UdpAssociationTable<V> {
+
+    private static final int TICKS_PER_TIMEOUT = 8;
+
+    private final EventExecutor executor;
+    private final Consumer<? super V> evictionListener;
+    private final long tickNanos;
+    private final Table<V> ipv4 = new Table<>(1);
+    private final Table<V> ipv6 = new Table<>(3);
+    @SuppressWarnings("unchecked")
+    private final Entry<V>[] wheel = new Entry[Integer.highestOneBit(TICKS_PER_TIMEOUT) << 1];
+    private long currentTick;
+    private Future<Void> tickFuture;
+
+    /**
+     * Creates a new table.
+     *
+     * @param executor the event loop which accesses the table
+     * @param idleTimeout the time after which an entry which has not been looked up is evicted
+     * @param unit the unit of {@code idleTimeout}
+     * @param evictionListener notified with the values of the evicted entries
+     */
+    public UdpAssociationTable(EventExecutor executor, long idleTimeout, TimeUnit unit,
+                               Consumer<? super V> evictionListener) {
+        this.executor = executor;
+        this.evictionListener = evictionListener;
+        tickNanos = Math.max(1, unit.toNanos(idleTimeout) / TICKS_PER_TIMEOUT);
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        return ipv4.size + ipv6.size;
+    }
+
+    /**
+     * Returns the value of the specified IPv4 address, in network byte order, and port, or {@code null}.
+     */
+    public V get(int ipv4Address, int port) {
+        return touch(ipv4.get(pack(ipv4Address, port), 0, 0));
+    }
+
+    /**
+     * Returns the value of the specified IPv6 address, in network byte order, and port, or {@code null}.
+     */
+    public V get(long ipv6High, long ipv6Low, int port) {
+        return touch(ipv6.get(ipv6High, ipv6Low, port));
+    }
+
+    /**
+     * Returns the value of the specified socket address, or {@code null}.  The lookup of an IPv6 address allocates a
+     * copy of the address, because {@link InetAddress} does not expose it otherwise.
+     */
+    public V get(InetSocketAddress address) {
+        InetAddress inetAddress = address.getAddress();
+        if (inetAddress instanceof Inet4Address) {
+            return get(ipv4Address((Inet4Address) inetAddress), address.getPort());
+        }
+        if (inetAddress instanceof Inet6Address) {
+            byte[] bytes = inetAddress.getAddress();
+            return get(getLong(bytes, 0), getLong(bytes, 8), address.getPort());
+        }
+        return null;
+    }
+
+    /**
+     * Maps the specified IPv4 address, in network byte order, and port to the specified value.
+     */
+    public void put(int ipv4Address, int port, V value) {
+        schedule(ipv4.put(pack(ipv4Address, port), 0, 0, value));
+    }
+
+    /**
+     * Maps the specified IPv6 address, in network byte order, and port to the specified value.
+     */
+    public void put(long ipv6High, long ipv6Low, int port, V value) {
+        schedule(ipv6.put(ipv6High, ipv6Low, port, value));
+    }
+
+    /**
+     * Maps the specified socket address to the specified value.
+     *
+     * @throws IllegalArgumentException if the address is unresolved
+     */
+    public void put(InetSocketAddress address, V value) {
+        InetAddress inetAddress = address.getAddress();
+        if (inetAddress instanceof Inet4Address) {
+            put(ipv4Address((Inet4Address) inetAddress), address.getPort(), value);
+        } else if (inetAddress instanceof Inet6Address) {
+            byte[] bytes = inetAddress.getAddress();
+            put(getLong(bytes, 0), getLong(bytes, 8), address.getPort(), value);
+        } else {
+            throw new IllegalArgumentException("address: " + address + " (expected: a resolved address)");
+        }
+    }
+
+    /**
+     * Removes all entries without notifying the eviction listener, and stops the timing wheel.
+     */
+    public void clear() {
+        ipv4.clear();
+        ipv6.clear();
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = null;
+        }
+        if (tickFuture != null) {
+            tickFuture.cancel();
+            tickFuture = null;
+        }
+    }
+
+    private V touch(Entry<V> entry) {
+        if (entry == null) {
+            return null;
+        }
+        entry.lastTick = currentTick;
+        return entry.value;
+    }
+
+    private void schedule(Entry<V> entry) {
+        if (entry == null) {
+            // The value of an existing entry has been replaced.
+            return;
+        }
+        entry.lastTick = currentTick;
+        addToWheel(entry, currentTick + TICKS_PER_TIMEOUT);
+        if (tickFuture == null) {
+            tickFuture = executor.scheduleAtFixedRate(this::tick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void addToWheel(Entry<V> entry, long tick) {
+        int index = (int) (tick & wheel.length - 1);
+        entry.nextInWheel = wheel[index];
+        wheel[index] = entry;
+    }
+
+    private void tick() {
+        long tick = ++currentTick;
+        int index = (int) (tick & wheel.length - 1);
+        Entry<V> entry = wheel[index];
+        wheel[index] = null;
+        while (entry != null) {
+            Entry<V> next = entry.nextInWheel;
+            entry.nextInWheel = null;
+            if (!entry.removed) {
+                long deadline = entry.lastTick + TICKS_PER_TIMEOUT;
+                if (deadline <= tick) {
+                    (entry.width == 1? ipv4 : ipv6).remove(entry);
+                    evictionListener.accept(entry.value);
+                } else {
+                    // Looked up since it has been scheduled; check it again when it may have become idle.
+                    addToWheel(entry, deadline);
+                }
+            }
+            entry = next;
+        }
+        if (size() == 0 && tickFuture != null) {
+            tickFuture.cancel();
+            tickFuture = null;
+        }
+    }
+
+    private static long pack(int ipv4Address, int port) {
+        return (ipv4Address & 0xFFFFFFFFL) << 16 | port & 0xFFFF;
+    }
+
+    /**
+     * Returns the IPv4 address in network byte order.  {@link Inet4Address#hashCode()} is the address itself, which
+     * avoids the copy made by {@link InetAddress#getAddress()}.
+     */
+    private static int ipv4Address(Inet4Address address) {
+        return address.hashCode();
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | bytes[offset + i] & 0xFF;
+        }
+        return value;
+    }
+
+    private static final class Entry<V> {
+        final int width;
+        final long k0;
+        final long k1;
+        final long k2;
+        V value;
+        long lastTick;
+        boolean removed;
+        Entry<V> nextInWheel;
+
+        Entry(int width, long k0, long k1, long k2, V value) {
+            this.width = width;
+            this.k0 = k0;
+            this.k1 = k1;
+            this.k2 = k2;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An open-addressing table with linear probing, whose keys are made of {@code width} {@code long}s which are
+     * stored inline.  Removals shift the following entries back instead of leaving tombstones.
+     */
+    private static final class Table<V> {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final int width;
+        private long[] keys;
+        private Entry<V>[] entries;
+        private int mask;
+        int size;
+
+        Table(int width) {
+            this.width = width;
+            allocate(INITIAL_CAPACITY);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void allocate(int capacity) {
+            keys = new long[capacity * width];
+            entries = new Entry[capacity];
+            mask = capacity - 1;
+        }
+
+        private int slot(long k0, long k1, long k2) {
+            long hash = k0 * 0x9E3779B97F4A7C15L;
+            if (width > 1) {
+                hash = (hash ^ k1) * 0x9E3779B97F4A7C15L;
+                hash = (hash ^ k2) * 0x9E3779B97F4A7C15L;
+            }
+            return (int) (hash ^ hash >>> 32) & mask;
+        }
+
+        private boolean matches(int slot, long k0, long k1, long k2) {
+            int offset = slot * width;
+            return keys[offset] == k0 && (width == 1 || keys[offset + 1] == k1 && keys[offset + 2] == k2);
+        }
+
+        Entry<V> get(long k0, long k1, long k2) {
+            for (int slot = slot(k0, k1, k2);; slot = slot + 1 & mask) {
+                Entry<V> entry = entries[slot];
+                if (entry == null) {
+                    return null;
+                }
+                if (matches(slot, k0, k1, k2)) {
+                    return entry;
+                }
+            }
+        }
+
+        /**
+         * Returns the new entry, or {@code null} if the value of an existing entry has been replaced.
+         */
+        Entry<V> put(long k0, long k1, long k2, V value) {
+            int slot = slot(k0, k1, k2);
+            for (;; slot = slot + 1 & mask) {
+                Entry<V> entry = entries[slot];
+                if (entry == null) {
+                    break;
+                }
+                if (matches(slot, k0, k1, k2)) {
+                    entry.value = value;
+                    return null;
+                }
+            }
+            Entry<V> entry = new Entry<>(width, k0, k1, k2, value);
+            store(slot, entry);
+            if (++size > entries.length >> 1) {
+                rehash();
+            }
+            return entry;
+        }
+
+        private void store(int slot, Entry<V> entry) {
+            entries[slot] = entry;
+            int offset = slot * width;
+            keys[offset] = entry.k0;
+            if (width > 1) {
+                keys[offset + 1] = entry.k1;
+                keys[offset + 2] = entry.k2;
+            }
+        }
+
+        private void rehash() {
+            Entry<V>[] old = entries;
+            allocate(old.length << 1);
+            for (Entry<V> entry : old) {
+                if (entry != null) {
+                    int slot = slot(entry.k0, entry.k1, entry.k2);
+                    while (entries[slot] != null) {
+                        slot = slot + 1 & mask;
+                    }
+                    store(slot, entry);
+                }
+            }
+        }
+
+        void remove(Entry<V> entry) {
+            int slot = slot(entry.k0, entry.k1, entry.k2);
+            while (entries[slot] != entry) {
+                slot = slot + 1 & mask;
+            }
+            entry.removed = true;
+            entries[slot] = null;
+            size--;
+
+            // Shift the following entries of the cluster back, unless their home slot lies after the freed slot.
+            int free = slot;
+            for (int i = free + 1 & mask; entries[i] != null; i = i + 1 & mask) {
+                Entry<V> moved = entries[i];
+                int home = slot(moved.k0, moved.k1, moved.k2);
+                if ((i - home & mask) >= (i - free & mask)) {
+                    store(free, moved);
+                    entries[i] = null;
+                    free = i;
+                }
+            }
+        }
+
+        void clear() {
+            for (Entry<V> entry : entries) {
+                if (entry != null) {
+                    entry.removed = true;
+                }
+            }
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+        }
+    }
+}
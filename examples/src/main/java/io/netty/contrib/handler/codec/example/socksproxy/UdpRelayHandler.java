@@ -0,0 +1,306 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.codec.example.socksproxy;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5DatagramPacket;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5DatagramPacketDecoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5DatagramPacketEncoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5DatagramReassembler;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelPipeline;
+import io.netty5.channel.socket.DatagramPacket;
+import io.netty5.resolver.AddressResolver;
+import io.netty5.util.Resource;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relays the datagrams of a single UDP association.  The same channel receives the datagrams of the client, which
+ * carry a SOCKS5 UDP request header, and the replies of the destinations, which are sent back to the client with the
+ * header prepended.  Only the destinations the client has sent to recently may reply; they are kept in a
+ * {@link UdpAssociationTable}, keyed by the decoded binary address of a datagram from the client, so that relaying it
+ * does not convert or allocate addresses.  Only the reply of an IPv6 destination copies its address for the lookup,
+ * because {@link InetAddress} does not expose it otherwise.  The datagrams are written as they are read, and flushed
+ * once per read loop.
+ * <p>
+ * A domain name is resolved with {@link SocksServer#RESOLVER}, so that the event loop is never blocked by a lookup.
+ * The datagrams sent to a domain name are held until it is resolved, and the resolved address is cached for the
+ * lifetime of the association.
+ * <p>
+ * A datagram which fills the receive buffer of {@link #MAX_DATAGRAM_SIZE} bytes may have been truncated by the
+ * transport, so it is dropped and counted in {@link #droppedDatagrams()} instead of being relayed.  Larger payloads
+ * can still be relayed as SOCKS5 fragments, which {@link Socks5DatagramReassembler} joins.
+ */
+public final class UdpRelayHandler implements ChannelHandler {
+
+    /**
+     * The size of the buffer each datagram is received into, which is also the default receive buffer size of datagram
+     * channels.  It fits the SOCKS5 header and the payload of a datagram which is not fragmented on an Ethernet link.
+     */
+    static final int MAX_DATAGRAM_SIZE = 2048;
+
+    private static final long DESTINATION_IDLE_TIMEOUT_SECONDS = 60;
+
+    /**
+     * The maximum number of datagrams which are held for a domain name while it is resolved; further ones are dropped.
+     */
+    private static final int MAX_PENDING_DATAGRAMS = 16;
+
+    /**
+     * The maximum number of domain names whose addresses are cached; the cache is cleared when it is full.
+     */
+    private static final int MAX_RESOLVED_DOMAINS = 256;
+
+    private final InetAddress clientAddress;
+    private final int clientPort;
+    private InetSocketAddress client;
+    private UdpAssociationTable<Destination> destinations;
+    private AddressResolver<InetSocketAddress> resolver;
+    private final Map<SocksAddress, InetAddress> resolvedDomains = new HashMap<>();
+    private final Map<SocksAddress, List<Socks5DatagramPacket>> pendingDatagrams = new HashMap<>();
+    private long droppedDatagrams;
+
+    /**
+     * Creates a new handler which only accepts datagrams from the specified client.
+     *
+     * @param controlAddress the address of the client's control connection
+     * @param dstAddress the {@code DST.ADDR} of the UDP ASSOCIATE request, or an all-zero address if the client does
+     *                   not know the address it will send from
+     * @param dstPort the {@code DST.PORT} of the UDP ASSOCIATE request, or {@code 0} if the client does not know the
+     *                port it will send from
+     */
+    public UdpRelayHandler(InetAddress controlAddress, SocksAddress dstAddress, int dstPort) {
+        InetAddress clientAddress = controlAddress;
+        if (!dstAddress.isDomain() && !isZero(dstAddress)) {
+            clientAddress = dstAddress.toInetAddress();
+        }
+        this.clientAddress = clientAddress;
+        clientPort = dstPort;
+    }
+
+    private static boolean isZero(SocksAddress address) {
+        return address.isIPv4()? address.ipv4Address() == 0 : address.ipv6High() == 0 && address.ipv6Low() == 0;
+    }
+
+    /**
+     * Adds the codec and this handler to the pipeline of the relay channel.
+     */
+    void addTo(ChannelPipeline pipeline) {
+        pipeline.addLast(new TruncatedDatagramFilter(), Socks5DatagramPacketEncoder.DEFAULT,
+                         new ClientDatagramDecoder(), new Socks5DatagramReassembler(), this);
+    }
+
+    /**
+     * Returns the number of datagrams which have been dropped because they may have been truncated.
+     */
+    long droppedDatagrams() {
+        return droppedDatagrams;
+    }
+
+    boolean isFromClient(InetSocketAddress sender) {
+        return sender.getAddress().equals(clientAddress) && (clientPort == 0 || sender.getPort() == clientPort);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        destinations = new UdpAssociationTable<>(
+                ctx.executor(), DESTINATION_IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS, destination -> { });
+        resolver = SocksServer.RESOLVER.getResolver(ctx.executor());
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        destinations.clear();
+        resolvedDomains.clear();
+        for (List<Socks5DatagramPacket> pending : pendingDatagrams.values()) {
+            closeAll(pending);
+        }
+        pendingDatagrams.clear();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof Socks5DatagramPacket) {
+            Socks5DatagramPacket packet = (Socks5DatagramPacket) msg;
+            // The fragments have been reassembled by Socks5DatagramReassembler.
+            if (packet.dstAddress().isDomain() && !resolvedDomains.containsKey(packet.dstAddress())) {
+                resolve(ctx, packet);
+                return;
+            }
+            relay(ctx, packet);
+        } else if (msg instanceof DatagramPacket) {
+            DatagramPacket packet = (DatagramPacket) msg;
+            Destination destination = destinations.get(packet.sender());
+            if (destination == null) {
+                // Not a reply to anything the client has sent recently.
+                packet.close();
+                return;
+            }
+            ctx.write(new Socks5DatagramPacket(
+                    packet.content(), client, destination.socksAddress, destination.address.getPort()));
+        } else {
+            Resource.dispose(msg);
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        ctx.flush();
+    }
+
+    @Override
+    public void channelExceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (cause instanceof PortUnreachableException) {
+            // A single undeliverable datagram must not tear down the whole association.
+            return;
+        }
+        cause.printStackTrace();
+        ctx.close();
+    }
+
+    private void relay(ChannelHandlerContext ctx, Socks5DatagramPacket packet) {
+        Destination destination = destination(packet.dstAddress(), packet.dstPort());
+        client = packet.sender();
+        ctx.write(new DatagramPacket(packet.content(), destination.address));
+    }
+
+    /**
+     * Holds the specified datagram until its domain name is resolved, and starts resolving it unless it is already
+     * being resolved.
+     */
+    private void resolve(ChannelHandlerContext ctx, Socks5DatagramPacket packet) {
+        final SocksAddress domain = packet.dstAddress();
+        List<Socks5DatagramPacket> pending = pendingDatagrams.get(domain);
+        if (pending != null) {
+            if (pending.size() < MAX_PENDING_DATAGRAMS) {
+                pending.add(packet);
+            } else {
+                packet.close();
+            }
+            return;
+        }
+
+        pending = new ArrayList<>();
+        pending.add(packet);
+        pendingDatagrams.put(domain, pending);
+        resolver.resolve(InetSocketAddress.createUnresolved(domain.toString(), 0)).addListener(future -> {
+            List<Socks5DatagramPacket> resolvedPending = pendingDatagrams.remove(domain);
+            if (resolvedPending == null) {
+                // The association has ended, and the datagrams have been closed.
+                return;
+            }
+            if (future.isFailed()) {
+                closeAll(resolvedPending);
+                return;
+            }
+            if (resolvedDomains.size() >= MAX_RESOLVED_DOMAINS) {
+                resolvedDomains.clear();
+            }
+            resolvedDomains.put(domain, future.getNow().getAddress());
+            for (Socks5DatagramPacket p : resolvedPending) {
+                relay(ctx, p);
+            }
+            ctx.flush();
+        });
+    }
+
+    private static void closeAll(List<Socks5DatagramPacket> packets) {
+        for (Socks5DatagramPacket packet : packets) {
+            packet.close();
+        }
+    }
+
+    /**
+     * Returns the destination of the specified address and port.  A domain name must have been resolved already.
+     */
+    private Destination destination(SocksAddress address, int port) {
+        Destination destination;
+        if (address.isIPv4()) {
+            destination = destinations.get(address.ipv4Address(), port);
+        } else if (address.isIPv6()) {
+            destination = destinations.get(address.ipv6High(), address.ipv6Low(), port);
+        } else {
+            // The replies come from the resolved address, which is looked up below.
+            destination = null;
+        }
+        if (destination != null) {
+            return destination;
+        }
+
+        InetAddress inetAddress = address.isDomain()? resolvedDomains.get(address) : address.toInetAddress();
+        InetSocketAddress resolved = new InetSocketAddress(inetAddress, port);
+        destination = destinations.get(resolved);
+        if (destination == null) {
+            destination = new Destination(resolved);
+            destinations.put(resolved, destination);
+        }
+        return destination;
+    }
+
+    private static final class Destination {
+        final InetSocketAddress address;
+        final SocksAddress socksAddress;
+
+        Destination(InetSocketAddress address) {
+            this.address = address;
+            socksAddress = SocksAddress.of(address.getAddress());
+        }
+    }
+
+    /**
+     * Drops the datagrams which fill the receive buffer, before they are decoded or relayed.
+     */
+    private final class TruncatedDatagramFilter implements ChannelHandler {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof DatagramPacket) {
+                DatagramPacket packet = (DatagramPacket) msg;
+                if (packet.content().readableBytes() >= MAX_DATAGRAM_SIZE) {
+                    droppedDatagrams++;
+                    packet.close();
+                    return;
+                }
+            }
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    /**
+     * Decodes the datagrams which are sent by the client, and passes the others on as they are.
+     */
+    private final class ClientDatagramDecoder extends Socks5DatagramPacketDecoder {
+
+        @Override
+        public boolean acceptInboundMessage(Object msg) throws Exception {
+            return super.acceptInboundMessage(msg) && isFromClient(((DatagramPacket) msg).sender());
+        }
+
+        @Override
+        public boolean isSharable() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelPipeline;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5CommandRequest;
+import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5InitialRequest;
+import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5PasswordAuthRequest;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5AuthMethod;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5ClientEncoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5ClientHandshakeDecoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandRequest;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandResponse;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandResponseDecoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandStatus;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandType;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialRequest;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialResponse;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialResponseDecoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthRequest;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthResponse;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthResponseDecoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthStatus;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The SOCKS5 handshake shared by {@link Socks5ProxyHandler}, {@link Socks5BindProxyHandler} and the control
+ * connection of {@link Socks5UdpAssociateHandler}, which differ only in the command they send and in how they handle
+ * its response; see {@link #handleCommandResponse(ChannelHandlerContext, Socks5CommandResponse)}.
+ */
+abstract class AbstractSocks5ProxyHandler extends ProxyHandler {
+
+    private static final String PROTOCOL = "socks5";
+    private static final String AUTH_PASSWORD = "password";
+
+    private static final Socks5InitialRequest INIT_REQUEST_NO_AUTH =
+            new DefaultSocks5InitialRequest(Collections.singletonList(Socks5AuthMethod.NO_AUTH));
+
+    private static final Socks5InitialRequest INIT_REQUEST_PASSWORD =
+            new DefaultSocks5InitialRequest(Arrays.asList(Socks5AuthMethod.NO_AUTH, Socks5AuthMethod.PASSWORD));
+
+    private static final Socks5InitialRequest INIT_REQUEST_PASSWORD_ONLY =
+            new DefaultSocks5InitialRequest(Collections.singletonList(Socks5AuthMethod.PASSWORD));
+
+    private final String username;
+    private final String password;
+    private final boolean pipelined;
+    private final Socks5CommandType commandType;
+
+    private String decoderName;
+    private String encoderName;
+
+    /**
+     * Creates a new instance which sends the specified command.
+     */
+    AbstractSocks5ProxyHandler(SocketAddress proxyAddress, String username, String password, boolean pipelined,
+                               Socks5CommandType commandType) {
+        super(proxyAddress);
+        if (username != null && username.isEmpty()) {
+            username = null;
+        }
+        if (password != null && password.isEmpty()) {
+            password = null;
+        }
+        this.username = username;
+        this.password = password;
+        this.pipelined = pipelined;
+        this.commandType = commandType;
+    }
+
+    @Override
+    public String protocol() {
+        return PROTOCOL;
+    }
+
+    @Override
+    public String authScheme() {
+        return socksAuthMethod() == Socks5AuthMethod.PASSWORD? AUTH_PASSWORD : AUTH_NONE;
+    }
+
+    public String username() {
+        return username;
+    }
+
+    public String password() {
+        return password;
+    }
+
+    /**
+     * Returns {@code true} if all handshake requests are sent in a single flush.
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    @Override
+    protected void addCodec(ChannelHandlerContext ctx) throws Exception {
+        ChannelPipeline p = ctx.pipeline();
+        String name = ctx.name();
+
+        ChannelHandler decoder = pipelined? new Socks5ClientHandshakeDecoder() : new Socks5InitialResponseDecoder();
+        p.addBefore(name, null, decoder);
+
+        decoderName = p.context(decoder).name();
+        encoderName = decoderName + ".encoder";
+
+        p.addBefore(name, encoderName, Socks5ClientEncoder.DEFAULT);
+    }
+
+    /**
+     * Returns the name of the decoder added by {@link #addCodec(ChannelHandlerContext)}.
+     */
+    final String decoderName() {
+        return decoderName;
+    }
+
+    @Override
+    protected void removeEncoder(ChannelHandlerContext ctx) throws Exception {
+        ctx.pipeline().remove(encoderName);
+    }
+
+    @Override
+    protected void removeDecoder(ChannelHandlerContext ctx) throws Exception {
+        ChannelPipeline p = ctx.pipeline();
+        if (p.context(decoderName) != null) {
+            p.remove(decoderName);
+        }
+    }
+
+    @Override
+    protected Object newInitialMessage(ChannelHandlerContext ctx) throws Exception {
+        if (pipelined) {
+            // Write the initial request and the authentication request; the CONNECT request returned here is
+            // flushed together with them.  The destination of a pre-negotiated connection is not known yet, so the
+            // last request before the CONNECT request is returned instead.
+            Socks5CommandRequest connectCommand = destinationAddress() != null? newConnectCommand() : null;
+            Object lastRequest;
+            if (socksAuthMethod() == Socks5AuthMethod.PASSWORD) {
+                writeToProxyServer(INIT_REQUEST_PASSWORD_ONLY);
+                lastRequest = newPasswordAuthRequest();
+            } else {
+                lastRequest = INIT_REQUEST_NO_AUTH;
+            }
+            if (connectCommand == null) {
+                return lastRequest;
+            }
+            writeToProxyServer(lastRequest);
+            return connectCommand;
+        }
+        return socksAuthMethod() == Socks5AuthMethod.PASSWORD? INIT_REQUEST_PASSWORD : INIT_REQUEST_NO_AUTH;
+    }
+
+    @Override
+    protected boolean isConnectRequest(Object msg) {
+        return msg instanceof Socks5CommandRequest;
+    }
+
+    @Override
+    protected boolean handleResponse(ChannelHandlerContext ctx, Object response) throws Exception {
+        if (response instanceof Socks5InitialResponse) {
+            recordPhase(ProxyHandshakePhase.INITIAL_RESPONSE);
+        } else if (response instanceof Socks5PasswordAuthResponse) {
+            recordPhase(ProxyHandshakePhase.AUTH_RESPONSE);
+        }
+
+        if (pipelined) {
+            return handlePipelinedResponse(ctx, response);
+        }
+
+        if (response instanceof Socks5InitialResponse) {
+            Socks5InitialResponse res = (Socks5InitialResponse) response;
+            Socks5AuthMethod authMethod = socksAuthMethod();
+            Socks5AuthMethod resAuthMethod = res.authMethod();
+            if (resAuthMethod != Socks5AuthMethod.NO_AUTH && resAuthMethod != authMethod) {
+                // Server did not allow unauthenticated access nor accept the requested authentication scheme.
+                throw new ProxyConnectException(exceptionMessage("unexpected authMethod: " + res.authMethod()));
+            }
+
+            if (resAuthMethod == Socks5AuthMethod.NO_AUTH) {
+                if (!deferConnectRequest()) {
+                    sendConnectCommand(ctx);
+                }
+            } else if (resAuthMethod == Socks5AuthMethod.PASSWORD) {
+                // In case of password authentication, send an authentication request.
+                ctx.pipeline().replace(decoderName, decoderName, new Socks5PasswordAuthResponseDecoder());
+                sendToProxyServer(newPasswordAuthRequest());
+            } else {
+                // Should never reach here.
+                throw new Error();
+            }
+            return false;
+        }
+
+        if (response instanceof Socks5PasswordAuthResponse) {
+            // Received an authentication response from the server.
+            Socks5PasswordAuthResponse res = (Socks5PasswordAuthResponse) response;
+            if (res.status() != Socks5PasswordAuthStatus.SUCCESS) {
+                throw new ProxyConnectException(exceptionMessage("authStatus: " + res.status()));
+            }
+
+            if (!deferConnectRequest()) {
+                sendConnectCommand(ctx);
+            }
+            return false;
+        }
+
+        return handleCommandResponse(ctx, (Socks5CommandResponse) response);
+    }
+
+    /**
+     * Validates a response to the pipelined requests.  All requests have been sent already, except for the CONNECT
+     * request of a pre-negotiated connection, so nothing is sent here.
+     */
+    private boolean handlePipelinedResponse(ChannelHandlerContext ctx, Object response) throws Exception {
+        if (response instanceof Socks5InitialResponse) {
+            Socks5AuthMethod authMethod = socksAuthMethod();
+            Socks5AuthMethod resAuthMethod = ((Socks5InitialResponse) response).authMethod();
+            if (resAuthMethod != authMethod) {
+                // The pipelined requests are valid only for the authentication scheme we offered.
+                throw new ProxyConnectException(exceptionMessage("unexpected authMethod: " + resAuthMethod));
+            }
+            if (resAuthMethod == Socks5AuthMethod.NO_AUTH) {
+                deferConnectRequest();
+            }
+            return false;
+        }
+
+        if (response instanceof Socks5PasswordAuthResponse) {
+            Socks5PasswordAuthResponse res = (Socks5PasswordAuthResponse) response;
+            if (res.status() != Socks5PasswordAuthStatus.SUCCESS) {
+                throw new ProxyConnectException(exceptionMessage("authStatus: " + res.status()));
+            }
+            deferConnectRequest();
+            return false;
+        }
+
+        return handleCommandResponse(ctx, (Socks5CommandResponse) response);
+    }
+
+    /**
+     * Handles a response to the command request.  The default implementation expects a single response, which should
+     * be the last message from the server.
+     *
+     * @return {@code true} if the command has completed and the tunnel is established
+     */
+    boolean handleCommandResponse(ChannelHandlerContext ctx, Socks5CommandResponse res) throws Exception {
+        checkCommandResponse(res);
+        return true;
+    }
+
+    @Override
+    protected void sendConnectRequest(ChannelHandlerContext ctx) throws Exception {
+        if (pipelined) {
+            // The handshake decoder is still in place and expects the command response next.
+            sendToProxyServer(newConnectCommand());
+        } else {
+            sendConnectCommand(ctx);
+        }
+    }
+
+    final void checkCommandResponse(Socks5CommandResponse res) throws ProxyConnectException {
+        if (res.status() != Socks5CommandStatus.SUCCESS) {
+            throw new ProxyConnectException(exceptionMessage("status: " + res.status()));
+        }
+    }
+
+    /**
+     * Returns the {@code BND.ADDR} and {@code BND.PORT} of the specified response as a socket address.  An all-zero
+     * address is replaced with the address of the proxy server, as the client has to reach the proxy server at the
+     * returned address.
+     */
+    final InetSocketAddress boundAddress(ChannelHandlerContext ctx, Socks5CommandResponse res) {
+        SocksAddress address = res.bndAddress();
+        int port = res.bndPort();
+        if (address.isDomain() || !isZero(address)) {
+            return toSocketAddress(address, port);
+        }
+        // Prefer the address the control connection is connected to, which is resolved.
+        SocketAddress remoteAddress = ctx.channel().remoteAddress();
+        if (remoteAddress instanceof InetSocketAddress && !((InetSocketAddress) remoteAddress).isUnresolved()) {
+            return new InetSocketAddress(((InetSocketAddress) remoteAddress).getAddress(), port);
+        }
+        SocketAddress proxyAddress = proxyAddress();
+        if (proxyAddress instanceof InetSocketAddress) {
+            InetSocketAddress proxy = (InetSocketAddress) proxyAddress;
+            return proxy.isUnresolved()? InetSocketAddress.createUnresolved(proxy.getHostString(), port)
+                                       : new InetSocketAddress(proxy.getAddress(), port);
+        }
+        return toSocketAddress(address, port);
+    }
+
+    /**
+     * Returns the specified SOCKS address and port as a socket address, which is unresolved for a domain name.
+     */
+    static InetSocketAddress toSocketAddress(SocksAddress address, int port) {
+        if (address.isDomain()) {
+            return InetSocketAddress.createUnresolved(address.toString(), port);
+        }
+        return new InetSocketAddress(address.toInetAddress(), port);
+    }
+
+    private static boolean isZero(SocksAddress address) {
+        return address.isIPv4()? address.ipv4Address() == 0 : address.ipv6High() == 0 && address.ipv6Low() == 0;
+    }
+
+    private Socks5AuthMethod socksAuthMethod() {
+        Socks5AuthMethod authMethod;
+        if (username == null && password == null) {
+            authMethod = Socks5AuthMethod.NO_AUTH;
+        } else {
+            authMethod = Socks5AuthMethod.PASSWORD;
+        }
+        return authMethod;
+    }
+
+    private Socks5PasswordAuthRequest newPasswordAuthRequest() {
+        return new DefaultSocks5PasswordAuthRequest(username != null? username : "", password != null? password : "");
+    }
+
+    private void sendConnectCommand(ChannelHandlerContext ctx) throws Exception {
+        Socks5CommandRequest connectCommand = newConnectCommand();
+        ctx.pipeline().replace(decoderName, decoderName, new Socks5CommandResponseDecoder());
+        sendToProxyServer(connectCommand);
+    }
+
+    private Socks5CommandRequest newConnectCommand() throws ProxyConnectException {
+        InetSocketAddress raddr = destinationAddress();
+        SocksAddress dstAddress;
+        try {
+            dstAddress = SocksAddress.of(raddr);
+        } catch (IllegalArgumentException e) {
+            throw new ProxyConnectException(exceptionMessage("unknown address type: " + raddr), e);
+        }
+        return new DefaultSocks5CommandRequest(commandType, dstAddress, raddr.getPort());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link ProxyHandlerMetrics} which records the handshake latencies into a {@link LatencyHistogram} per proxy
+ * server: one for the whole handshake, and one for each {@link ProxyHandshakePhase}, measured from the previous phase
+ * that has been reached.  It can be shared by all handlers.
+ */
+public final class HistogramProxyHandlerMetrics implements ProxyHandlerMetrics {
+
+    private static final ProxyHandshakePhase[] PHASES = ProxyHandshakePhase.values();
+
+    private final ConcurrentMap<SocketAddress, ProxyStats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void handshakeSucceeded(ProxyHandler handler, ProxyHandshakeTimings timings) {
+        ProxyStats stats = stats(handler.proxyAddress());
+        stats.succeeded.increment();
+        long handshakeNanos = timings.handshakeNanos();
+        if (handshakeNanos >= 0) {
+            stats.handshake.record(handshakeNanos);
+        }
+        for (ProxyHandshakePhase phase : PHASES) {
+            long phaseNanos = timings.phaseNanos(phase);
+            if (phaseNanos >= 0) {
+                stats.phases[phase.ordinal()].record(phaseNanos);
+            }
+        }
+    }
+
+    @Override
+    public void handshakeFailed(ProxyHandler handler, Throwable cause, ProxyHandshakeTimings timings) {
+        stats(handler.proxyAddress()).failed.increment();
+    }
+
+    /**
+     * Returns the addresses of the proxy servers for which handshakes have been recorded.
+     */
+    public Set<SocketAddress> proxyAddresses() {
+        return Collections.unmodifiableSet(stats.keySet());
+    }
+
+    /**
+     * Returns the latencies of the successful handshakes with the specified proxy server, or an empty histogram if
+     * no handshake with the proxy server has been recorded.
+     */
+    public LatencyHistogram handshakeLatency(SocketAddress proxyAddress) {
+        ProxyStats stats = recordedStats(proxyAddress);
+        return stats != null? stats.handshake : new LatencyHistogram();
+    }
+
+    /**
+     * Returns the latencies of the specified phase of the successful handshakes with the specified proxy server,
+     * measured from the previous phase that has been reached, or an empty histogram if no handshake with the proxy
+     * server has been recorded.
+     */
+    public LatencyHistogram phaseLatency(SocketAddress proxyAddress, ProxyHandshakePhase phase) {
+        requireNonNull(phase, "phase");
+        ProxyStats stats = recordedStats(proxyAddress);
+        return stats != null? stats.phases[phase.ordinal()] : new LatencyHistogram();
+    }
+
+    /**
+     * Returns the number of successful handshakes with the specified proxy server.
+     */
+    public long succeeded(SocketAddress proxyAddress) {
+        ProxyStats stats = recordedStats(proxyAddress);
+        return stats != null? stats.succeeded.sum() : 0;
+    }
+
+    /**
+     * Returns the number of failed handshakes with the specified proxy server.
+     */
+    public long failed(SocketAddress proxyAddress) {
+        ProxyStats stats = recordedStats(proxyAddress);
+        return stats != null? stats.failed.sum() : 0;
+    }
+
+    private ProxyStats stats(SocketAddress proxyAddress) {
+        requireNonNull(proxyAddress, "proxyAddress");
+        ProxyStats stats = this.stats.get(proxyAddress);
+        if (stats == null) {
+            stats = this.stats.computeIfAbsent(proxyAddress, address -> new ProxyStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the statistics of the specified proxy server, or {@code null} if no handshake has been recorded, so that
+     * querying a proxy server does not add it to {@link #proxyAddresses()}.
+     */
+    private ProxyStats recordedStats(SocketAddress proxyAddress) {
+        return stats.get(requireNonNull(proxyAddress, "proxyAddress"));
+    }
+
+    private static final class ProxyStats {
+        final LatencyHistogram handshake = new LatencyHistogram();
+        final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder failed = new LongAdder();
+
+        ProxyStats() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+    }
+}
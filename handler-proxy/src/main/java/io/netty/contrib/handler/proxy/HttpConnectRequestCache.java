@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.DefaultBufferAllocators;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static io.netty5.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * A bounded cache of encoded HTTP/1.1 CONNECT requests, keyed by the destination host and port.  It can be shared by
+ * the {@link HttpProxyHandler}s which use the {@linkplain HttpProxyHandler#isLightweightCodec() lightweight codec}
+ * and send the same authorization and custom headers, so that the request to a known destination is encoded only
+ * once and every connection writes a read-only view of the cached bytes.
+ * <p>
+ * When the cache is full, the least recently used destination is evicted to make room for a new one.  The cache is
+ * guarded by a lock which is held only to look up or insert an entry; requests are encoded outside of it.
+ *
+ * @see HttpProxyHandler#setConnectRequestCache(HttpConnectRequestCache)
+ */
+public final class HttpConnectRequestCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private final int maxEntries;
+    private final Map<Destination, Supplier<Buffer>> requests;
+    private final AtomicReference<Template> template = new AtomicReference<>();
+
+    public HttpConnectRequestCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public HttpConnectRequestCache(int maxEntries) {
+        this.maxEntries = checkPositive(maxEntries, "maxEntries");
+        requests = new LinkedHashMap<Destination, Supplier<Buffer>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Destination, Supplier<Buffer>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of destinations whose requests are cached.
+     */
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of destinations whose requests are currently cached.
+     */
+    public int size() {
+        synchronized (requests) {
+            return requests.size();
+        }
+    }
+
+    /**
+     * Removes all cached requests.
+     */
+    public void clear() {
+        synchronized (requests) {
+            requests.clear();
+        }
+    }
+
+    /**
+     * Makes sure that all handlers using this cache would encode the same requests.
+     */
+    void bind(byte[] encodedHeaders, boolean ignoreDefaultPortsInConnectHostHeader) {
+        Template newTemplate = new Template(encodedHeaders, ignoreDefaultPortsInConnectHostHeader);
+        Template oldTemplate = template.get();
+        if (oldTemplate == null && template.compareAndSet(null, newTemplate)) {
+            return;
+        }
+        if (!template.get().equals(newTemplate)) {
+            throw new IllegalArgumentException(
+                    "cache is already used by handlers with different headers or host header settings");
+        }
+    }
+
+    /**
+     * Returns the cached request to the specified destination, encoding and caching it first if needed.
+     */
+    Buffer request(InetSocketAddress destination, Function<InetSocketAddress, byte[]> encoder) {
+        Destination key = new Destination(destination.getHostString(), destination.getPort());
+        Supplier<Buffer> request;
+        synchronized (requests) {
+            request = requests.get(key);
+        }
+        if (request == null) {
+            Supplier<Buffer> newRequest =
+                    DefaultBufferAllocators.preferredAllocator().constBufferSupplier(encoder.apply(destination));
+            synchronized (requests) {
+                request = requests.putIfAbsent(key, newRequest);
+            }
+            if (request == null) {
+                request = newRequest;
+            }
+        }
+        return request.get();
+    }
+
+    private static final class Destination {
+        private final String host;
+        private final int port;
+
+        Destination(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Destination)) {
+                return false;
+            }
+            Destination that = (Destination) o;
+            return port == that.port && host.equals(that.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * host.hashCode() + port;
+        }
+    }
+
+    private static final class Template {
+        private final byte[] encodedHeaders;
+        private final boolean ignoreDefaultPortsInConnectHostHeader;
+
+        Template(byte[] encodedHeaders, boolean ignoreDefaultPortsInConnectHostHeader) {
+            this.encodedHeaders = encodedHeaders;
+            this.ignoreDefaultPortsInConnectHostHeader = ignoreDefaultPortsInConnectHostHeader;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Template)) {
+                return false;
+            }
+            Template that = (Template) o;
+            return ignoreDefaultPortsInConnectHostHeader == that.ignoreDefaultPortsInConnectHostHeader &&
+                   Arrays.equals(encodedHeaders, that.encodedHeaders);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(encodedHeaders) + (ignoreDefaultPortsInConnectHostHeader? 1 : 0);
+        }
+    }
+}
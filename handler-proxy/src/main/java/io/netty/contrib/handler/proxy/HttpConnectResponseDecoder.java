@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.handler.codec.ByteToMessageDecoder;
+import io.netty5.handler.codec.DecoderException;
+import io.netty5.handler.codec.http.HttpResponseStatus;
+import io.netty5.handler.codec.http.headers.HttpHeaders;
+import io.netty5.util.AsciiString;
+
+import static io.netty5.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Decodes the response to an HTTP/1.1 CONNECT request straight from the inbound {@link Buffer}s, without building the
+ * HTTP object model of the {@link io.netty5.handler.codec.http.HttpClientCodec}.
+ * <p>
+ * Once the status line and the headers have been received, the {@link HttpResponseStatus} is passed to the next
+ * handler.  The headers are only parsed if the status is not {@code 200}, and are available from {@link #headers()}
+ * then.  The body of a failed response is discarded, so that other handler closes the connection later.  On a
+ * {@code 200} response, this decoder will forward the received data to the next handler, so that other handler can
+ * remove this decoder later.
+ */
+final class HttpConnectResponseDecoder extends ByteToMessageDecoder {
+
+    static final int DEFAULT_MAX_HEADER_SIZE = 8192;
+
+    private static final byte[] HTTP_1 = { 'H', 'T', 'T', 'P', '/', '1', '.' };
+
+    private enum State {
+        STATUS_LINE,
+        HEADERS,
+        SUCCESS,
+        FAILURE
+    }
+
+    private final int maxHeaderSize;
+
+    private State state = State.STATUS_LINE;
+    private int headerSize;
+    private HttpResponseStatus status;
+    private HttpHeaders headers;
+
+    HttpConnectResponseDecoder() {
+        this(DEFAULT_MAX_HEADER_SIZE);
+    }
+
+    HttpConnectResponseDecoder(int maxHeaderSize) {
+        this.maxHeaderSize = checkPositive(maxHeaderSize, "maxHeaderSize");
+    }
+
+    /**
+     * Returns the headers of the response, or {@code null} if the status was {@code 200} or has not been received yet.
+     */
+    HttpHeaders headers() {
+        return headers;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, Buffer in) throws Exception {
+        try {
+            switch (state) {
+            case STATUS_LINE: {
+                final int length = findEndOfLine(in);
+                if (length < 0) {
+                    return;
+                }
+                readStatusLine(in, length);
+                if (status.code() != 200) {
+                    headers = HttpHeaders.newHeaders();
+                }
+                state = State.HEADERS;
+            }
+            // fall through
+            case HEADERS: {
+                for (;;) {
+                    final int length = findEndOfLine(in);
+                    if (length < 0) {
+                        return;
+                    }
+                    final int contentLength = contentLength(in, length);
+                    if (contentLength == 0) {
+                        in.skipReadableBytes(length + 1);
+                        break;
+                    }
+                    if (headers != null) {
+                        readHeader(in, contentLength);
+                    }
+                    in.skipReadableBytes(length + 1);
+                }
+
+                state = headers == null? State.SUCCESS : State.FAILURE;
+                ctx.fireChannelRead(status);
+                break;
+            }
+            case SUCCESS: {
+                int readableBytes = actualReadableBytes();
+                if (readableBytes > 0) {
+                    ctx.fireChannelRead(in.readSplit(readableBytes));
+                }
+                break;
+            }
+            case FAILURE: {
+                in.skipReadableBytes(actualReadableBytes());
+                break;
+            }
+            }
+        } catch (Exception e) {
+            state = State.FAILURE;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of bytes before the next {@code LF}, or {@code -1} if the line has not been received
+     * completely yet.
+     */
+    private int findEndOfLine(Buffer in) {
+        final int length = in.bytesBefore((byte) '\n');
+        if (length < 0) {
+            if (headerSize + in.readableBytes() > maxHeaderSize) {
+                throw tooLongHeader();
+            }
+            return -1;
+        }
+        headerSize += length + 1;
+        if (headerSize > maxHeaderSize) {
+            throw tooLongHeader();
+        }
+        return length;
+    }
+
+    private DecoderException tooLongHeader() {
+        return new DecoderException("response header is larger than " + maxHeaderSize + " bytes.");
+    }
+
+    /**
+     * Returns the length of the line without the trailing {@code CR}, if any.
+     */
+    private static int contentLength(Buffer in, int length) {
+        if (length > 0 && in.getByte(in.readerOffset() + length - 1) == '\r') {
+            return length - 1;
+        }
+        return length;
+    }
+
+    private void readStatusLine(Buffer in, int length) {
+        final int start = in.readerOffset();
+        final int contentLength = contentLength(in, length);
+        if (contentLength < 12 || !startsWithHttp1(in, start) || in.getByte(start + 8) != ' ' ||
+            !isDigit(in.getByte(start + 9)) || !isDigit(in.getByte(start + 10)) || !isDigit(in.getByte(start + 11)) ||
+            contentLength > 12 && in.getByte(start + 12) != ' ') {
+            throw new DecoderException("invalid status line: " + readAscii(in, start, start + contentLength));
+        }
+
+        final int code = (in.getByte(start + 9) - '0') * 100 + (in.getByte(start + 10) - '0') * 10 +
+                         in.getByte(start + 11) - '0';
+        if (code == 200) {
+            status = HttpResponseStatus.OK;
+        } else if (contentLength > 13) {
+            status = HttpResponseStatus.valueOf(code, readAscii(in, start + 13, start + contentLength).toString());
+        } else {
+            status = HttpResponseStatus.valueOf(code);
+        }
+        in.skipReadableBytes(length + 1);
+    }
+
+    private static boolean startsWithHttp1(Buffer in, int start) {
+        for (int i = 0; i < HTTP_1.length; i++) {
+            if (in.getByte(start + i) != HTTP_1[i]) {
+                return false;
+            }
+        }
+        return isDigit(in.getByte(start + HTTP_1.length));
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private void readHeader(Buffer in, int contentLength) {
+        final int start = in.readerOffset();
+        final int end = start + contentLength;
+        int colon = start;
+        while (colon < end && in.getByte(colon) != ':') {
+            colon++;
+        }
+        int nameEnd = colon;
+        while (nameEnd > start && isWhitespace(in.getByte(nameEnd - 1))) {
+            nameEnd--;
+        }
+        if (colon == end || nameEnd == start) {
+            throw new DecoderException("invalid header: " + readAscii(in, start, end));
+        }
+
+        int valueStart = colon + 1;
+        while (valueStart < end && isWhitespace(in.getByte(valueStart))) {
+            valueStart++;
+        }
+        int valueEnd = end;
+        while (valueEnd > valueStart && isWhitespace(in.getByte(valueEnd - 1))) {
+            valueEnd--;
+        }
+        headers.add(readAscii(in, start, nameEnd), readAscii(in, valueStart, valueEnd));
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static AsciiString readAscii(Buffer in, int from, int to) {
+        final byte[] bytes = new byte[to - from];
+        in.copyInto(from, bytes, 0, bytes.length);
+        return new AsciiString(bytes, /*copy=*/ false);
+    }
+}
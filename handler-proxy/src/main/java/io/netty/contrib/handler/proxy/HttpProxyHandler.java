@@ -15,6 +15,7 @@
  */
 package io.netty.contrib.handler.proxy;
 
+import io.netty5.buffer.Buffer;
 import io.netty5.channel.ChannelHandler;
 import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.channel.ChannelPipeline;
@@ -27,6 +28,7 @@ import io.netty5.handler.codec.http.HttpHeaderNames;
 import io.netty5.handler.codec.http.headers.DefaultHttpHeadersFactory;
 import io.netty5.handler.codec.http.headers.HttpHeaders;
 import io.netty5.handler.codec.http.HttpMethod;
+import io.netty5.handler.codec.http.HttpRequest;
 import io.netty5.handler.codec.http.HttpResponse;
 import io.netty5.handler.codec.http.HttpResponseStatus;
 import io.netty5.handler.codec.http.HttpUtil;
@@ -41,6 +43,7 @@ import java.net.SocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Map.Entry;
 
 import static java.util.Objects.requireNonNull;
 
@@ -58,6 +61,9 @@ public final class HttpProxyHandler extends ProxyHandler {
     private static final String PROTOCOL = "http";
     private static final String AUTH_BASIC = "basic";
     private static final byte[] BASIC_BYTES = "Basic ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CONNECT_BYTES = "CONNECT ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HOST_BYTES = " HTTP/1.1\r\nhost: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CRLF_BYTES = { '\r', '\n' };
 
     // Wrapper for the HttpClientCodec to prevent it to be removed by other handlers by mistake (for example the
     // WebSocket*Handshaker.
@@ -65,12 +71,15 @@ public final class HttpProxyHandler extends ProxyHandler {
     // See:
     // - https://github.com/netty/netty/issues/5201
     // - https://github.com/netty/netty/issues/5070
-    private final HttpClientCodecWrapper codecWrapper = new HttpClientCodecWrapper();
+    private final HttpClientCodecWrapper codecWrapper;
+    private final HttpConnectResponseDecoder responseDecoder;
     private final String username;
     private final String password;
     private final CharSequence authorization;
     private final HttpHeaders outboundHeaders;
     private final boolean ignoreDefaultPortsInConnectHostHeader;
+    private final byte[] encodedHeaders;
+    private volatile HttpConnectRequestCache requestCache;
     private HttpResponseStatus status;
     private HttpHeaders inboundHeaders;
 
@@ -85,12 +94,29 @@ public final class HttpProxyHandler extends ProxyHandler {
     public HttpProxyHandler(SocketAddress proxyAddress,
                             HttpHeaders headers,
                             boolean ignoreDefaultPortsInConnectHostHeader) {
+        this(proxyAddress, headers, ignoreDefaultPortsInConnectHostHeader, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lightweightCodec if {@code true}, the CONNECT request is written as a pre-serialized {@link Buffer} and
+     *                         the response is parsed by a dedicated decoder instead of an {@link HttpClientCodec},
+     *                         which only builds the response headers if the proxy server refuses the connection
+     */
+    public HttpProxyHandler(SocketAddress proxyAddress,
+                            HttpHeaders headers,
+                            boolean ignoreDefaultPortsInConnectHostHeader,
+                            boolean lightweightCodec) {
         super(proxyAddress);
         username = null;
         password = null;
         authorization = null;
         outboundHeaders = headers;
         this.ignoreDefaultPortsInConnectHostHeader = ignoreDefaultPortsInConnectHostHeader;
+        codecWrapper = lightweightCodec? null : new HttpClientCodecWrapper();
+        responseDecoder = lightweightCodec? new HttpConnectResponseDecoder() : null;
+        encodedHeaders = lightweightCodec? encodeHeaders(null, headers) : null;
     }
 
     public HttpProxyHandler(SocketAddress proxyAddress, String username, String password) {
@@ -107,6 +133,22 @@ public final class HttpProxyHandler extends ProxyHandler {
                             String password,
                             HttpHeaders headers,
                             boolean ignoreDefaultPortsInConnectHostHeader) {
+        this(proxyAddress, username, password, headers, ignoreDefaultPortsInConnectHostHeader, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lightweightCodec if {@code true}, the CONNECT request is written as a pre-serialized {@link Buffer} and
+     *                         the response is parsed by a dedicated decoder instead of an {@link HttpClientCodec},
+     *                         which only builds the response headers if the proxy server refuses the connection
+     */
+    public HttpProxyHandler(SocketAddress proxyAddress,
+                            String username,
+                            String password,
+                            HttpHeaders headers,
+                            boolean ignoreDefaultPortsInConnectHostHeader,
+                            boolean lightweightCodec) {
         super(proxyAddress);
         requireNonNull(username, "username");
         requireNonNull(password, "password");
@@ -122,6 +164,30 @@ public final class HttpProxyHandler extends ProxyHandler {
 
         outboundHeaders = headers;
         this.ignoreDefaultPortsInConnectHostHeader = ignoreDefaultPortsInConnectHostHeader;
+        codecWrapper = lightweightCodec? null : new HttpClientCodecWrapper();
+        responseDecoder = lightweightCodec? new HttpConnectResponseDecoder() : null;
+        encodedHeaders = lightweightCodec? encodeHeaders(authorization, headers) : null;
+    }
+
+    /**
+     * Serializes the headers which are the same for every CONNECT request sent by this handler, including the empty
+     * line which terminates the request.
+     */
+    private static byte[] encodeHeaders(CharSequence authorization, HttpHeaders headers) {
+        StringBuilder buf = new StringBuilder(128);
+        if (authorization != null) {
+            appendHeader(buf, HttpHeaderNames.PROXY_AUTHORIZATION, authorization);
+        }
+        if (headers != null) {
+            for (Entry<CharSequence, CharSequence> header : headers) {
+                appendHeader(buf, header.getKey(), header.getValue());
+            }
+        }
+        return buf.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void appendHeader(StringBuilder buf, CharSequence name, CharSequence value) {
+        buf.append(name).append(": ").append(value).append("\r\n");
     }
 
     @Override
@@ -142,33 +208,92 @@ public final class HttpProxyHandler extends ProxyHandler {
         return password;
     }
 
+    /**
+     * Returns {@code true} if this handler uses a pre-serialized CONNECT request and a dedicated response decoder
+     * instead of an {@link HttpClientCodec}.
+     */
+    public boolean isLightweightCodec() {
+        return responseDecoder != null;
+    }
+
+    /**
+     * Returns the cache of encoded CONNECT requests used by this handler, or {@code null} if the request is encoded
+     * for every connection.
+     */
+    public HttpConnectRequestCache connectRequestCache() {
+        return requestCache;
+    }
+
+    /**
+     * Sets the cache of encoded CONNECT requests, which may be shared with other handlers that send the same headers.
+     * This must be set before the handshake starts.
+     *
+     * @throws IllegalStateException if this handler does not use the {@linkplain #isLightweightCodec() lightweight
+     *                               codec}
+     * @throws IllegalArgumentException if the cache is already used by handlers with different headers
+     */
+    public void setConnectRequestCache(HttpConnectRequestCache requestCache) {
+        if (encodedHeaders == null) {
+            throw new IllegalStateException("the connect request cache requires the lightweight codec");
+        }
+        if (requestCache != null) {
+            requestCache.bind(encodedHeaders, ignoreDefaultPortsInConnectHostHeader);
+        }
+        this.requestCache = requestCache;
+    }
+
     @Override
     protected void addCodec(ChannelHandlerContext ctx) throws Exception {
         ChannelPipeline p = ctx.pipeline();
         String name = ctx.name();
-        p.addBefore(name, null, codecWrapper);
+        p.addBefore(name, null, responseDecoder != null? responseDecoder : codecWrapper);
     }
 
     @Override
     protected void removeEncoder(ChannelHandlerContext ctx) throws Exception {
-        codecWrapper.codec.removeOutboundHandler();
+        if (codecWrapper != null) {
+            codecWrapper.codec.removeOutboundHandler();
+        }
     }
 
     @Override
     protected void removeDecoder(ChannelHandlerContext ctx) throws Exception {
-        codecWrapper.codec.removeInboundHandler();
+        if (responseDecoder != null) {
+            ctx.pipeline().remove(responseDecoder);
+        } else {
+            codecWrapper.codec.removeInboundHandler();
+        }
     }
 
     @Override
     protected Object newInitialMessage(ChannelHandlerContext ctx) throws Exception {
+        if (deferConnectRequest()) {
+            return null;
+        }
+        return newConnectRequest(ctx);
+    }
+
+    @Override
+    protected void sendConnectRequest(ChannelHandlerContext ctx) throws Exception {
+        sendToProxyServer(newConnectRequest(ctx));
+    }
+
+    private Object newConnectRequest(ChannelHandlerContext ctx) {
         InetSocketAddress raddr = destinationAddress();
 
+        HttpConnectRequestCache requestCache = this.requestCache;
+        if (requestCache != null) {
+            return requestCache.request(raddr, this::encodeConnectRequest);
+        }
+
         String hostString = HttpUtil.formatHostnameForHttp(raddr);
         int port = raddr.getPort();
         String url = hostString + ':' + port;
-        String hostHeader = ignoreDefaultPortsInConnectHostHeader && (port == 80 || port == 443) ?
-                hostString :
-                url;
+        String hostHeader = hostHeader(hostString, url, port);
+
+        if (encodedHeaders != null) {
+            return newConnectRequestBuffer(ctx, url, hostHeader);
+        }
 
         HttpHeadersFactory httpHeadersFactory = DefaultHttpHeadersFactory.headersFactory().withNameValidation(false).withValueValidation(false);
         HttpHeadersFactory httpTrailersFactory = DefaultHttpHeadersFactory.trailersFactory().withNameValidation(false).withValueValidation(false);
@@ -191,8 +316,59 @@ public final class HttpProxyHandler extends ProxyHandler {
         return req;
     }
 
+    private String hostHeader(String hostString, String url, int port) {
+        return ignoreDefaultPortsInConnectHostHeader && (port == 80 || port == 443) ?
+                hostString :
+                url;
+    }
+
+    /**
+     * Encodes the CONNECT request to the specified destination for the {@link HttpConnectRequestCache}.
+     */
+    private byte[] encodeConnectRequest(InetSocketAddress raddr) {
+        String hostString = HttpUtil.formatHostnameForHttp(raddr);
+        int port = raddr.getPort();
+        String url = hostString + ':' + port;
+        byte[] requestLine = ("CONNECT " + url + " HTTP/1.1\r\nhost: " + hostHeader(hostString, url, port) + "\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] request = Arrays.copyOf(requestLine, requestLine.length + encodedHeaders.length);
+        System.arraycopy(encodedHeaders, 0, request, requestLine.length, encodedHeaders.length);
+        return request;
+    }
+
+    /**
+     * Writes the CONNECT request into a {@link Buffer} of the exact size, appending the pre-serialized headers.
+     */
+    private Buffer newConnectRequestBuffer(ChannelHandlerContext ctx, String url, String hostHeader) {
+        int length = CONNECT_BYTES.length + url.length() + HOST_BYTES.length + hostHeader.length() +
+                     CRLF_BYTES.length + encodedHeaders.length;
+        return ctx.bufferAllocator().allocate(length)
+                  .writeBytes(CONNECT_BYTES)
+                  .writeCharSequence(url, StandardCharsets.US_ASCII)
+                  .writeBytes(HOST_BYTES)
+                  .writeCharSequence(hostHeader, StandardCharsets.US_ASCII)
+                  .writeBytes(CRLF_BYTES)
+                  .writeBytes(encodedHeaders);
+    }
+
+    @Override
+    protected boolean isConnectRequest(Object msg) {
+        // The pre-serialized CONNECT request is the only message sent by the lightweight codec.
+        return msg instanceof HttpRequest || msg instanceof Buffer && responseDecoder != null;
+    }
+
     @Override
     protected boolean handleResponse(ChannelHandlerContext ctx, Object response) throws Exception {
+        if (response instanceof HttpResponseStatus) {
+            // Decoded by the HttpConnectResponseDecoder, which builds the headers only for a failed response.
+            status = (HttpResponseStatus) response;
+            inboundHeaders = responseDecoder.headers();
+            if (status.code() != 200) {
+                throw new HttpProxyConnectException(exceptionMessage("status: " + status), inboundHeaders);
+            }
+            return true;
+        }
+
         if (response instanceof HttpResponse) {
             if (status != null) {
                 throw new HttpProxyConnectException(exceptionMessage("too many responses"), /*headers=*/ null);
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.util.Send;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the messages which have been buffered while the handshake was in progress, composing consecutive
+ * {@link Buffer}s into a single composite buffer without copying them, so that a burst of small writes reaches the
+ * outbound buffer of the transport as a single message.  The futures of the composed writes are notified with the
+ * outcome of the single write.
+ */
+final class PendingWriteCoalescer {
+
+    private final ChannelHandlerContext ctx;
+    private final List<Buffer> buffers = new ArrayList<>();
+    private final List<Promise<Void>> promises = new ArrayList<>();
+
+    PendingWriteCoalescer(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * Writes the specified message, or holds it back to compose it with the following ones.
+     */
+    Future<Void> write(Object msg) {
+        if (!(msg instanceof Buffer)) {
+            finish();
+            return ctx.write(msg);
+        }
+
+        Promise<Void> promise = ctx.newPromise();
+        buffers.add((Buffer) msg);
+        promises.add(promise);
+        return promise.asFuture();
+    }
+
+    /**
+     * Writes the buffers which have been held back.
+     */
+    void finish() {
+        if (buffers.isEmpty()) {
+            return;
+        }
+
+        Future<Void> future;
+        if (buffers.size() == 1) {
+            future = ctx.write(buffers.get(0));
+        } else {
+            List<Send<Buffer>> sends = new ArrayList<>(buffers.size());
+            for (Buffer buffer : buffers) {
+                sends.add(readableBytes(buffer).send());
+            }
+            future = ctx.write(ctx.bufferAllocator().compose(sends));
+        }
+        for (Promise<Void> promise : promises) {
+            future.cascadeTo(promise);
+        }
+        buffers.clear();
+        promises.clear();
+    }
+
+    /**
+     * Splits off exactly the readable bytes of the specified buffer, without copying them, so that they can be
+     * composed with the other buffers without gaps.  The rest of the specified buffer is closed.
+     */
+    private static Buffer readableBytes(Buffer buffer) {
+        try (buffer) {
+            buffer.split(buffer.readerOffset()).close();
+            return buffer.split();
+        }
+    }
+}
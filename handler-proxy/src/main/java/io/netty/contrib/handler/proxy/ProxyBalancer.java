@@ -0,0 +1,329 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static io.netty5.util.internal.ObjectUtil.checkNonEmpty;
+import static io.netty5.util.internal.ObjectUtil.checkPositive;
+import static io.netty5.util.internal.ObjectUtil.checkPositiveOrZero;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates a {@link ProxyHandler} for every new connection, choosing the proxy server among several endpoints by their
+ * health.
+ * <p>
+ * Every handler returned by {@link #newProxyHandler()} reports the outcome of its handshake back to the endpoint it
+ * was created for.  An endpoint whose handshakes fail {@linkplain #maxFailures() several times in a row} is ejected
+ * for the {@linkplain #ejectionMillis() ejection time}, during which it is chosen only if all endpoints are ejected.
+ * Among the other endpoints, the one with the best score according to the {@link Strategy} is chosen; ties are
+ * broken in a round-robin fashion, so that the load is spread evenly among equally healthy endpoints.
+ * <p>
+ * The handshake latency of a handler is measured from {@link #newProxyHandler()} until its
+ * {@link ProxyHandler#connectFuture()} is notified, so the handler should be added to a channel right away.
+ */
+public final class ProxyBalancer {
+
+    /**
+     * The default number of consecutive handshake failures after which an endpoint is ejected.
+     */
+    public static final int DEFAULT_MAX_FAILURES = 3;
+
+    /**
+     * The default time for which a failing endpoint is ejected: 30 seconds.
+     */
+    public static final long DEFAULT_EJECTION_MILLIS = 30000;
+
+    /**
+     * The weight of a new handshake latency sample in the moving average.
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    /**
+     * The latency a failed handshake counts as if the handler has no connect timeout: 10 seconds.
+     */
+    private static final long DEFAULT_FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * How the endpoint is chosen among the endpoints that are not ejected.
+     */
+    public enum Strategy {
+        /**
+         * Chooses the endpoint with the fewest handshakes in progress.
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * Chooses the endpoint with the lowest exponentially weighted moving average of the handshake latency,
+         * multiplied by the number of handshakes in progress plus one.  A failed handshake counts as one which took
+         * the {@linkplain ProxyHandler#connectTimeoutMillis() connect timeout} of its handler, so an endpoint which
+         * keeps failing falls behind the healthy ones.  An endpoint which has not completed a handshake yet is scored
+         * with the average latency of the others.
+         */
+        EWMA_LATENCY
+    }
+
+    private final List<Endpoint> endpoints;
+    private final Function<? super SocketAddress, ? extends ProxyHandler> proxyHandlerFactory;
+    private final Strategy strategy;
+    private final int maxFailures;
+    private final long ejectionNanos;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    public ProxyBalancer(List<? extends SocketAddress> proxyAddresses,
+                         Function<? super SocketAddress, ? extends ProxyHandler> proxyHandlerFactory) {
+        this(proxyAddresses, proxyHandlerFactory, Strategy.LEAST_OUTSTANDING, DEFAULT_MAX_FAILURES,
+             DEFAULT_EJECTION_MILLIS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param proxyAddresses the addresses of the proxy servers
+     * @param proxyHandlerFactory creates a new {@link ProxyHandler} for the specified proxy server address
+     * @param strategy how the endpoint is chosen among the endpoints that are not ejected
+     * @param maxFailures the number of consecutive handshake failures after which an endpoint is ejected
+     * @param ejectionMillis the time for which a failing endpoint is ejected
+     */
+    public ProxyBalancer(List<? extends SocketAddress> proxyAddresses,
+                         Function<? super SocketAddress, ? extends ProxyHandler> proxyHandlerFactory,
+                         Strategy strategy, int maxFailures, long ejectionMillis) {
+        checkNonEmpty(proxyAddresses, "proxyAddresses");
+        List<Endpoint> endpoints = new ArrayList<>(proxyAddresses.size());
+        for (SocketAddress proxyAddress : proxyAddresses) {
+            endpoints.add(new Endpoint(requireNonNull(proxyAddress, "proxyAddress")));
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.proxyHandlerFactory = requireNonNull(proxyHandlerFactory, "proxyHandlerFactory");
+        this.strategy = requireNonNull(strategy, "strategy");
+        this.maxFailures = checkPositive(maxFailures, "maxFailures");
+        ejectionNanos = TimeUnit.MILLISECONDS.toNanos(checkPositiveOrZero(ejectionMillis, "ejectionMillis"));
+    }
+
+    /**
+     * Returns the endpoints to choose from.
+     */
+    public List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Returns how the endpoint is chosen among the endpoints that are not ejected.
+     */
+    public Strategy strategy() {
+        return strategy;
+    }
+
+    /**
+     * Returns the number of consecutive handshake failures after which an endpoint is ejected.
+     */
+    public int maxFailures() {
+        return maxFailures;
+    }
+
+    /**
+     * Returns the time in millis for which a failing endpoint is ejected.
+     */
+    public long ejectionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ejectionNanos);
+    }
+
+    /**
+     * Creates a new {@link ProxyHandler} for the healthiest endpoint.
+     */
+    public ProxyHandler newProxyHandler() {
+        Endpoint endpoint = choose(System.nanoTime());
+        ProxyHandler proxyHandler = proxyHandlerFactory.apply(endpoint.address);
+        endpoint.handshakeStarted();
+        long startNanos = System.nanoTime();
+        proxyHandler.connectFuture().addListener(future -> {
+            if (future.isSuccess()) {
+                endpoint.handshakeSucceeded(System.nanoTime() - startNanos);
+            } else {
+                long nanoTime = System.nanoTime();
+                endpoint.handshakeFailed(nanoTime, failurePenaltyNanos(proxyHandler, nanoTime - startNanos),
+                                         maxFailures, ejectionNanos);
+            }
+        });
+        return proxyHandler;
+    }
+
+    private static long failurePenaltyNanos(ProxyHandler proxyHandler, long elapsedNanos) {
+        long connectTimeoutMillis = proxyHandler.connectTimeoutMillis();
+        long penaltyNanos = connectTimeoutMillis > 0? TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis)
+                                                    : DEFAULT_FAILURE_PENALTY_NANOS;
+        return Math.max(penaltyNanos, elapsedNanos);
+    }
+
+    private Endpoint choose(long nanoTime) {
+        List<Endpoint> endpoints = this.endpoints;
+        int size = endpoints.size();
+        int start = Math.abs(nextIndex.getAndIncrement() % size);
+        double unmeasuredLatency = strategy == Strategy.EWMA_LATENCY? averageLatency(endpoints) : 0;
+
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = endpoints.get((start + i) % size);
+            if (endpoint.isEjected(nanoTime)) {
+                continue;
+            }
+            double score = score(endpoint, unmeasuredLatency);
+            if (score < bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+
+        // All endpoints are ejected; fail open with the one whose ejection ends first.
+        best = endpoints.get(start);
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.ejectedUntilNanos - best.ejectedUntilNanos < 0) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the average latency of the endpoints which have completed a handshake, or {@code 0} if there are none.
+     */
+    private static double averageLatency(List<Endpoint> endpoints) {
+        long sum = 0;
+        int count = 0;
+        for (Endpoint endpoint : endpoints) {
+            long latency = endpoint.latencyNanos.get();
+            if (latency != 0) {
+                sum += latency;
+                count++;
+            }
+        }
+        return count == 0? 0 : (double) sum / count;
+    }
+
+    private double score(Endpoint endpoint, double unmeasuredLatency) {
+        int outstanding = endpoint.outstandingHandshakes.get();
+        if (strategy == Strategy.LEAST_OUTSTANDING) {
+            return outstanding;
+        }
+        long latency = endpoint.latencyNanos.get();
+        return (latency == 0? unmeasuredLatency : latency) * (outstanding + 1.0);
+    }
+
+    /**
+     * A proxy server to choose from, and the statistics of the handshakes with it.
+     */
+    public static final class Endpoint {
+        private final SocketAddress address;
+        private final AtomicInteger outstandingHandshakes = new AtomicInteger();
+        private final AtomicLong latencyNanos = new AtomicLong();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile long ejectedUntilNanos;
+        private volatile boolean ejected;
+
+        Endpoint(SocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Returns the address of the proxy server.
+         */
+        public SocketAddress address() {
+            return address;
+        }
+
+        /**
+         * Returns the number of handshakes in progress.
+         */
+        public int outstandingHandshakes() {
+            return outstandingHandshakes.get();
+        }
+
+        /**
+         * Returns the exponentially weighted moving average of the handshake latency in nanoseconds, or {@code 0} if
+         * no handshake has completed yet.  A failed handshake counts as one which took the connect timeout.
+         */
+        public long latencyNanos() {
+            return latencyNanos.get();
+        }
+
+        /**
+         * Returns the number of handshakes that have failed since the last successful one.
+         */
+        public int consecutiveFailures() {
+            return consecutiveFailures.get();
+        }
+
+        /**
+         * Returns {@code true} if this endpoint is currently ejected because of failing handshakes.
+         */
+        public boolean isEjected() {
+            return isEjected(System.nanoTime());
+        }
+
+        boolean isEjected(long nanoTime) {
+            return ejected && ejectedUntilNanos - nanoTime > 0;
+        }
+
+        void handshakeStarted() {
+            outstandingHandshakes.incrementAndGet();
+        }
+
+        void handshakeSucceeded(long latency) {
+            outstandingHandshakes.decrementAndGet();
+            consecutiveFailures.set(0);
+            ejected = false;
+            updateLatency(latency);
+        }
+
+        void handshakeFailed(long nanoTime, long penaltyNanos, int maxFailures, long ejectionNanos) {
+            outstandingHandshakes.decrementAndGet();
+            updateLatency(penaltyNanos);
+            if (consecutiveFailures.incrementAndGet() >= maxFailures) {
+                // Start over, so that an endpoint which is still failing after the ejection is ejected again only
+                // after another series of failures.
+                consecutiveFailures.set(0);
+                ejectedUntilNanos = nanoTime + ejectionNanos;
+                ejected = true;
+            }
+        }
+
+        private void updateLatency(long latency) {
+            for (;;) {
+                long oldLatency = latencyNanos.get();
+                long newLatency = oldLatency == 0? latency : (long) (oldLatency + EWMA_ALPHA * (latency - oldLatency));
+                if (latencyNanos.compareAndSet(oldLatency, Math.max(newLatency, 1))) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Endpoint(" + address + ", outstanding: " + outstandingHandshakes() + ", latency: " +
+                   latencyNanos() + "ns, ejected: " + isEjected() + ')';
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelInitializer;
+
+/**
+ * Adds a {@link ProxyHandler} as the first handler of a new channel, followed by the handler of the
+ * {@link io.netty5.bootstrap.Bootstrap} the channel was created from, if any.
+ */
+final class ProxyChannelInitializer extends ChannelInitializer<Channel> {
+
+    private final ProxyHandler proxyHandler;
+    private final ChannelHandler handler;
+
+    ProxyChannelInitializer(ProxyHandler proxyHandler, ChannelHandler handler) {
+        this.proxyHandler = proxyHandler;
+        this.handler = handler;
+    }
+
+    @Override
+    protected void initChannel(Channel ch) {
+        ch.pipeline().addLast(proxyHandler);
+        if (handler != null) {
+            ch.pipeline().addLast(handler);
+        }
+    }
+}
@@ -27,6 +27,7 @@ public final class ProxyConnectionEvent {
     private final String authScheme;
     private final SocketAddress proxyAddress;
     private final SocketAddress destinationAddress;
+    private final ProxyHandshakeTimings timings;
     private String strVal;
 
     /**
@@ -34,15 +35,27 @@ public final class ProxyConnectionEvent {
      */
     public ProxyConnectionEvent(
             String protocol, String authScheme, SocketAddress proxyAddress, SocketAddress destinationAddress) {
+        this(protocol, authScheme, proxyAddress, destinationAddress, new ProxyHandshakeTimings());
+    }
+
+    /**
+     * Creates a new event that indicates a successful connection attempt to the destination address, with the
+     * specified timings of the handshake.
+     */
+    public ProxyConnectionEvent(
+            String protocol, String authScheme, SocketAddress proxyAddress, SocketAddress destinationAddress,
+            ProxyHandshakeTimings timings) {
         requireNonNull(protocol, "protocol");
         requireNonNull(authScheme, "authScheme");
         requireNonNull(proxyAddress, "proxyAddress");
         requireNonNull(destinationAddress, "destinationAddress");
+        requireNonNull(timings, "timings");
 
         this.protocol = protocol;
         this.authScheme = authScheme;
         this.proxyAddress = proxyAddress;
         this.destinationAddress = destinationAddress;
+        this.timings = timings;
     }
 
     /**
@@ -75,6 +88,15 @@ public final class ProxyConnectionEvent {
         return (T) destinationAddress;
     }
 
+    /**
+     * Returns the times at which the handshake has reached each {@link ProxyHandshakePhase}.  The writes which were
+     * pending during the handshake are flushed after this event has been fired, so
+     * {@link ProxyHandshakePhase#FIRST_WRITE_FLUSHED} is recorded into the returned instance later.
+     */
+    public ProxyHandshakeTimings timings() {
+        return timings;
+    }
+
     @Override
     public String toString() {
         if (strVal != null) {
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.bootstrap.Bootstrap;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketAddress;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static io.netty5.util.internal.ObjectUtil.checkPositive;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A pool of connections to a proxy server whose handshake has been run up to the request that asks the proxy server
+ * to connect to the destination: the connection to the proxy server has been established and, for SOCKS5, the
+ * authentication method has been negotiated and the credentials have been accepted.  {@link #connect(SocketAddress)}
+ * takes such a connection out of the pool and only sends the connect request, so that the latency of connecting and
+ * authenticating to the proxy server is not on the critical path.  If no pre-negotiated connection is available,
+ * a new connection is established as usual.
+ * <p>
+ * The pool is refilled in the background whenever a connection is taken out of it.  Idle connections which are closed
+ * by the proxy server, and connection attempts which fail, are not retried until the next
+ * {@link #connect(SocketAddress)} or {@link #fill()}, so that a proxy server which is down is not hammered.
+ * <p>
+ * The {@link ProxyHandler} of every connection is created by the specified factory and added as the first handler of
+ * the pipeline, followed by the handler of the specified {@link Bootstrap}.  As usual, the handler of the
+ * {@link Bootstrap} sees the channel become active when it is connected to the proxy server, which is before the
+ * connection is taken out of the pool, and should wait for the {@link Future} returned by
+ * {@link #connect(SocketAddress)} before it writes anything.
+ */
+public final class ProxyConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyConnectionPool.class);
+
+    private final Bootstrap bootstrap;
+    private final ChannelHandler handler;
+    private final Supplier<? extends ProxyHandler> proxyHandlerFactory;
+    private final int maxIdleConnections;
+    private final Queue<PooledConnection> idleConnections = new ConcurrentLinkedQueue<>();
+    // The number of idle connections plus the number of connections which are being negotiated.
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} whose event loop group, channel type, options and handler are used for
+     *                  the connections to the proxy server
+     * @param proxyHandlerFactory creates a new {@link ProxyHandler} for every connection
+     * @param maxIdleConnections the number of pre-negotiated connections to keep in the pool
+     */
+    public ProxyConnectionPool(Bootstrap bootstrap, Supplier<? extends ProxyHandler> proxyHandlerFactory,
+                               int maxIdleConnections) {
+        requireNonNull(bootstrap, "bootstrap");
+        this.bootstrap = bootstrap.clone();
+        handler = bootstrap.config().handler();
+        this.proxyHandlerFactory = requireNonNull(proxyHandlerFactory, "proxyHandlerFactory");
+        this.maxIdleConnections = checkPositive(maxIdleConnections, "maxIdleConnections");
+    }
+
+    /**
+     * Returns the number of pre-negotiated connections to keep in the pool.
+     */
+    public int maxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    /**
+     * Returns the number of pre-negotiated connections currently in the pool.
+     */
+    public int idleConnections() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Starts to establish pre-negotiated connections until there are {@link #maxIdleConnections()} of them.
+     */
+    public void fill() {
+        if (closed) {
+            throw new IllegalStateException("pool closed");
+        }
+        refill();
+    }
+
+    /**
+     * Connects to the specified destination via the proxy server, using a pre-negotiated connection if available.
+     *
+     * @return a {@link Future} that is notified when the connection to the destination has been established or the
+     *         connection attempt has failed
+     */
+    public Future<Channel> connect(SocketAddress destinationAddress) {
+        return connect(destinationAddress, proxyHandler -> { });
+    }
+
+    /**
+     * Connects to the specified destination via the proxy server, using a pre-negotiated connection if available, and
+     * passes the {@link ProxyHandler} of the connection to the specified {@link Consumer} before the connect request
+     * is sent.  This gives access to the progress a handler reports before the connection is established, such as
+     * the {@linkplain Socks5BindProxyHandler#bindAddressFuture() bound address} of a {@link Socks5BindProxyHandler}.
+     *
+     * @return a {@link Future} that is notified when the connection to the destination has been established or the
+     *         connection attempt has failed
+     */
+    public Future<Channel> connect(SocketAddress destinationAddress,
+                                   Consumer<? super ProxyHandler> proxyHandlerCallback) {
+        requireNonNull(destinationAddress, "destinationAddress");
+        requireNonNull(proxyHandlerCallback, "proxyHandlerCallback");
+        if (closed) {
+            throw new IllegalStateException("pool closed");
+        }
+
+        PooledConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connections.decrementAndGet();
+            if (connection.channel.isActive()) {
+                refill();
+                proxyHandlerCallback.accept(connection.proxyHandler);
+                return connection.proxyHandler.connectToDestination(destinationAddress);
+            }
+        }
+
+        refill();
+        ProxyHandler proxyHandler = proxyHandlerFactory.get();
+        proxyHandlerCallback.accept(proxyHandler);
+        Promise<Channel> promise = bootstrap.config().group().next().newPromise();
+        newBootstrap(proxyHandler).connect(destinationAddress).addListener(future -> {
+            if (future.isFailed()) {
+                promise.tryFailure(future.cause());
+                return;
+            }
+            proxyHandler.connectFuture().addListener(f -> {
+                if (f.isSuccess()) {
+                    promise.trySuccess(f.getNow());
+                } else {
+                    promise.tryFailure(f.cause());
+                }
+            });
+        });
+        return promise.asFuture();
+    }
+
+    /**
+     * Closes all pre-negotiated connections in the pool.  The connections which have been taken out of the pool are
+     * not affected.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connections.decrementAndGet();
+            connection.channel.close();
+        }
+    }
+
+    private void refill() {
+        for (;;) {
+            int n = connections.get();
+            if (closed || n >= maxIdleConnections) {
+                return;
+            }
+            if (connections.compareAndSet(n, n + 1)) {
+                negotiate();
+            }
+        }
+    }
+
+    private void negotiate() {
+        ProxyHandler proxyHandler = proxyHandlerFactory.get();
+        proxyHandler.setPreNegotiated();
+        SocketAddress proxyAddress = proxyHandler.proxyAddress();
+        newBootstrap(proxyHandler).connect(proxyAddress).addListener(future -> {
+            if (future.isFailed()) {
+                negotiationFailed(future.cause());
+                return;
+            }
+            Channel channel = future.getNow();
+            proxyHandler.negotiatedFuture().addListener(f -> {
+                if (f.isFailed()) {
+                    negotiationFailed(f.cause());
+                    return;
+                }
+                PooledConnection connection = new PooledConnection(channel, proxyHandler);
+                idleConnections.offer(connection);
+                channel.closeFuture().addListener(cf -> {
+                    if (idleConnections.remove(connection)) {
+                        connections.decrementAndGet();
+                    }
+                });
+                if (closed && idleConnections.remove(connection)) {
+                    connections.decrementAndGet();
+                    channel.close();
+                }
+            });
+        });
+    }
+
+    private void negotiationFailed(Throwable cause) {
+        connections.decrementAndGet();
+        logger.debug("Failed to establish a pre-negotiated proxy connection:", cause);
+    }
+
+    private Bootstrap newBootstrap(ProxyHandler proxyHandler) {
+        return bootstrap.clone().handler(new ProxyChannelInitializer(proxyHandler, handler));
+    }
+
+    private static final class PooledConnection {
+        final Channel channel;
+        final ProxyHandler proxyHandler;
+
+        PooledConnection(Channel channel, ProxyHandler proxyHandler) {
+            this.channel = channel;
+            this.proxyHandler = proxyHandler;
+        }
+    }
+}
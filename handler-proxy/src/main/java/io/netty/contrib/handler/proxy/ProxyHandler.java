@@ -19,6 +19,7 @@ import io.netty5.channel.Channel;
 import io.netty5.channel.ChannelHandler;
 import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.channel.ChannelOption;
+import io.netty5.channel.MessageSizeEstimator;
 import io.netty5.channel.PendingWriteQueue;
 import io.netty5.util.Resource;
 import io.netty5.util.concurrent.DefaultPromise;
@@ -55,14 +56,27 @@ public abstract class ProxyHandler implements ChannelHandler {
     private final SocketAddress proxyAddress;
     private volatile SocketAddress destinationAddress;
     private volatile long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile boolean optimisticDataEnabled;
+    private volatile ProxyHandlerMetrics metrics;
+    private volatile ProxyHandshakeTimer handshakeTimer;
+    private volatile long pendingWriteLimit;
+    private volatile long pendingWriteBytes;
+    private volatile long peakPendingWriteBytes;
 
     private volatile ChannelHandlerContext ctx;
     private PendingWriteQueue pendingWrites;
+    private MessageSizeEstimator.Handle pendingWriteSizeEstimator;
     private boolean finished;
     private boolean suppressChannelReadComplete;
     private boolean flushedPrematurely;
+    private boolean encoderRemoved;
+    private boolean optimisticDataSent;
+    private boolean preNegotiated;
+    private final ProxyHandshakeTimings timings = new ProxyHandshakeTimings();
     private final Promise<Channel> connectPromise = new LazyPromise();
+    private final Promise<Channel> negotiatedPromise = new LazyPromise();
     private Future<?> connectTimeoutFuture;
+    private ProxyHandshakeTimer.Timeout connectTimeout;
     private final FutureListener<Void> writeListener = future -> {
         if (future.isFailed()) {
             setConnectFailure(future.cause());
@@ -135,6 +149,105 @@ public abstract class ProxyHandler implements ChannelHandler {
         this.connectTimeoutMillis = connectTimeoutMillis;
     }
 
+    /**
+     * Returns {@code true} if the pending writes are sent optimistically right behind the connect request, before the
+     * proxy server has confirmed the connection to the destination.
+     */
+    public final boolean isOptimisticDataEnabled() {
+        return optimisticDataEnabled;
+    }
+
+    /**
+     * Sets whether the pending writes are sent optimistically right behind the connect request, before the proxy
+     * server has confirmed the connection to the destination.  This saves a round trip for the first application
+     * data, but the data is sent to the proxy server even if it rejects the connection later, and the writes
+     * succeed before {@link #connectFuture()} is notified.  This must be set before the handshake starts.
+     */
+    public final void setOptimisticDataEnabled(boolean optimisticDataEnabled) {
+        this.optimisticDataEnabled = optimisticDataEnabled;
+    }
+
+    /**
+     * Returns the maximum number of bytes which are buffered while the handshake is in progress, or {@code 0} if it is
+     * unlimited.
+     */
+    public final long pendingWriteLimit() {
+        return pendingWriteLimit;
+    }
+
+    /**
+     * Sets the maximum number of bytes which are buffered while the handshake is in progress, as estimated by the
+     * {@link ChannelOption#MESSAGE_SIZE_ESTIMATOR} of the channel.  Writes which would exceed the limit are failed.
+     * The buffered bytes count towards the writability of the channel, so producers which respect
+     * {@link Channel#isWritable()} stop at the {@link ChannelOption#WRITE_BUFFER_WATER_MARK high water mark}, and
+     * the limit should be set above it.  {@code 0}, the default, means that the buffer is unlimited.
+     */
+    public final void setPendingWriteLimit(long pendingWriteLimit) {
+        this.pendingWriteLimit = Math.max(0, pendingWriteLimit);
+    }
+
+    /**
+     * Returns the number of bytes which are buffered until the handshake has finished.
+     */
+    public final long pendingWriteBytes() {
+        return pendingWriteBytes;
+    }
+
+    /**
+     * Returns the largest number of bytes which have been buffered at once while the handshake was in progress.
+     */
+    public final long peakPendingWriteBytes() {
+        return peakPendingWriteBytes;
+    }
+
+    /**
+     * Returns the {@link ProxyHandshakeTimer} which expires the connect timeout, or {@code null} if the connect timeout
+     * is scheduled on the event loop directly.
+     */
+    public final ProxyHandshakeTimer handshakeTimer() {
+        return handshakeTimer;
+    }
+
+    /**
+     * Sets the {@link ProxyHandshakeTimer} which expires the connect timeout, instead of scheduling it on the event
+     * loop directly.  A timer that is shared by many handlers is cheaper when there are a lot of concurrent handshakes,
+     * at the expense of the precision of the timeout.  This must be set before the handshake starts.
+     */
+    public final void setHandshakeTimer(ProxyHandshakeTimer handshakeTimer) {
+        this.handshakeTimer = handshakeTimer;
+    }
+
+    /**
+     * Returns the {@link ProxyHandlerMetrics} which is notified when the handshake has finished, or {@code null}.
+     */
+    public final ProxyHandlerMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link ProxyHandlerMetrics} which is notified when the handshake has finished.  This must be set before
+     * the handshake starts.
+     */
+    public final void setMetrics(ProxyHandlerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the times at which the handshake has reached each {@link ProxyHandshakePhase} so far.
+     */
+    public final ProxyHandshakeTimings timings() {
+        return timings;
+    }
+
+    /**
+     * Records that the handshake has reached the specified phase now.  Only the first call for each phase is recorded.
+     * Subclasses call this for the phases which are specific to their protocol, such as
+     * {@link ProxyHandshakePhase#AUTH_RESPONSE}.
+     */
+    protected final void recordPhase(ProxyHandshakePhase phase) {
+        timings.record(phase, System.nanoTime());
+    }
+
     @Override
     public final void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
@@ -172,10 +285,89 @@ public abstract class ProxyHandler implements ChannelHandler {
             return ctx.newFailedFuture(new ConnectionPendingException());
         }
 
-        destinationAddress = remoteAddress;
+        if (!preNegotiated) {
+            destinationAddress = remoteAddress;
+        }
+        recordPhase(ProxyHandshakePhase.CONNECT_STARTED);
         return ctx.connect(proxyAddress, localAddress);
     }
 
+    /**
+     * Makes this handler connect to the proxy server without a destination, and run the handshake up to the request
+     * that asks the proxy server to connect to the destination.  Used by {@link ProxyConnectionPool}.
+     */
+    final void setPreNegotiated() {
+        preNegotiated = true;
+    }
+
+    /**
+     * Returns a {@link Future} that is notified when the handshake of a {@linkplain #setPreNegotiated()
+     * pre-negotiated} connection has reached the connect request, or the handshake has failed.
+     */
+    final Future<Channel> negotiatedFuture() {
+        return negotiatedPromise.asFuture();
+    }
+
+    /**
+     * Sends the deferred connect request of a {@linkplain #negotiatedFuture() negotiated} connection to the specified
+     * destination.
+     *
+     * @return the {@link #connectFuture()}
+     */
+    final Future<Channel> connectToDestination(SocketAddress destinationAddress) {
+        requireNonNull(destinationAddress, "destinationAddress");
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx.executor().inEventLoop()) {
+            connectToDestination0(ctx, destinationAddress);
+        } else {
+            ctx.executor().execute(() -> connectToDestination0(ctx, destinationAddress));
+        }
+        return connectFuture();
+    }
+
+    private void connectToDestination0(ChannelHandlerContext ctx, SocketAddress destinationAddress) {
+        if (connectPromise.isDone()) {
+            return;
+        }
+        if (!negotiatedPromise.isSuccess() || this.destinationAddress != null) {
+            setConnectFailure(new ConnectionPendingException());
+            return;
+        }
+        this.destinationAddress = destinationAddress;
+        scheduleConnectTimeout(ctx);
+        try {
+            sendConnectRequest(ctx);
+        } catch (Throwable t) {
+            setConnectFailure(t);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the request that asks the proxy server to connect to the destination must not be sent
+     * yet, because this is a pre-negotiated connection whose destination is not known yet.  Subclasses call this right
+     * before they would send the connect request, and send it from {@link #sendConnectRequest(ChannelHandlerContext)}
+     * instead if {@code true} is returned.
+     */
+    protected final boolean deferConnectRequest() {
+        if (!preNegotiated || destinationAddress != null) {
+            return false;
+        }
+        // The connection may stay idle in the pool for a while, so the connect timeout starts over once the
+        // destination is known.
+        cancelConnectTimeoutFuture();
+        negotiatedPromise.trySuccess(ctx.channel());
+        return true;
+    }
+
+    /**
+     * Sends the request that asks the proxy server to connect to the destination, which was deferred because
+     * {@link #deferConnectRequest()} returned {@code true}.  The default implementation throws an
+     * {@link UnsupportedOperationException}.
+     */
+    protected void sendConnectRequest(ChannelHandlerContext ctx) throws Exception {
+        throw new UnsupportedOperationException(protocol() + " does not support pre-negotiated connections");
+    }
+
     @Override
     public final void channelActive(ChannelHandlerContext ctx) throws Exception {
         sendInitialMessage(ctx);
@@ -187,14 +379,8 @@ public abstract class ProxyHandler implements ChannelHandler {
      * the {@link #connectPromise} as failure if the connection attempt does not success within the timeout.
      */
     private void sendInitialMessage(final ChannelHandlerContext ctx) throws Exception {
-        final long connectTimeoutMillis = this.connectTimeoutMillis;
-        if (connectTimeoutMillis > 0) {
-            connectTimeoutFuture = ctx.executor().schedule(() -> {
-                if (!connectPromise.isDone()) {
-                    setConnectFailure(new ProxyConnectException(exceptionMessage("timeout")));
-                }
-            }, connectTimeoutMillis, TimeUnit.MILLISECONDS);
-        }
+        recordPhase(ProxyHandshakePhase.PROXY_CONNECTED);
+        scheduleConnectTimeout(ctx);
 
         final Object initialMessage = newInitialMessage(ctx);
         if (initialMessage != null) {
@@ -204,6 +390,24 @@ public abstract class ProxyHandler implements ChannelHandler {
         readIfNeeded(ctx);
     }
 
+    private void scheduleConnectTimeout(ChannelHandlerContext ctx) {
+        final long connectTimeoutMillis = this.connectTimeoutMillis;
+        if (connectTimeoutMillis > 0) {
+            Runnable task = () -> {
+                if (!connectPromise.isDone()) {
+                    setConnectFailure(new ProxyConnectException(exceptionMessage("timeout")));
+                }
+            };
+            ProxyHandshakeTimer handshakeTimer = this.handshakeTimer;
+            if (handshakeTimer != null) {
+                connectTimeout = handshakeTimer.newTimeout(ctx.executor(), task, connectTimeoutMillis,
+                                                           TimeUnit.MILLISECONDS);
+            } else {
+                connectTimeoutFuture = ctx.executor().schedule(task, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
     /**
      * Returns a new message that is sent at first time when the connection to the proxy server has been established.
      *
@@ -216,7 +420,48 @@ public abstract class ProxyHandler implements ChannelHandler {
      * {@link #handleResponse(ChannelHandlerContext, Object)}.
      */
     protected final void sendToProxyServer(Object msg) {
-        ctx.writeAndFlush(msg).addListener(writeListener);
+        if (optimisticDataEnabled && isConnectRequest(msg)) {
+            ctx.write(msg).addListener(writeListener);
+            sendOptimisticData(ctx);
+        } else {
+            ctx.writeAndFlush(msg).addListener(writeListener);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the specified message is the request that asks the proxy server to connect to the
+     * destination.  No more messages may be sent to the proxy server after this request, so that the pending writes
+     * can be sent right behind it if {@linkplain #isOptimisticDataEnabled() optimistic data} is enabled.
+     * The default implementation returns {@code false}, which disables optimistic data.
+     */
+    protected boolean isConnectRequest(Object msg) {
+        return false;
+    }
+
+    /**
+     * Sends the pending writes right behind the connect request which has just been written, and flushes them
+     * together.  The encoders are removed first, because the pending writes must not be encoded as messages of the
+     * proxy protocol.
+     */
+    private void sendOptimisticData(ChannelHandlerContext ctx) {
+        if (!safeRemoveEncoder()) {
+            ctx.flush();
+            return;
+        }
+        optimisticDataSent = true;
+        writePendingWrites(ctx);
+        ctx.flush();
+        if (flushedPrematurely) {
+            recordPhase(ProxyHandshakePhase.FIRST_WRITE_FLUSHED);
+        }
+    }
+
+    /**
+     * Writes the specified message to the proxy server without flushing it.  Use this method to pipeline several
+     * messages, which are flushed together by the next {@link #sendToProxyServer(Object)}.
+     */
+    protected final void writeToProxyServer(Object msg) {
+        ctx.write(msg).addListener(writeListener);
     }
 
     @Override
@@ -274,6 +519,7 @@ public abstract class ProxyHandler implements ChannelHandler {
     protected abstract boolean handleResponse(ChannelHandlerContext ctx, Object response) throws Exception;
 
     private void setConnectSuccess(ChannelHandlerContext ctx) {
+        recordPhase(ProxyHandshakePhase.CONNECT_RESPONSE);
         finished = true;
         cancelConnectTimeoutFuture();
 
@@ -283,7 +529,7 @@ public abstract class ProxyHandler implements ChannelHandler {
             removedCodec &= safeRemoveEncoder();
 
             ctx.fireChannelInboundEvent(
-                    new ProxyConnectionEvent(protocol(), authScheme(), proxyAddress, destinationAddress));
+                    new ProxyConnectionEvent(protocol(), authScheme(), proxyAddress, destinationAddress, timings));
 
             removedCodec &= safeRemoveDecoder();
 
@@ -292,8 +538,11 @@ public abstract class ProxyHandler implements ChannelHandler {
 
                 if (flushedPrematurely) {
                     ctx.flush();
+                    recordPhase(ProxyHandshakePhase.FIRST_WRITE_FLUSHED);
+                }
+                if (connectPromise.trySuccess(ctx.channel())) {
+                    notifyMetrics(null);
                 }
-                connectPromise.trySuccess(ctx.channel());
             } else {
                 // We are at inconsistent state because we failed to remove all codec handlers.
                 Exception cause = new ProxyConnectException(
@@ -315,8 +564,12 @@ public abstract class ProxyHandler implements ChannelHandler {
     }
 
     private boolean safeRemoveEncoder() {
+        if (encoderRemoved) {
+            return true;
+        }
         try {
             removeEncoder(ctx);
+            encoderRemoved = true;
             return true;
         } catch (Exception e) {
             logger.warn("Failed to remove proxy encoders:", e);
@@ -344,16 +597,39 @@ public abstract class ProxyHandler implements ChannelHandler {
 
     private void failPendingWritesAndClose(Throwable cause) {
         failPendingWrites(cause);
-        connectPromise.tryFailure(cause);
+        negotiatedPromise.tryFailure(cause);
+        if (connectPromise.tryFailure(cause)) {
+            notifyMetrics(cause);
+        }
         ctx.fireChannelExceptionCaught(cause);
         ctx.close();
     }
 
+    private void notifyMetrics(Throwable cause) {
+        ProxyHandlerMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return;
+        }
+        try {
+            if (cause == null) {
+                metrics.handshakeSucceeded(this, timings);
+            } else {
+                metrics.handshakeFailed(this, cause, timings);
+            }
+        } catch (Throwable t) {
+            logger.warn("Failed to notify the proxy handler metrics:", t);
+        }
+    }
+
     private void cancelConnectTimeoutFuture() {
         if (connectTimeoutFuture != null) {
             connectTimeoutFuture.cancel();
             connectTimeoutFuture = null;
         }
+        if (connectTimeout != null) {
+            connectTimeout.cancel();
+            connectTimeout = null;
+        }
     }
 
     /**
@@ -393,7 +669,7 @@ public abstract class ProxyHandler implements ChannelHandler {
 
     @Override
     public final Future<Void> write(ChannelHandlerContext ctx, Object msg) {
-        if (finished) {
+        if (finished || optimisticDataSent) {
             writePendingWrites(ctx);
             return ctx.write(msg);
         }
@@ -404,7 +680,7 @@ public abstract class ProxyHandler implements ChannelHandler {
 
     @Override
     public final void flush(ChannelHandlerContext ctx) {
-        if (finished) {
+        if (finished || optimisticDataSent) {
             writePendingWrites(ctx);
             ctx.flush();
         } else {
@@ -412,6 +688,11 @@ public abstract class ProxyHandler implements ChannelHandler {
         }
     }
 
+    @Override
+    public final long pendingOutboundBytes(ChannelHandlerContext ctx) {
+        return pendingWriteBytes;
+    }
+
     private static void readIfNeeded(ChannelHandlerContext ctx) {
         if (!ctx.channel().getOption(ChannelOption.AUTO_READ)) {
             ctx.read();
@@ -422,7 +703,10 @@ public abstract class ProxyHandler implements ChannelHandler {
         if (pendingWrites != null) {
             PendingWriteQueue queue = pendingWrites;
             pendingWrites = null;
-            queue.removeAndTransferAll(ctx::write);
+            pendingWriteBytes = 0;
+            PendingWriteCoalescer coalescer = new PendingWriteCoalescer(ctx);
+            queue.removeAndTransferAll(coalescer::write);
+            coalescer.finish();
         }
     }
 
@@ -430,16 +714,33 @@ public abstract class ProxyHandler implements ChannelHandler {
         if (pendingWrites != null) {
             pendingWrites.removeAndFailAll(cause);
             pendingWrites = null;
+            pendingWriteBytes = 0;
         }
     }
 
     private void addPendingWrite(ChannelHandlerContext ctx, Object msg, Promise<Void> promise) {
+        if (pendingWriteSizeEstimator == null) {
+            pendingWriteSizeEstimator = ctx.channel().getOption(ChannelOption.MESSAGE_SIZE_ESTIMATOR).newHandle();
+        }
+        final long pendingWriteLimit = this.pendingWriteLimit;
+        if (pendingWriteLimit > 0 &&
+            pendingWriteBytes + Math.max(0, pendingWriteSizeEstimator.size(msg)) > pendingWriteLimit) {
+            Resource.dispose(msg);
+            promise.setFailure(new IllegalStateException(exceptionMessage(
+                    "pending writes exceed the limit of " + pendingWriteLimit + " bytes")));
+            return;
+        }
+
         PendingWriteQueue pendingWrites = this.pendingWrites;
         if (pendingWrites == null) {
-            this.pendingWrites = pendingWrites = new PendingWriteQueue(ctx.executor(),
-                    ctx.channel().getOption(ChannelOption.MESSAGE_SIZE_ESTIMATOR).newHandle());
+            this.pendingWrites = pendingWrites = new PendingWriteQueue(ctx.executor(), pendingWriteSizeEstimator);
         }
         pendingWrites.add(msg, promise);
+        long pendingWriteBytes = pendingWrites.bytes();
+        this.pendingWriteBytes = pendingWriteBytes;
+        if (pendingWriteBytes > peakPendingWriteBytes) {
+            peakPendingWriteBytes = pendingWriteBytes;
+        }
     }
 
     private final class LazyPromise extends DefaultPromise<Channel> {
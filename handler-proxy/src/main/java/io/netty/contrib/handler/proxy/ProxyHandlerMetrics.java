@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+/**
+ * Receives the outcome and the {@link ProxyHandshakeTimings} of every handshake of the {@link ProxyHandler}s it has
+ * been {@linkplain ProxyHandler#setMetrics(ProxyHandlerMetrics) set} to.  The methods are called by the event loops of
+ * the channels, so a single instance which is shared by many handlers must be thread-safe, and should not block.
+ *
+ * @see HistogramProxyHandlerMetrics
+ */
+public interface ProxyHandlerMetrics {
+
+    /**
+     * Called when the connection to the destination has been established, after the writes which were pending during
+     * the handshake have been passed on.
+     */
+    void handshakeSucceeded(ProxyHandler handler, ProxyHandshakeTimings timings);
+
+    /**
+     * Called when the connection attempt to the destination has failed.
+     */
+    void handshakeFailed(ProxyHandler handler, Throwable cause, ProxyHandshakeTimings timings);
+}
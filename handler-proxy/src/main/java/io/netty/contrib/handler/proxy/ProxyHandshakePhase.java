@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+/**
+ * The phases of the handshake of a {@link ProxyHandler}, in the order in which they are reached.  Not every protocol
+ * goes through every phase.
+ *
+ * @see ProxyHandshakeTimings
+ */
+public enum ProxyHandshakePhase {
+    /**
+     * The connection attempt to the proxy server has been started.
+     */
+    CONNECT_STARTED,
+    /**
+     * The connection to the proxy server has been established.
+     */
+    PROXY_CONNECTED,
+    /**
+     * The response to the initial request has been received, for example the authentication method selected by a
+     * SOCKS5 proxy server.
+     */
+    INITIAL_RESPONSE,
+    /**
+     * The response to the authentication request has been received.
+     */
+    AUTH_RESPONSE,
+    /**
+     * The response to the request that asks the proxy server to connect to the destination has been received.
+     */
+    CONNECT_RESPONSE,
+    /**
+     * The writes which were flushed while the handshake was in progress have been flushed to the proxy server.
+     */
+    FIRST_WRITE_FLUSHED
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.util.concurrent.EventExecutor;
+import io.netty5.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty5.util.internal.ObjectUtil.checkPositive;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A timing wheel which expires the connect timeouts of many {@link ProxyHandler}s, as an alternative to scheduling a
+ * task on the event loop for each of them.  Adding and cancelling a timeout takes constant time, and each event loop
+ * runs a single scheduled task per tick, which expires all the timeouts that are due, and only while it has pending
+ * timeouts.  The price is the precision: a timeout expires up to one tick duration late.
+ * <p>
+ * A single instance is meant to be shared by all the handlers, using
+ * {@link ProxyHandler#setHandshakeTimer(ProxyHandshakeTimer)}.  Each event loop has its own wheel, which is only
+ * accessed from that event loop.
+ */
+public final class ProxyHandshakeTimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyHandshakeTimer.class);
+
+    /**
+     * The default tick duration: 100 milliseconds.
+     */
+    public static final long DEFAULT_TICK_DURATION_MILLIS = 100;
+
+    /**
+     * The default number of ticks per wheel: 512.
+     */
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private final long tickNanos;
+    private final int mask;
+    private final ConcurrentMap<EventExecutor, Wheel> wheels = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new timer with the {@linkplain #DEFAULT_TICK_DURATION_MILLIS default tick duration} and the
+     * {@linkplain #DEFAULT_TICKS_PER_WHEEL default number of ticks per wheel}.
+     */
+    public ProxyHandshakeTimer() {
+        this(DEFAULT_TICK_DURATION_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL);
+    }
+
+    /**
+     * Creates a new timer.
+     *
+     * @param tickDuration the duration between the ticks, which is the precision of the timeouts
+     * @param unit the unit of {@code tickDuration}
+     * @param ticksPerWheel the number of slots of each wheel, rounded up to a power of two.  Timeouts which are longer
+     *                      than a rotation of the wheel are checked once per rotation until they expire.
+     */
+    public ProxyHandshakeTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        requireNonNull(unit, "unit");
+        checkPositive(tickDuration, "tickDuration");
+        checkPositive(ticksPerWheel, "ticksPerWheel");
+        if (ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel: " + ticksPerWheel + " (expected: <= 2^30)");
+        }
+        tickNanos = unit.toNanos(tickDuration);
+        mask = (ticksPerWheel == 1? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1) - 1;
+    }
+
+    /**
+     * Returns the duration between the ticks in nanoseconds.
+     */
+    public long tickDurationNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * Returns the number of slots of each wheel.
+     */
+    public int ticksPerWheel() {
+        return mask + 1;
+    }
+
+    /**
+     * Runs the specified task on the specified event loop once the specified delay has elapsed, unless the returned
+     * {@link Timeout} is cancelled first.
+     */
+    public Timeout newTimeout(EventExecutor executor, Runnable task, long delay, TimeUnit unit) {
+        requireNonNull(executor, "executor");
+        requireNonNull(task, "task");
+        requireNonNull(unit, "unit");
+        Timeout timeout = new Timeout(executor, task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        if (executor.inEventLoop()) {
+            wheel(executor).add(timeout);
+        } else {
+            executor.execute(() -> wheel(executor).add(timeout));
+        }
+        return timeout;
+    }
+
+    /**
+     * Returns the number of pending timeouts on the specified event loop.  This must be called from that event loop.
+     */
+    int pendingTimeouts(EventExecutor executor) {
+        Wheel wheel = wheels.get(executor);
+        return wheel == null? 0 : wheel.size;
+    }
+
+    private Wheel wheel(EventExecutor executor) {
+        Wheel wheel = wheels.get(executor);
+        if (wheel == null) {
+            wheel = new Wheel(executor);
+            wheels.put(executor, wheel);
+            executor.terminationFuture().addListener(future -> wheels.remove(executor));
+        }
+        return wheel;
+    }
+
+    /**
+     * A pending timeout of a {@link ProxyHandshakeTimer}.
+     */
+    public static final class Timeout {
+
+        private final EventExecutor executor;
+        private final Runnable task;
+        private final long deadline;
+
+        private Wheel wheel;
+        private long tick;
+        private Timeout prev;
+        private Timeout next;
+        private boolean cancelled;
+        private boolean expired;
+
+        Timeout(EventExecutor executor, Runnable task, long deadline) {
+            this.executor = executor;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels this timeout, so that its task is not run.  This has no effect if the task has been run already.
+         */
+        public void cancel() {
+            if (executor.inEventLoop()) {
+                cancel0();
+            } else {
+                executor.execute(this::cancel0);
+            }
+        }
+
+        private void cancel0() {
+            if (cancelled || expired) {
+                return;
+            }
+            cancelled = true;
+            if (wheel != null) {
+                wheel.remove(this);
+            }
+        }
+
+        /**
+         * Returns {@code true} if this timeout has been cancelled.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Returns {@code true} if the task of this timeout has been run.
+         */
+        public boolean isExpired() {
+            return expired;
+        }
+
+        void expire() {
+            if (cancelled) {
+                return;
+            }
+            expired = true;
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.warn("A task raised an exception when its timeout expired:", t);
+            }
+        }
+    }
+
+    /**
+     * The wheel of a single event loop.  Each slot is a doubly linked list of the timeouts which expire on the ticks
+     * that map to the slot.
+     */
+    private final class Wheel implements Runnable {
+
+        private final EventExecutor executor;
+        private final Timeout[] slots = new Timeout[mask + 1];
+        private final long startTime = System.nanoTime();
+        private long lastTick;
+        private int size;
+        private Future<Void> tickFuture;
+
+        Wheel(EventExecutor executor) {
+            this.executor = executor;
+        }
+
+        void add(Timeout timeout) {
+            if (timeout.cancelled) {
+                return;
+            }
+            if (tickFuture == null) {
+                // The wheel has been idle, so all the ticks since the last one are empty.
+                lastTick = (System.nanoTime() - startTime) / tickNanos;
+                scheduleTick();
+            }
+            // Round up, so that a timeout never expires before its deadline.
+            long tick = Math.max(lastTick + 1, (timeout.deadline - startTime + tickNanos - 1) / tickNanos);
+            link(timeout, tick);
+        }
+
+        private void link(Timeout timeout, long tick) {
+            int index = (int) (tick & mask);
+            Timeout head = slots[index];
+            timeout.wheel = this;
+            timeout.tick = tick;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            slots[index] = timeout;
+            size++;
+        }
+
+        void remove(Timeout timeout) {
+            unlink(timeout);
+            if (size == 0 && tickFuture != null) {
+                tickFuture.cancel();
+                tickFuture = null;
+            }
+        }
+
+        private void unlink(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                slots[(int) (timeout.tick & mask)] = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.wheel = null;
+            timeout.prev = null;
+            timeout.next = null;
+            size--;
+        }
+
+        private void scheduleTick() {
+            long delay = startTime + (lastTick + 1) * tickNanos - System.nanoTime();
+            tickFuture = executor.schedule(this, Math.max(0, delay), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            long currentTick = (now - startTime) / tickNanos;
+
+            // Detach all the timeouts that are due first, so that their tasks may cancel or add other timeouts.
+            Timeout expired = null;
+            for (long tick = lastTick + 1; tick <= currentTick; tick++) {
+                Timeout timeout = slots[(int) (tick & mask)];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.tick <= currentTick) {
+                        unlink(timeout);
+                        timeout.next = expired;
+                        expired = timeout;
+                    }
+                    timeout = next;
+                }
+                if (tick - lastTick > mask) {
+                    // Every slot has been visited already.
+                    break;
+                }
+            }
+            lastTick = Math.max(lastTick, currentTick);
+
+            if (size == 0) {
+                tickFuture = null;
+            } else {
+                scheduleTick();
+            }
+
+            while (expired != null) {
+                Timeout next = expired.next;
+                expired.next = null;
+                expired.expire();
+                expired = next;
+            }
+        }
+    }
+}
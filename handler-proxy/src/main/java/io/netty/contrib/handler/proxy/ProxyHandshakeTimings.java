@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.util.internal.StringUtil;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The {@link System#nanoTime()} at which a {@link ProxyHandler} has reached each {@link ProxyHandshakePhase}.
+ * The timings are recorded by the event loop of the channel, and should be read from it as well.
+ */
+public final class ProxyHandshakeTimings {
+
+    private static final ProxyHandshakePhase[] PHASES = ProxyHandshakePhase.values();
+
+    private final long[] nanoTimes = new long[PHASES.length];
+    private int recorded;
+
+    /**
+     * Records the specified {@link System#nanoTime()} for the specified phase, unless it has been recorded already.
+     */
+    void record(ProxyHandshakePhase phase, long nanoTime) {
+        int mask = 1 << phase.ordinal();
+        if ((recorded & mask) == 0) {
+            nanoTimes[phase.ordinal()] = nanoTime;
+            recorded |= mask;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the specified phase has been reached.
+     */
+    public boolean isRecorded(ProxyHandshakePhase phase) {
+        return (recorded & 1 << requireNonNull(phase, "phase").ordinal()) != 0;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the specified phase has been reached.
+     *
+     * @throws IllegalStateException if the phase has not been reached
+     */
+    public long nanoTime(ProxyHandshakePhase phase) {
+        if (!isRecorded(phase)) {
+            throw new IllegalStateException("phase not reached: " + phase);
+        }
+        return nanoTimes[phase.ordinal()];
+    }
+
+    /**
+     * Returns the nanoseconds elapsed between the two specified phases, or {@code -1} if either has not been reached.
+     */
+    public long elapsedNanos(ProxyHandshakePhase from, ProxyHandshakePhase to) {
+        if (!isRecorded(from) || !isRecorded(to)) {
+            return -1;
+        }
+        return nanoTimes[to.ordinal()] - nanoTimes[from.ordinal()];
+    }
+
+    /**
+     * Returns the nanoseconds elapsed since the previous phase that has been reached, or {@code -1} if the specified
+     * phase or all phases before it have not been reached.
+     */
+    public long phaseNanos(ProxyHandshakePhase phase) {
+        for (int i = phase.ordinal() - 1; i >= 0; i--) {
+            if (isRecorded(PHASES[i])) {
+                return elapsedNanos(PHASES[i], phase);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the nanoseconds elapsed from the start of the handshake until the proxy server has connected to the
+     * destination, or {@code -1} if the handshake has not completed.  The handshake starts with
+     * {@link ProxyHandshakePhase#CONNECT_STARTED}, or with {@link ProxyHandshakePhase#PROXY_CONNECTED} if the
+     * {@link ProxyHandler} has been added to a channel which was connected already.
+     */
+    public long handshakeNanos() {
+        ProxyHandshakePhase start = isRecorded(ProxyHandshakePhase.CONNECT_STARTED)?
+                ProxyHandshakePhase.CONNECT_STARTED : ProxyHandshakePhase.PROXY_CONNECTED;
+        return elapsedNanos(start, ProxyHandshakePhase.CONNECT_RESPONSE);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder(128)
+            .append(StringUtil.simpleClassName(this))
+            .append('(');
+        boolean first = true;
+        for (ProxyHandshakePhase phase : PHASES) {
+            long nanos = phaseNanos(phase);
+            if (nanos < 0) {
+                continue;
+            }
+            if (!first) {
+                buf.append(", ");
+            }
+            buf.append(phase).append(": +").append(nanos).append("ns");
+            first = false;
+        }
+        return buf.append(')').toString();
+    }
+}
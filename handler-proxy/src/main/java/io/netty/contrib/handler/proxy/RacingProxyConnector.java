@@ -0,0 +1,207 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.bootstrap.Bootstrap;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.EventLoop;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static io.netty5.util.internal.ObjectUtil.checkNonEmpty;
+import static io.netty5.util.internal.ObjectUtil.checkPositiveOrZero;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Connects to a destination via the first of several proxy servers that completes the handshake, in the manner of
+ * <a href="https://datatracker.ietf.org/doc/html/rfc8305">Happy Eyeballs</a>.
+ * <p>
+ * The proxy servers are tried in the specified order.  If the handshake with a proxy server has not finished within
+ * the stagger delay, a connection attempt to the next proxy server is started in parallel; if an attempt fails, the
+ * next one is started immediately.  The first tunnel that is established wins and all other attempts are closed, so
+ * that a single degraded proxy server costs at most the stagger delay instead of the whole connect timeout.
+ * <p>
+ * The {@link ProxyHandler} of every attempt is created by the specified factory and added as the first handler of
+ * the pipeline, followed by the handler of the specified {@link Bootstrap}.  The handler of the {@link Bootstrap}
+ * should wait for the {@link Future} returned by {@link #connect(SocketAddress)} before it writes anything, because
+ * the channel it has been added to may lose the race and be closed.
+ */
+public final class RacingProxyConnector {
+
+    /**
+     * The default stagger delay: 250 milliseconds, as recommended by RFC 8305.
+     */
+    public static final long DEFAULT_STAGGER_DELAY_MILLIS = 250;
+
+    private final Bootstrap bootstrap;
+    private final ChannelHandler handler;
+    private final List<SocketAddress> proxyAddresses;
+    private final Function<? super SocketAddress, ? extends ProxyHandler> proxyHandlerFactory;
+    private final long staggerDelayMillis;
+
+    public RacingProxyConnector(Bootstrap bootstrap, List<? extends SocketAddress> proxyAddresses,
+                                Function<? super SocketAddress, ? extends ProxyHandler> proxyHandlerFactory) {
+        this(bootstrap, proxyAddresses, proxyHandlerFactory, DEFAULT_STAGGER_DELAY_MILLIS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} whose event loop group, channel type, options and handler are used for
+     *                  the connections to the proxy servers
+     * @param proxyAddresses the addresses of the proxy servers, in the order of preference
+     * @param proxyHandlerFactory creates a new {@link ProxyHandler} for the specified proxy server address
+     * @param staggerDelayMillis the delay after which the next proxy server is tried if the handshake with the
+     *                           previous one has not finished yet
+     */
+    public RacingProxyConnector(Bootstrap bootstrap, List<? extends SocketAddress> proxyAddresses,
+                                Function<? super SocketAddress, ? extends ProxyHandler> proxyHandlerFactory,
+                                long staggerDelayMillis) {
+        requireNonNull(bootstrap, "bootstrap");
+        this.bootstrap = bootstrap.clone();
+        handler = bootstrap.config().handler();
+        this.proxyAddresses = new ArrayList<>(checkNonEmpty(proxyAddresses, "proxyAddresses"));
+        for (SocketAddress proxyAddress : this.proxyAddresses) {
+            requireNonNull(proxyAddress, "proxyAddress");
+        }
+        this.proxyHandlerFactory = requireNonNull(proxyHandlerFactory, "proxyHandlerFactory");
+        this.staggerDelayMillis = checkPositiveOrZero(staggerDelayMillis, "staggerDelayMillis");
+    }
+
+    /**
+     * Returns the delay after which the next proxy server is tried if the handshake with the previous one has not
+     * finished yet.
+     */
+    public long staggerDelayMillis() {
+        return staggerDelayMillis;
+    }
+
+    /**
+     * Connects to the specified destination via the first proxy server that completes the handshake.
+     *
+     * @return a {@link Future} that is notified with the channel of the winning tunnel, or with the cause of the last
+     *         failure if the handshake with every proxy server has failed
+     */
+    public Future<Channel> connect(SocketAddress destinationAddress) {
+        requireNonNull(destinationAddress, "destinationAddress");
+        Race race = new Race(bootstrap.config().group().next(), destinationAddress);
+        race.executor.execute(race::startNext);
+        return race.promise.asFuture();
+    }
+
+    /**
+     * The state of a single {@link #connect(SocketAddress)} call.  All state is accessed from {@link #executor} only.
+     */
+    private final class Race {
+        final EventLoop executor;
+        final Promise<Channel> promise;
+        private final SocketAddress destinationAddress;
+        private final List<Channel> channels = new ArrayList<>(proxyAddresses.size());
+        private int nextAttempt;
+        private int pendingAttempts;
+        private Future<?> staggerFuture;
+        private Throwable cause;
+
+        Race(EventLoop executor, SocketAddress destinationAddress) {
+            this.executor = executor;
+            this.destinationAddress = destinationAddress;
+            promise = executor.newPromise();
+        }
+
+        void startNext() {
+            if (staggerFuture != null) {
+                staggerFuture.cancel();
+                staggerFuture = null;
+            }
+            if (promise.isDone() || nextAttempt == proxyAddresses.size()) {
+                return;
+            }
+
+            SocketAddress proxyAddress = proxyAddresses.get(nextAttempt++);
+            ProxyHandler proxyHandler = proxyHandlerFactory.apply(proxyAddress);
+            pendingAttempts++;
+            bootstrap.clone().handler(new ProxyChannelInitializer(proxyHandler, handler))
+                     .connect(destinationAddress).addListener(future -> executor.execute(() -> {
+                if (future.isFailed()) {
+                    attemptFailed(future.cause());
+                } else {
+                    connected(future.getNow(), proxyHandler);
+                }
+            }));
+
+            if (nextAttempt < proxyAddresses.size()) {
+                staggerFuture = executor.schedule(this::startNext, staggerDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void connected(Channel channel, ProxyHandler proxyHandler) {
+            if (promise.isDone()) {
+                pendingAttempts--;
+                channel.close();
+                return;
+            }
+            channels.add(channel);
+            proxyHandler.connectFuture().addListener(future -> executor.execute(() -> {
+                channels.remove(channel);
+                if (future.isFailed()) {
+                    attemptFailed(future.cause());
+                    return;
+                }
+                pendingAttempts--;
+                if (promise.trySuccess(channel)) {
+                    cancelOthers();
+                } else {
+                    channel.close();
+                }
+            }));
+        }
+
+        private void attemptFailed(Throwable cause) {
+            pendingAttempts--;
+            if (this.cause == null) {
+                this.cause = cause;
+            } else if (this.cause != cause) {
+                cause.addSuppressed(this.cause);
+                this.cause = cause;
+            }
+
+            if (nextAttempt < proxyAddresses.size()) {
+                // Do not wait for the stagger delay if an attempt has failed already.
+                startNext();
+            } else if (pendingAttempts == 0) {
+                promise.tryFailure(this.cause);
+            }
+        }
+
+        private void cancelOthers() {
+            if (staggerFuture != null) {
+                staggerFuture.cancel();
+                staggerFuture = null;
+            }
+            for (Channel channel : channels) {
+                channel.close();
+            }
+            channels.clear();
+        }
+    }
+}
@@ -17,9 +17,11 @@ package io.netty.contrib.handler.proxy;
 
 import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.channel.ChannelPipeline;
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
 import io.netty.contrib.handler.codec.socksx.v4.DefaultSocks4CommandRequest;
 import io.netty.contrib.handler.codec.socksx.v4.Socks4ClientDecoder;
 import io.netty.contrib.handler.codec.socksx.v4.Socks4ClientEncoder;
+import io.netty.contrib.handler.codec.socksx.v4.Socks4CommandRequest;
 import io.netty.contrib.handler.codec.socksx.v4.Socks4CommandResponse;
 import io.netty.contrib.handler.codec.socksx.v4.Socks4CommandStatus;
 import io.netty.contrib.handler.codec.socksx.v4.Socks4CommandType;
@@ -95,15 +97,26 @@ public final class Socks4ProxyHandler extends ProxyHandler {
 
     @Override
     protected Object newInitialMessage(ChannelHandlerContext ctx) throws Exception {
-        InetSocketAddress raddr = destinationAddress();
-        String rhost;
-        if (raddr.isUnresolved()) {
-            rhost = raddr.getHostString();
-        } else {
-            rhost = raddr.getAddress().getHostAddress();
+        if (deferConnectRequest()) {
+            return null;
         }
+        return newConnectRequest();
+    }
+
+    @Override
+    protected void sendConnectRequest(ChannelHandlerContext ctx) throws Exception {
+        sendToProxyServer(newConnectRequest());
+    }
+
+    private Socks4CommandRequest newConnectRequest() {
+        InetSocketAddress raddr = destinationAddress();
         return new DefaultSocks4CommandRequest(
-                Socks4CommandType.CONNECT, rhost, raddr.getPort(), username != null? username : "");
+                Socks4CommandType.CONNECT, SocksAddress.of(raddr), raddr.getPort(), username != null? username : "");
+    }
+
+    @Override
+    protected boolean isConnectRequest(Object msg) {
+        return msg instanceof Socks4CommandRequest;
     }
 
     @Override
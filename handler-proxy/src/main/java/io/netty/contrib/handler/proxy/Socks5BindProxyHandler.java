@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandResponse;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandResponseDecoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandType;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelPipeline;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.ImmediateEventExecutor;
+import io.netty5.util.concurrent.Promise;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Handler that asks a <a href="https://www.rfc-editor.org/rfc/rfc1928">SOCKS Protocol Version 5</a> proxy server to
+ * accept a connection on behalf of the client with the {@code BIND} command, as used by protocols which open a
+ * connection from the server to the client, such as FTP.
+ * <p>
+ * The address the channel is connected to is the address of the host which is expected to connect, which the proxy
+ * server may use to filter the incoming connections.  The proxy server replies twice: once it listens for the incoming
+ * connection, which completes the {@link #bindAddressFuture()} with the address the host should connect to, and once
+ * the host has connected, which completes the {@link #peerAddressFuture()} and the {@link #connectFuture()}.  The
+ * {@linkplain #connectTimeoutMillis() connect timeout} covers both replies, so it must allow for the time the host
+ * takes to connect.
+ * <p>
+ * Like {@link Socks5ProxyHandler}, this handler can be used with a {@link ProxyConnectionPool}, so that each data
+ * connection of a passive-mode protocol takes a pre-negotiated connection instead of running a new handshake with
+ * the proxy server; see {@link ProxyConnectionPool#connect(SocketAddress, java.util.function.Consumer)}.
+ */
+public final class Socks5BindProxyHandler extends AbstractSocks5ProxyHandler {
+
+    private final Promise<InetSocketAddress> bindAddressPromise = ImmediateEventExecutor.INSTANCE.newPromise();
+    private final Promise<InetSocketAddress> peerAddressPromise = ImmediateEventExecutor.INSTANCE.newPromise();
+
+    private String peerDecoderName;
+
+    public Socks5BindProxyHandler(SocketAddress proxyAddress) {
+        this(proxyAddress, null, null);
+    }
+
+    public Socks5BindProxyHandler(SocketAddress proxyAddress, String username, String password) {
+        this(proxyAddress, username, password, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param proxyAddress the address of the SOCKS5 proxy server
+     * @param username the username, or {@code null} if no authentication is required
+     * @param password the password, or {@code null} if no authentication is required
+     * @param pipelined {@code true} to send all handshake requests in a single flush without waiting for the
+     *                  responses of the proxy server
+     */
+    public Socks5BindProxyHandler(SocketAddress proxyAddress, String username, String password, boolean pipelined) {
+        super(proxyAddress, username, password, pipelined, Socks5CommandType.BIND);
+        connectFuture().addListener(future -> {
+            if (future.isFailed()) {
+                bindAddressPromise.tryFailure(future.cause());
+                peerAddressPromise.tryFailure(future.cause());
+            }
+        });
+    }
+
+    /**
+     * Returns a {@link Future} that is notified with the address the proxy server listens on for the incoming
+     * connection, which has to be passed on to the host that is expected to connect.  If the proxy server replies
+     * with an all-zero address, the address of the proxy server is used instead.
+     */
+    public Future<InetSocketAddress> bindAddressFuture() {
+        return bindAddressPromise.asFuture();
+    }
+
+    /**
+     * Returns a {@link Future} that is notified with the address of the host which has connected to the
+     * {@linkplain #bindAddressFuture() bound address}.
+     */
+    public Future<InetSocketAddress> peerAddressFuture() {
+        return peerAddressPromise.asFuture();
+    }
+
+    @Override
+    protected boolean isConnectRequest(Object msg) {
+        // The data written before the host has connected must not be sent behind the BIND request, because the proxy
+        // server may close the connection if nobody connects.
+        return false;
+    }
+
+    @Override
+    protected void removeDecoder(ChannelHandlerContext ctx) throws Exception {
+        super.removeDecoder(ctx);
+        ChannelPipeline p = ctx.pipeline();
+        if (peerDecoderName != null && p.context(peerDecoderName) != null) {
+            p.remove(peerDecoderName);
+        }
+    }
+
+    @Override
+    boolean handleCommandResponse(ChannelHandlerContext ctx, Socks5CommandResponse res) throws Exception {
+        checkCommandResponse(res);
+        if (peerDecoderName == null) {
+            // The decoder of the first reply passes the bytes that follow it on, so the second reply is decoded by a
+            // new decoder right behind it, even if both replies arrive together.
+            peerDecoderName = decoderName() + ".peer";
+            ctx.pipeline().addAfter(decoderName(), peerDecoderName, new Socks5CommandResponseDecoder());
+            bindAddressPromise.trySuccess(boundAddress(ctx, res));
+            return false;
+        }
+        peerAddressPromise.trySuccess(toSocketAddress(res.bndAddress(), res.bndPort()));
+        return true;
+    }
+}
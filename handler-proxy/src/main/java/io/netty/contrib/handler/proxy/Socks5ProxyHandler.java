@@ -15,193 +15,42 @@
  */
 package io.netty.contrib.handler.proxy;
 
-import io.netty5.channel.ChannelHandlerContext;
-import io.netty5.channel.ChannelPipeline;
-import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5CommandRequest;
-import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5InitialRequest;
-import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5PasswordAuthRequest;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5AddressType;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5AuthMethod;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5ClientEncoder;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandResponse;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandResponseDecoder;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandStatus;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandType;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialRequest;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialResponse;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialResponseDecoder;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthResponse;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthResponseDecoder;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthStatus;
-import io.netty5.util.NetUtil;
-import io.netty5.util.internal.StringUtil;
 
-import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.util.Arrays;
-import java.util.Collections;
 
 /**
  * Handler that establishes a blind forwarding proxy tunnel using
  * <a href="https://www.rfc-editor.org/rfc/rfc1928">SOCKS Protocol Version 5</a>.
+ * <p>
+ * By default, each handshake request is sent after the response to the previous request has been received, which
+ * costs up to three round trips.  In the pipelined mode, the initial request, the password authentication request
+ * (if credentials are given) and the {@code CONNECT} request are written in a single flush and the responses are
+ * validated as they arrive, so that the handshake completes in a single round trip.  In the pipelined mode with
+ * credentials, only {@link Socks5AuthMethod#PASSWORD} is offered to the proxy server, because the server would
+ * misinterpret the pipelined authentication request if it selected {@link Socks5AuthMethod#NO_AUTH}.
  */
-public final class Socks5ProxyHandler extends ProxyHandler {
-
-    private static final String PROTOCOL = "socks5";
-    private static final String AUTH_PASSWORD = "password";
-
-    private static final Socks5InitialRequest INIT_REQUEST_NO_AUTH =
-            new DefaultSocks5InitialRequest(Collections.singletonList(Socks5AuthMethod.NO_AUTH));
-
-    private static final Socks5InitialRequest INIT_REQUEST_PASSWORD =
-            new DefaultSocks5InitialRequest(Arrays.asList(Socks5AuthMethod.NO_AUTH, Socks5AuthMethod.PASSWORD));
-
-    private final String username;
-    private final String password;
-
-    private String decoderName;
-    private String encoderName;
+public final class Socks5ProxyHandler extends AbstractSocks5ProxyHandler {
 
     public Socks5ProxyHandler(SocketAddress proxyAddress) {
         this(proxyAddress, null, null);
     }
 
     public Socks5ProxyHandler(SocketAddress proxyAddress, String username, String password) {
-        super(proxyAddress);
-        if (username != null && username.isEmpty()) {
-            username = null;
-        }
-        if (password != null && password.isEmpty()) {
-            password = null;
-        }
-        this.username = username;
-        this.password = password;
-    }
-
-    @Override
-    public String protocol() {
-        return PROTOCOL;
-    }
-
-    @Override
-    public String authScheme() {
-        return socksAuthMethod() == Socks5AuthMethod.PASSWORD? AUTH_PASSWORD : AUTH_NONE;
-    }
-
-    public String username() {
-        return username;
-    }
-
-    public String password() {
-        return password;
-    }
-
-    @Override
-    protected void addCodec(ChannelHandlerContext ctx) throws Exception {
-        ChannelPipeline p = ctx.pipeline();
-        String name = ctx.name();
-
-        Socks5InitialResponseDecoder decoder = new Socks5InitialResponseDecoder();
-        p.addBefore(name, null, decoder);
-
-        decoderName = p.context(decoder).name();
-        encoderName = decoderName + ".encoder";
-
-        p.addBefore(name, encoderName, Socks5ClientEncoder.DEFAULT);
-    }
-
-    @Override
-    protected void removeEncoder(ChannelHandlerContext ctx) throws Exception {
-        ctx.pipeline().remove(encoderName);
-    }
-
-    @Override
-    protected void removeDecoder(ChannelHandlerContext ctx) throws Exception {
-        ChannelPipeline p = ctx.pipeline();
-        if (p.context(decoderName) != null) {
-            p.remove(decoderName);
-        }
-    }
-
-    @Override
-    protected Object newInitialMessage(ChannelHandlerContext ctx) throws Exception {
-        return socksAuthMethod() == Socks5AuthMethod.PASSWORD? INIT_REQUEST_PASSWORD : INIT_REQUEST_NO_AUTH;
-    }
-
-    @Override
-    protected boolean handleResponse(ChannelHandlerContext ctx, Object response) throws Exception {
-        if (response instanceof Socks5InitialResponse) {
-            Socks5InitialResponse res = (Socks5InitialResponse) response;
-            Socks5AuthMethod authMethod = socksAuthMethod();
-            Socks5AuthMethod resAuthMethod = res.authMethod();
-            if (resAuthMethod != Socks5AuthMethod.NO_AUTH && resAuthMethod != authMethod) {
-                // Server did not allow unauthenticated access nor accept the requested authentication scheme.
-                throw new ProxyConnectException(exceptionMessage("unexpected authMethod: " + res.authMethod()));
-            }
-
-            if (resAuthMethod == Socks5AuthMethod.NO_AUTH) {
-                sendConnectCommand(ctx);
-            } else if (resAuthMethod == Socks5AuthMethod.PASSWORD) {
-                // In case of password authentication, send an authentication request.
-                ctx.pipeline().replace(decoderName, decoderName, new Socks5PasswordAuthResponseDecoder());
-                sendToProxyServer(new DefaultSocks5PasswordAuthRequest(
-                        username != null? username : "", password != null? password : ""));
-            } else {
-                // Should never reach here.
-                throw new Error();
-            }
-        }
-
-        if (response instanceof Socks5PasswordAuthResponse) {
-            // Received an authentication response from the server.
-            Socks5PasswordAuthResponse res = (Socks5PasswordAuthResponse) response;
-            if (res.status() != Socks5PasswordAuthStatus.SUCCESS) {
-                throw new ProxyConnectException(exceptionMessage("authStatus: " + res.status()));
-            }
-
-            sendConnectCommand(ctx);
-            return false;
-        }
-
-        // This should be the last message from the server.
-        Socks5CommandResponse res = (Socks5CommandResponse) response;
-        if (res.status() != Socks5CommandStatus.SUCCESS) {
-            throw new ProxyConnectException(exceptionMessage("status: " + res.status()));
-        }
-
-        return true;
-    }
-
-    private Socks5AuthMethod socksAuthMethod() {
-        Socks5AuthMethod authMethod;
-        if (username == null && password == null) {
-            authMethod = Socks5AuthMethod.NO_AUTH;
-        } else {
-            authMethod = Socks5AuthMethod.PASSWORD;
-        }
-        return authMethod;
-    }
-
-    private void sendConnectCommand(ChannelHandlerContext ctx) throws Exception {
-        InetSocketAddress raddr = destinationAddress();
-        Socks5AddressType addrType;
-        String rhost;
-        if (raddr.isUnresolved()) {
-            addrType = Socks5AddressType.DOMAIN;
-            rhost = raddr.getHostString();
-        } else {
-            rhost = raddr.getAddress().getHostAddress();
-            if (NetUtil.isValidIpV4Address(rhost)) {
-                addrType = Socks5AddressType.IPv4;
-            } else if (NetUtil.isValidIpV6Address(rhost)) {
-                addrType = Socks5AddressType.IPv6;
-            } else {
-                throw new ProxyConnectException(
-                        exceptionMessage("unknown address type: " + StringUtil.simpleClassName(rhost)));
-            }
-        }
-
-        ctx.pipeline().replace(decoderName, decoderName, new Socks5CommandResponseDecoder());
-        sendToProxyServer(new DefaultSocks5CommandRequest(Socks5CommandType.CONNECT, addrType, rhost, raddr.getPort()));
+        this(proxyAddress, username, password, false);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param proxyAddress the address of the SOCKS5 proxy server
+     * @param username the username, or {@code null} if no authentication is required
+     * @param password the password, or {@code null} if no authentication is required
+     * @param pipelined {@code true} to send all handshake requests in a single flush without waiting for the
+     *                  responses of the proxy server
+     */
+    public Socks5ProxyHandler(SocketAddress proxyAddress, String username, String password, boolean pipelined) {
+        super(proxyAddress, username, password, pipelined, Socks5CommandType.CONNECT);
     }
 }
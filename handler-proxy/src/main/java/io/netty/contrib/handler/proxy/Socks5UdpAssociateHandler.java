@@ -0,0 +1,303 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty.contrib.handler.codec.socksx.SocksAddress;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandResponse;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandType;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5DatagramPacket;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5DatagramPacketDecoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5DatagramPacketEncoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5DatagramReassembler;
+import io.netty5.bootstrap.Bootstrap;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelOption;
+import io.netty5.channel.ChannelPipeline;
+import io.netty5.channel.PendingWriteQueue;
+import io.netty5.channel.socket.DatagramPacket;
+import io.netty5.util.Resource;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.ImmediateEventExecutor;
+import io.netty5.util.concurrent.Promise;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Handler that sends and receives the {@link DatagramPacket}s of a datagram channel through a
+ * <a href="https://www.rfc-editor.org/rfc/rfc1928">SOCKS Protocol Version 5</a> proxy server with the
+ * {@code UDP ASSOCIATE} command.
+ * <p>
+ * Once the datagram channel is active, this handler connects to the proxy server with the specified {@link Bootstrap}
+ * and runs the handshake on that control connection, which tells the address of the UDP relay of the proxy server.
+ * From then on, the datagrams written to the channel are sent to the relay with the SOCKS5 UDP request header, which
+ * carries their recipient, and the datagrams received from the relay are passed on as if they had been received from
+ * the host named in their header, so that the rest of the pipeline does not see the proxy server.  The header is
+ * composed with the payload, which is never copied, and an unresolved recipient is resolved by the proxy server.
+ * Datagrams written before the relay address is known are held back, and datagrams received from other hosts are
+ * dropped.
+ * <p>
+ * The association lasts as long as the control connection: closing either the control connection or the datagram
+ * channel closes the other.
+ */
+public final class Socks5UdpAssociateHandler implements ChannelHandler {
+
+    private final Bootstrap bootstrap;
+    private final ChannelHandler handler;
+    private final AssociateProxyHandler proxyHandler;
+    private final Promise<InetSocketAddress> relayAddressPromise = ImmediateEventExecutor.INSTANCE.newPromise();
+
+    private ChannelHandlerContext ctx;
+    private PendingWriteQueue pendingWrites;
+    private InetSocketAddress relayAddress;
+    private boolean associating;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} whose event loop group, channel type, options and handler are used for
+     *                  the control connection to the proxy server
+     * @param proxyAddress the address of the SOCKS5 proxy server
+     */
+    public Socks5UdpAssociateHandler(Bootstrap bootstrap, SocketAddress proxyAddress) {
+        this(bootstrap, proxyAddress, null, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap the {@link Bootstrap} whose event loop group, channel type, options and handler are used for
+     *                  the control connection to the proxy server
+     * @param proxyAddress the address of the SOCKS5 proxy server
+     * @param username the username, or {@code null} if no authentication is required
+     * @param password the password, or {@code null} if no authentication is required
+     */
+    public Socks5UdpAssociateHandler(Bootstrap bootstrap, SocketAddress proxyAddress,
+                                     String username, String password) {
+        requireNonNull(bootstrap, "bootstrap");
+        this.bootstrap = bootstrap.clone();
+        handler = bootstrap.config().handler();
+        proxyHandler = new AssociateProxyHandler(proxyAddress, username, password);
+    }
+
+    /**
+     * Returns the {@link ProxyHandler} of the control connection, for example to configure its timeout or
+     * metrics before the datagram channel becomes active.
+     */
+    public ProxyHandler proxyHandler() {
+        return proxyHandler;
+    }
+
+    /**
+     * Returns a {@link Future} that is notified with the address of the UDP relay of the proxy server once the
+     * association has been established, or with the cause if it could not be established.
+     */
+    public Future<InetSocketAddress> relayAddressFuture() {
+        return relayAddressPromise.asFuture();
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        pendingWrites = new PendingWriteQueue(
+                ctx.executor(), ctx.channel().getOption(ChannelOption.MESSAGE_SIZE_ESTIMATOR).newHandle());
+
+        // The datagrams from the relay are decoded and reassembled in front of this handler, and the datagrams to
+        // the relay are encoded behind it.
+        ChannelPipeline p = ctx.pipeline();
+        p.addBefore(ctx.name(), null, Socks5DatagramPacketEncoder.DEFAULT);
+        p.addBefore(ctx.name(), null, new RelayDatagramDecoder());
+        p.addBefore(ctx.name(), null, new Socks5DatagramReassembler());
+
+        if (ctx.channel().isActive()) {
+            associate(ctx);
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        failPendingWrites(new ClosedChannelException());
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        associate(ctx);
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        relayAddressPromise.tryFailure(new ClosedChannelException());
+        failPendingWrites(new ClosedChannelException());
+        ctx.fireChannelInactive();
+    }
+
+    private void associate(ChannelHandlerContext ctx) {
+        if (associating) {
+            return;
+        }
+        associating = true;
+
+        // The client sends from the local address of the datagram channel, which is all zeros if it is bound to the
+        // wildcard address.  All zeros also tell the proxy server that the address is not known.
+        SocketAddress localAddress = ctx.channel().localAddress();
+        SocketAddress sourceAddress = localAddress instanceof InetSocketAddress? localAddress
+                                                                                 : new InetSocketAddress(0);
+        Future<Channel> connectFuture = bootstrap.clone().handler(new ProxyChannelInitializer(proxyHandler, handler))
+                                                 .connect(sourceAddress);
+        connectFuture.addListener(future -> {
+            if (future.isFailed()) {
+                associationFailed(future.cause());
+                return;
+            }
+            Channel controlChannel = future.getNow();
+            controlChannel.closeFuture().addListener(ctx.channel(), (ch, f) -> ch.close());
+            ctx.channel().closeFuture().addListener(controlChannel, (ch, f) -> ch.close());
+            proxyHandler.connectFuture().addListener(f -> {
+                if (f.isFailed()) {
+                    associationFailed(f.cause());
+                } else {
+                    associated(proxyHandler.relayAddress);
+                }
+            });
+        });
+    }
+
+    private void associated(InetSocketAddress relayAddress) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(() -> associated(relayAddress));
+            return;
+        }
+        this.relayAddress = relayAddress;
+        relayAddressPromise.trySuccess(relayAddress);
+        if (!pendingWrites.isEmpty()) {
+            pendingWrites.removeAndTransferAll(msg -> ctx.write(toRelay((DatagramPacket) msg)));
+            ctx.flush();
+        }
+    }
+
+    private void associationFailed(Throwable cause) {
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(() -> associationFailed(cause));
+            return;
+        }
+        if (relayAddressPromise.tryFailure(cause)) {
+            failPendingWrites(cause);
+            ctx.fireChannelExceptionCaught(cause);
+            ctx.close();
+        }
+    }
+
+    private void failPendingWrites(Throwable cause) {
+        if (pendingWrites != null && !pendingWrites.isEmpty()) {
+            pendingWrites.removeAndFailAll(cause);
+        }
+    }
+
+    @Override
+    public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof DatagramPacket) || ((DatagramPacket) msg).recipient() == null) {
+            return ctx.write(msg);
+        }
+        if (relayAddress == null) {
+            Promise<Void> promise = ctx.newPromise();
+            pendingWrites.add(msg, promise);
+            return promise.asFuture();
+        }
+        return ctx.write(toRelay((DatagramPacket) msg));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof Socks5DatagramPacket) {
+            ctx.fireChannelRead(fromRelay((Socks5DatagramPacket) msg));
+        } else if (msg instanceof DatagramPacket) {
+            // Not sent by the relay.
+            Resource.dispose(msg);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    /**
+     * Returns a datagram which carries the specified datagram to the relay.  The content is moved, not copied.
+     */
+    private Socks5DatagramPacket toRelay(DatagramPacket packet) {
+        InetSocketAddress recipient = packet.recipient();
+        return new Socks5DatagramPacket(packet.content(), relayAddress, SocksAddress.of(recipient),
+                                        recipient.getPort());
+    }
+
+    /**
+     * Returns a datagram which appears to have been received from the host named in the header of the specified
+     * datagram.  The content is moved, not copied.
+     */
+    private static DatagramPacket fromRelay(Socks5DatagramPacket packet) {
+        InetSocketAddress sender = AbstractSocks5ProxyHandler.toSocketAddress(packet.dstAddress(), packet.dstPort());
+        return new DatagramPacket(packet.content(), packet.recipient(), sender);
+    }
+
+    /**
+     * Runs the handshake of the control connection with the {@code UDP ASSOCIATE} command, and keeps the relay
+     * address from the response.
+     */
+    private static final class AssociateProxyHandler extends AbstractSocks5ProxyHandler {
+
+        volatile InetSocketAddress relayAddress;
+
+        AssociateProxyHandler(SocketAddress proxyAddress, String username, String password) {
+            super(proxyAddress, username, password, false, Socks5CommandType.UDP_ASSOCIATE);
+        }
+
+        @Override
+        protected boolean isConnectRequest(Object msg) {
+            // Nothing is written to the control connection after the request.
+            return false;
+        }
+
+        @Override
+        boolean handleCommandResponse(ChannelHandlerContext ctx, Socks5CommandResponse res) throws Exception {
+            checkCommandResponse(res);
+            relayAddress = boundAddress(ctx, res);
+            return true;
+        }
+    }
+
+    /**
+     * Decodes the datagrams which are sent by the relay, and passes the others on as they are.
+     */
+    private final class RelayDatagramDecoder extends Socks5DatagramPacketDecoder {
+
+        @Override
+        public boolean acceptInboundMessage(Object msg) throws Exception {
+            if (!super.acceptInboundMessage(msg)) {
+                return false;
+            }
+            InetSocketAddress relayAddress = Socks5UdpAssociateHandler.this.relayAddress;
+            return relayAddress != null && relayAddress.equals(((DatagramPacket) msg).sender());
+        }
+
+        @Override
+        public boolean isSharable() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramProxyHandlerMetricsTest {
+
+    private static final SocketAddress PROXY_ADDRESS = new InetSocketAddress("localhost", 1080);
+    private static final String HELLO = "HELLO";
+    private static final String CONNECT = "CONNECT";
+
+    @Test
+    public void testSuccessfulHandshake() {
+        HistogramProxyHandlerMetrics metrics = new HistogramProxyHandlerMetrics();
+        TestProxyHandler handler = new TestProxyHandler();
+        handler.setMetrics(metrics);
+        ProxyConnectionEvent[] event = new ProxyConnectionEvent[1];
+        EmbeddedChannel ch = new EmbeddedChannel(handler, new ChannelHandler() {
+            @Override
+            public void channelInboundEvent(ChannelHandlerContext ctx, Object evt) {
+                if (evt instanceof ProxyConnectionEvent) {
+                    event[0] = (ProxyConnectionEvent) evt;
+                }
+            }
+        });
+
+        ch.writeAndFlush("DATA");
+        ch.writeInbound(HELLO);
+        ch.writeInbound(CONNECT);
+        assertTrue(handler.isConnected());
+
+        ProxyHandshakeTimings timings = handler.timings();
+        assertSame(timings, event[0].timings());
+        // The handler has been added to a channel which was active already.
+        assertFalse(timings.isRecorded(ProxyHandshakePhase.CONNECT_STARTED));
+        assertFalse(timings.isRecorded(ProxyHandshakePhase.AUTH_RESPONSE));
+        assertTrue(timings.isRecorded(ProxyHandshakePhase.PROXY_CONNECTED));
+        assertTrue(timings.isRecorded(ProxyHandshakePhase.INITIAL_RESPONSE));
+        assertTrue(timings.isRecorded(ProxyHandshakePhase.CONNECT_RESPONSE));
+        assertTrue(timings.isRecorded(ProxyHandshakePhase.FIRST_WRITE_FLUSHED));
+        assertEquals(timings.elapsedNanos(ProxyHandshakePhase.PROXY_CONNECTED, ProxyHandshakePhase.CONNECT_RESPONSE),
+                     timings.handshakeNanos());
+        assertEquals(-1, timings.phaseNanos(ProxyHandshakePhase.PROXY_CONNECTED));
+        assertEquals(timings.elapsedNanos(ProxyHandshakePhase.INITIAL_RESPONSE, ProxyHandshakePhase.CONNECT_RESPONSE),
+                     timings.phaseNanos(ProxyHandshakePhase.CONNECT_RESPONSE));
+        assertThrows(IllegalStateException.class, () -> timings.nanoTime(ProxyHandshakePhase.AUTH_RESPONSE));
+
+        assertEquals(1, metrics.succeeded(PROXY_ADDRESS));
+        assertEquals(0, metrics.failed(PROXY_ADDRESS));
+        assertEquals(1, metrics.handshakeLatency(PROXY_ADDRESS).count());
+        assertEquals(1, metrics.phaseLatency(PROXY_ADDRESS, ProxyHandshakePhase.INITIAL_RESPONSE).count());
+        assertEquals(1, metrics.phaseLatency(PROXY_ADDRESS, ProxyHandshakePhase.CONNECT_RESPONSE).count());
+        assertEquals(0, metrics.phaseLatency(PROXY_ADDRESS, ProxyHandshakePhase.AUTH_RESPONSE).count());
+        assertTrue(metrics.proxyAddresses().contains(PROXY_ADDRESS));
+
+        assertEquals(HELLO, ch.readOutbound());
+        assertEquals(CONNECT, ch.readOutbound());
+        assertEquals("DATA", ch.readOutbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testFailedHandshake() {
+        HistogramProxyHandlerMetrics metrics = new HistogramProxyHandlerMetrics();
+        TestProxyHandler handler = new TestProxyHandler();
+        handler.setMetrics(metrics);
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+
+        ch.writeInbound(HELLO);
+        assertThrows(ProxyConnectException.class, () -> ch.writeInbound("REJECTED"));
+        assertFalse(handler.timings().isRecorded(ProxyHandshakePhase.CONNECT_RESPONSE));
+
+        assertEquals(0, metrics.succeeded(PROXY_ADDRESS));
+        assertEquals(1, metrics.failed(PROXY_ADDRESS));
+        assertEquals(0, metrics.handshakeLatency(PROXY_ADDRESS).count());
+    }
+
+    @Test
+    public void testQueryingUnknownProxyDoesNotRecordIt() {
+        HistogramProxyHandlerMetrics metrics = new HistogramProxyHandlerMetrics();
+        assertEquals(0, metrics.succeeded(PROXY_ADDRESS));
+        assertEquals(0, metrics.failed(PROXY_ADDRESS));
+        assertEquals(0, metrics.handshakeLatency(PROXY_ADDRESS).count());
+        assertEquals(0, metrics.phaseLatency(PROXY_ADDRESS, ProxyHandshakePhase.INITIAL_RESPONSE).count());
+        assertTrue(metrics.proxyAddresses().isEmpty());
+    }
+
+    @Test
+    public void testMetricsFailureDoesNotFailHandshake() {
+        TestProxyHandler handler = new TestProxyHandler();
+        handler.setMetrics(new ProxyHandlerMetrics() {
+            @Override
+            public void handshakeSucceeded(ProxyHandler handler, ProxyHandshakeTimings timings) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void handshakeFailed(ProxyHandler handler, Throwable cause, ProxyHandshakeTimings timings) {
+                throw new IllegalStateException();
+            }
+        });
+        EmbeddedChannel ch = new EmbeddedChannel(handler);
+
+        ch.writeInbound(HELLO);
+        ch.writeInbound(CONNECT);
+        assertTrue(handler.isConnected());
+        assertTrue(ch.isActive());
+        assertEquals(HELLO, ch.readOutbound());
+        assertEquals(CONNECT, ch.readOutbound());
+        assertFalse(ch.finish());
+    }
+
+    /**
+     * A proxy handler whose handshake consists of a {@code HELLO} and a {@code CONNECT} request, each of which the
+     * proxy server answers by echoing it.
+     */
+    private static final class TestProxyHandler extends ProxyHandler {
+
+        TestProxyHandler() {
+            super(PROXY_ADDRESS);
+        }
+
+        @Override
+        public String protocol() {
+            return "test";
+        }
+
+        @Override
+        public String authScheme() {
+            return AUTH_NONE;
+        }
+
+        @Override
+        protected void addCodec(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        protected void removeEncoder(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        protected void removeDecoder(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        protected Object newInitialMessage(ChannelHandlerContext ctx) {
+            return HELLO;
+        }
+
+        @Override
+        protected boolean handleResponse(ChannelHandlerContext ctx, Object response) throws Exception {
+            if (HELLO.equals(response)) {
+                recordPhase(ProxyHandshakePhase.INITIAL_RESPONSE);
+                sendToProxyServer(CONNECT);
+                return false;
+            }
+            if (CONNECT.equals(response)) {
+                return true;
+            }
+            throw new ProxyConnectException(exceptionMessage("rejected"));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.handler.codec.http.headers.HttpHeaders;
+import io.netty5.util.NetUtil;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HttpConnectRequestCacheTest {
+
+    private static final SocketAddress PROXY_ADDRESS = new InetSocketAddress(NetUtil.LOCALHOST, 8080);
+
+    @Test
+    public void testCachedRequestMatchesEncodedRequest() throws Exception {
+        HttpConnectRequestCache cache = new HttpConnectRequestCache();
+        InetSocketAddress destination = InetSocketAddress.createUnresolved("netty.io", 443);
+
+        String expected = initialMessage(newHandler(null), destination);
+        for (int i = 0; i < 2; i++) {
+            HttpProxyHandler handler = newHandler(null);
+            handler.setConnectRequestCache(cache);
+            assertEquals(expected, initialMessage(handler, destination));
+        }
+        assertEquals(1, cache.size());
+
+        HttpProxyHandler handler = newHandler(null);
+        handler.setConnectRequestCache(cache);
+        assertEquals("CONNECT [::1]:8080 HTTP/1.1\r\n" +
+                     "host: [::1]:8080\r\n" +
+                     "proxy-authorization: Basic dXNlcjpwYXNz\r\n" +
+                     "\r\n", initialMessage(handler, InetSocketAddress.createUnresolved("::1", 8080)));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testCacheIsBounded() throws Exception {
+        HttpConnectRequestCache cache = new HttpConnectRequestCache(2);
+        for (int port = 1; port <= 10; port++) {
+            HttpProxyHandler handler = newHandler(null);
+            handler.setConnectRequestCache(cache);
+            assertEquals("CONNECT localhost:" + port + " HTTP/1.1\r\n" +
+                         "host: localhost:" + port + "\r\n" +
+                         "proxy-authorization: Basic dXNlcjpwYXNz\r\n" +
+                         "\r\n", initialMessage(handler, InetSocketAddress.createUnresolved("localhost", port)));
+            assertTrue(cache.size() <= 2);
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        HttpConnectRequestCache cache = new HttpConnectRequestCache(2);
+        AtomicInteger encoded = new AtomicInteger();
+        Function<InetSocketAddress, byte[]> encoder = destination -> {
+            encoded.incrementAndGet();
+            return new byte[] { (byte) destination.getPort() };
+        };
+
+        request(cache, 1, encoder);
+        request(cache, 2, encoder);
+        request(cache, 1, encoder);
+        assertEquals(2, encoded.get());
+
+        // Evicts port 2, which has been used less recently than port 1.
+        request(cache, 3, encoder);
+        assertEquals(3, encoded.get());
+        request(cache, 1, encoder);
+        assertEquals(3, encoded.get());
+        request(cache, 2, encoder);
+        assertEquals(4, encoded.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testCacheRejectsDifferentHeaders() {
+        HttpConnectRequestCache cache = new HttpConnectRequestCache();
+        newHandler(null).setConnectRequestCache(cache);
+        newHandler(null).setConnectRequestCache(cache);
+
+        assertThrows(IllegalArgumentException.class,
+                     () -> newHandler(HttpHeaders.newHeaders().add("name", "value")).setConnectRequestCache(cache));
+    }
+
+    @Test
+    public void testCacheRequiresLightweightCodec() {
+        assertThrows(IllegalStateException.class,
+                     () -> new HttpProxyHandler(PROXY_ADDRESS).setConnectRequestCache(new HttpConnectRequestCache()));
+    }
+
+    private static void request(HttpConnectRequestCache cache, int port,
+                                Function<InetSocketAddress, byte[]> encoder) {
+        try (Buffer request = cache.request(InetSocketAddress.createUnresolved("localhost", port), encoder)) {
+            assertEquals(port, request.getByte(request.readerOffset()));
+        }
+    }
+
+    private static HttpProxyHandler newHandler(HttpHeaders headers) {
+        return new HttpProxyHandler(PROXY_ADDRESS, "user", "pass", headers, false, true);
+    }
+
+    private static String initialMessage(HttpProxyHandler handler, InetSocketAddress destination) throws Exception {
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.bufferAllocator()).thenReturn(preferredAllocator());
+        handler.connect(ctx, destination, null);
+
+        try (Buffer request = (Buffer) handler.newInitialMessage(ctx)) {
+            return request.toString(StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+
+/**
+ * Answers an HTTP CONNECT request with {@code 200 OK} and records its request line.
+ */
+final class HttpConnectResponder implements ChannelHandler {
+
+    private final Queue<String> requests;
+    private final StringBuilder received = new StringBuilder();
+
+    HttpConnectResponder(Queue<String> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        try (Buffer buffer = (Buffer) msg) {
+            received.append(buffer.toString(StandardCharsets.US_ASCII));
+        }
+        int end = received.indexOf("\r\n\r\n");
+        if (end >= 0) {
+            requests.add(received.substring(0, received.indexOf("\r\n")));
+            received.delete(0, end + 4);
+            ctx.writeAndFlush(ctx.bufferAllocator().copyOf(
+                    "HTTP/1.1 200 OK\r\n\r\n".getBytes(StandardCharsets.US_ASCII)));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.handler.codec.DecoderException;
+import io.netty5.handler.codec.http.HttpResponseStatus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HttpConnectResponseDecoderTest {
+
+    @Test
+    public void testSuccessResponse() {
+        HttpConnectResponseDecoder decoder = new HttpConnectResponseDecoder();
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+
+        channel.writeInbound(buffer("HTTP/1.1 200 Connection established\r\nVia: proxy\r\n\r\n"));
+        assertSame(HttpResponseStatus.OK, channel.readInbound());
+        assertNull(decoder.headers());
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testSuccessResponseWithoutReasonPhrase() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpConnectResponseDecoder());
+
+        channel.writeInbound(buffer("HTTP/1.0 200\n\n"));
+        assertSame(HttpResponseStatus.OK, channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testSuccessResponseInFragments() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpConnectResponseDecoder());
+        String response = "HTTP/1.1 200 OK\r\nVia: proxy\r\n\r\n";
+
+        for (int i = 0; i < response.length() - 1; i++) {
+            channel.writeInbound(buffer(response.substring(i, i + 1)));
+            assertNull(channel.readInbound());
+        }
+        channel.writeInbound(buffer(response.substring(response.length() - 1)));
+        assertSame(HttpResponseStatus.OK, channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDataAfterSuccessResponseIsForwarded() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpConnectResponseDecoder());
+
+        channel.writeInbound(buffer("HTTP/1.1 200 OK\r\n\r\nDATA"));
+        assertSame(HttpResponseStatus.OK, channel.readInbound());
+        try (Buffer data = channel.readInbound()) {
+            assertEquals("DATA", data.toString(StandardCharsets.US_ASCII));
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFailureResponse() {
+        HttpConnectResponseDecoder decoder = new HttpConnectResponseDecoder();
+        EmbeddedChannel channel = new EmbeddedChannel(decoder);
+
+        channel.writeInbound(buffer("HTTP/1.1 407 Proxy Authentication Required\r\n" +
+                                    "Proxy-Authenticate : Basic realm=\"proxy\" \r\n" +
+                                    "Content-Length:4\r\n" +
+                                    "\r\n" +
+                                    "BODY"));
+        HttpResponseStatus status = channel.readInbound();
+        assertEquals(407, status.code());
+        assertEquals("Proxy Authentication Required", status.reasonPhrase());
+        assertEquals("Basic realm=\"proxy\"", decoder.headers().get("proxy-authenticate").toString());
+        assertEquals("4", decoder.headers().get("content-length").toString());
+
+        // The body of a failed response is discarded.
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testInvalidStatusLine() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpConnectResponseDecoder());
+
+        assertThrows(DecoderException.class, () -> channel.writeInbound(buffer("SSH-2.0-OpenSSH\r\n")));
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testInvalidHeader() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpConnectResponseDecoder());
+
+        assertThrows(DecoderException.class,
+                     () -> channel.writeInbound(buffer("HTTP/1.1 502 Bad Gateway\r\nno colon\r\n\r\n")));
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testTooLongHeader() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpConnectResponseDecoder(32));
+
+        assertThrows(DecoderException.class,
+                     () -> channel.writeInbound(buffer("HTTP/1.1 200 OK\r\nX-Padding: 0123456789")));
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    private static Buffer buffer(String s) {
+        return preferredAllocator().copyOf(s.getBytes(StandardCharsets.US_ASCII));
+    }
+}
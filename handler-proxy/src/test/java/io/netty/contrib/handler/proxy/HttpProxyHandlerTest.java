@@ -16,6 +16,7 @@
 package io.netty.contrib.handler.proxy;
 
 import io.netty5.bootstrap.Bootstrap;
+import io.netty5.buffer.Buffer;
 import io.netty5.bootstrap.ServerBootstrap;
 import io.netty5.channel.Channel;
 import io.netty5.channel.ChannelHandler;
@@ -46,6 +47,7 @@ import org.junit.jupiter.api.Test;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
@@ -185,6 +187,15 @@ public class HttpProxyHandlerTest {
 
     @Test
     public void testExceptionDuringConnect() throws Exception {
+        testExceptionDuringConnect(false);
+    }
+
+    @Test
+    public void testExceptionDuringConnectWithLightweightCodec() throws Exception {
+        testExceptionDuringConnect(true);
+    }
+
+    private static void testExceptionDuringConnect(boolean lightweightCodec) throws Exception {
         EventLoopGroup group = null;
         Channel serverChannel = null;
         Channel clientChannel = null;
@@ -218,7 +229,7 @@ public class HttpProxyHandlerTest {
                 new ChannelInitializer<Channel>() {
                     @Override
                     protected void initChannel(Channel ch) {
-                        ch.pipeline().addFirst(new HttpProxyHandler(addr));
+                        ch.pipeline().addFirst(new HttpProxyHandler(addr, null, false, lightweightCodec));
                         ch.pipeline().addLast(new ChannelHandler() {
                             @Override
                             public void channelExceptionCaught(ChannelHandlerContext ctx,
@@ -284,6 +295,31 @@ public class HttpProxyHandlerTest {
         verify(ctx).connect(proxyAddress, null);
     }
 
+    @Test
+    public void testLightweightInitialMessage() throws Exception {
+        InetSocketAddress proxyAddress = new InetSocketAddress(NetUtil.LOCALHOST, 8080);
+
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.bufferAllocator()).thenReturn(preferredAllocator());
+
+        HttpProxyHandler handler = new HttpProxyHandler(
+                proxyAddress, "user", "pass",
+                HttpHeaders.newHeaders().add("CUSTOM_HEADER", "CUSTOM_VALUE"),
+                true, true);
+        assertTrue(handler.isLightweightCodec());
+        handler.connect(ctx, InetSocketAddress.createUnresolved("localhost", 443), null);
+
+        try (Buffer request = (Buffer) handler.newInitialMessage(ctx)) {
+            assertEquals("CONNECT localhost:443 HTTP/1.1\r\n" +
+                         "host: localhost\r\n" +
+                         "proxy-authorization: Basic dXNlcjpwYXNz\r\n" +
+                         "CUSTOM_HEADER: CUSTOM_VALUE\r\n" +
+                         "\r\n", request.toString(StandardCharsets.US_ASCII));
+            assertEquals(request.readableBytes(), request.capacity());
+        }
+        verify(ctx).connect(proxyAddress, null);
+    }
+
     @Test
     public void testHttpClientCodecIsInvisible() {
         EmbeddedChannel channel = new EmbeddedChannel(new HttpProxyHandler(
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.mean(), 0);
+        assertEquals(0, histogram.valueAtQuantile(0.99));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10, histogram.count());
+        assertEquals(10, histogram.max());
+        assertEquals(5.5, histogram.mean(), 0);
+        assertEquals(1, histogram.valueAtQuantile(0));
+        assertEquals(5, histogram.valueAtQuantile(0.5));
+        assertEquals(9, histogram.valueAtQuantile(0.9));
+        assertEquals(10, histogram.valueAtQuantile(1));
+    }
+
+    @Test
+    public void testRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value < 1_000_000_000L; value = value * 3 + 1) {
+            histogram.reset();
+            histogram.record(value);
+            histogram.record(value * 4);
+            long p50 = histogram.valueAtQuantile(0.5);
+            assertTrue(p50 >= value && p50 <= value + value / 16, value + " => " + p50);
+            assertEquals(value * 4, histogram.valueAtQuantile(1));
+        }
+    }
+
+    @Test
+    public void testBuckets() {
+        long previousUpperBound = -1;
+        for (int i = 0; i < LatencyHistogram.bucketIndex(Long.MAX_VALUE) + 1; i++) {
+            long upperBound = LatencyHistogram.bucketUpperBound(i);
+            assertTrue(upperBound > previousUpperBound);
+            assertEquals(i, LatencyHistogram.bucketIndex(previousUpperBound + 1));
+            assertEquals(i, LatencyHistogram.bucketIndex(upperBound));
+            previousUpperBound = upperBound;
+        }
+        assertEquals(Long.MAX_VALUE, previousUpperBound);
+    }
+
+    @Test
+    public void testNegativeValueIsRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.valueAtQuantile(1));
+    }
+
+    @Test
+    public void testInvalidQuantile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThrows(IllegalArgumentException.class, () -> histogram.valueAtQuantile(1.5));
+        assertThrows(IllegalArgumentException.class, () -> histogram.valueAtQuantile(Double.NaN));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.CompositeBuffer;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PendingWriteCoalescerTest {
+
+    @Test
+    public void testBuffersAreComposed() {
+        EmbeddedChannel ch = new EmbeddedChannel(new ChannelHandler() { });
+        PendingWriteCoalescer coalescer = new PendingWriteCoalescer(ch.pipeline().firstContext());
+
+        Future<Void> a = coalescer.write(buffer("a"));
+        Future<Void> b = coalescer.write(buffer("bc"));
+        Future<Void> c = coalescer.write("message");
+        Future<Void> d = coalescer.write(buffer("d"));
+        Future<Void> e = coalescer.write(buffer("ef"));
+        assertFalse(a.isDone());
+        assertFalse(e.isDone());
+        coalescer.finish();
+        ch.flush();
+
+        assertTrue(a.isSuccess());
+        assertTrue(b.isSuccess());
+        assertTrue(c.isSuccess());
+        assertTrue(d.isSuccess());
+        assertTrue(e.isSuccess());
+        // Each run of buffers reaches the transport as a single message, whose components are the written buffers.
+        assertComposed("abc", 2, ch.readOutbound());
+        assertEquals("message", ch.readOutbound());
+        assertComposed("def", 2, ch.readOutbound());
+        assertNull(ch.readOutbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testSingleBufferIsWrittenAsIs() {
+        EmbeddedChannel ch = new EmbeddedChannel(new ChannelHandler() { });
+        PendingWriteCoalescer coalescer = new PendingWriteCoalescer(ch.pipeline().firstContext());
+        Buffer buffer = buffer("a");
+
+        coalescer.write(buffer);
+        coalescer.write("message");
+        coalescer.finish();
+        ch.flush();
+
+        assertSame(buffer, ch.readOutbound());
+        assertEquals("message", ch.readOutbound());
+        buffer.close();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testReadBytesAreSkipped() {
+        EmbeddedChannel ch = new EmbeddedChannel(new ChannelHandler() { });
+        PendingWriteCoalescer coalescer = new PendingWriteCoalescer(ch.pipeline().firstContext());
+        Buffer partiallyRead = preferredAllocator().allocate(16).writeBytes("xxbc".getBytes(US_ASCII));
+        partiallyRead.skipReadableBytes(2);
+
+        coalescer.write(buffer("a"));
+        coalescer.write(partiallyRead);
+        coalescer.finish();
+        ch.flush();
+
+        assertComposed("abc", 2, ch.readOutbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testMergedWriteFailureFailsAllFutures() {
+        EmbeddedChannel ch = new EmbeddedChannel(new ChannelHandler() {
+            @Override
+            public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+                ((Buffer) msg).close();
+                return ctx.newFailedFuture(new IllegalStateException());
+            }
+        }, new ChannelHandler() { });
+        PendingWriteCoalescer coalescer = new PendingWriteCoalescer(ch.pipeline().lastContext());
+
+        Future<Void> a = coalescer.write(buffer("a"));
+        Future<Void> b = coalescer.write(buffer("b"));
+        coalescer.finish();
+
+        assertTrue(a.isFailed());
+        assertTrue(b.isFailed());
+        assertFalse(ch.finish());
+    }
+
+    private static Buffer buffer(String content) {
+        return preferredAllocator().copyOf(content.getBytes(US_ASCII));
+    }
+
+    private static void assertComposed(String expected, int components, Buffer buffer) {
+        try (buffer) {
+            assertEquals(components, assertInstanceOf(CompositeBuffer.class, buffer).countComponents());
+            assertEquals(expected, buffer.toString(US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty.contrib.handler.proxy.ProxyBalancer.Endpoint;
+import io.netty.contrib.handler.proxy.ProxyBalancer.Strategy;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProxyBalancerTest {
+
+    private static final SocketAddress PROXY_A = InetSocketAddress.createUnresolved("a.proxy", 1080);
+    private static final SocketAddress PROXY_B = InetSocketAddress.createUnresolved("b.proxy", 1080);
+    private static final SocketAddress PROXY_C = InetSocketAddress.createUnresolved("c.proxy", 1080);
+    private static final List<SocketAddress> PROXIES = Arrays.asList(PROXY_A, PROXY_B, PROXY_C);
+
+    @Test
+    public void testLeastOutstandingSpreadsLoad() {
+        ProxyBalancer balancer = new ProxyBalancer(PROXIES, TestProxyHandler::new);
+
+        Set<SocketAddress> chosen = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            chosen.add(balancer.newProxyHandler().proxyAddress());
+        }
+        assertEquals(new HashSet<>(PROXIES), chosen);
+        for (Endpoint endpoint : balancer.endpoints()) {
+            assertEquals(1, endpoint.outstandingHandshakes());
+        }
+    }
+
+    @Test
+    public void testLeastOutstandingAvoidsBusyEndpoint() {
+        ProxyBalancer balancer = new ProxyBalancer(PROXIES, TestProxyHandler::new);
+
+        ProxyHandler first = balancer.newProxyHandler();
+        ProxyHandler second = balancer.newProxyHandler();
+        ProxyHandler third = balancer.newProxyHandler();
+        succeed(second);
+        succeed(third);
+
+        // Only the endpoint of the first handler has a handshake in progress now.
+        for (int i = 0; i < 10; i++) {
+            ProxyHandler handler = balancer.newProxyHandler();
+            assertNotEquals(first.proxyAddress(), handler.proxyAddress());
+            succeed(handler);
+        }
+    }
+
+    @Test
+    public void testEwmaLatencyPrefersFastEndpoints() throws Exception {
+        ProxyBalancer balancer = new ProxyBalancer(PROXIES, TestProxyHandler::new, Strategy.EWMA_LATENCY, 3, 1000);
+
+        ProxyHandler slow = balancer.newProxyHandler();
+        Thread.sleep(20);
+        succeed(slow);
+
+        // The other endpoints have not been tried yet, so they are scored with the latency of the slow one, and the
+        // tie is broken in their favor by the round-robin.
+        ProxyHandler untried = balancer.newProxyHandler();
+        assertNotEquals(slow.proxyAddress(), untried.proxyAddress());
+        succeed(untried);
+        ProxyHandler untried2 = balancer.newProxyHandler();
+        assertNotEquals(slow.proxyAddress(), untried2.proxyAddress());
+        succeed(untried2);
+
+        for (int i = 0; i < 10; i++) {
+            ProxyHandler handler = balancer.newProxyHandler();
+            assertNotEquals(slow.proxyAddress(), handler.proxyAddress());
+            succeed(handler);
+        }
+    }
+
+    @Test
+    public void testEwmaLatencyAvoidsFailingEndpoint() {
+        ProxyBalancer balancer = new ProxyBalancer(
+                Arrays.asList(PROXY_A, PROXY_B), TestProxyHandler::new, Strategy.EWMA_LATENCY, 100, 1000);
+        Endpoint endpointA = balancer.endpoints().get(0);
+
+        ProxyHandler failing = balancer.newProxyHandler();
+        assertEquals(PROXY_A, failing.proxyAddress());
+        fail(failing);
+        assertFalse(endpointA.isEjected());
+        assertTrue(endpointA.latencyNanos() >= TimeUnit.MILLISECONDS.toNanos(failing.connectTimeoutMillis()));
+
+        for (int i = 0; i < 10; i++) {
+            ProxyHandler handler = balancer.newProxyHandler();
+            assertEquals(PROXY_B, handler.proxyAddress());
+            succeed(handler);
+        }
+    }
+
+    @Test
+    public void testFailingEndpointIsEjected() throws Exception {
+        ProxyBalancer balancer = new ProxyBalancer(
+                Arrays.asList(PROXY_A, PROXY_B), TestProxyHandler::new, Strategy.LEAST_OUTSTANDING, 2, 500);
+        Endpoint endpointA = balancer.endpoints().get(0);
+
+        for (int i = 0; i < 2; i++) {
+            ProxyHandler handler = balancer.newProxyHandler();
+            while (!handler.proxyAddress().equals(PROXY_A)) {
+                succeed(handler);
+                handler = balancer.newProxyHandler();
+            }
+            fail(handler);
+        }
+        assertEquals(0, endpointA.outstandingHandshakes());
+        assertTrue(endpointA.isEjected());
+
+        for (int i = 0; i < 10; i++) {
+            ProxyHandler handler = balancer.newProxyHandler();
+            assertEquals(PROXY_B, handler.proxyAddress());
+            succeed(handler);
+        }
+
+        Thread.sleep(600);
+        assertFalse(endpointA.isEjected());
+    }
+
+    @Test
+    public void testAllEndpointsEjectedFailsOpen() {
+        ProxyBalancer balancer = new ProxyBalancer(
+                Arrays.asList(PROXY_A), TestProxyHandler::new, Strategy.LEAST_OUTSTANDING, 1, 60000);
+
+        fail(balancer.newProxyHandler());
+        assertTrue(balancer.endpoints().get(0).isEjected());
+        assertEquals(PROXY_A, balancer.newProxyHandler().proxyAddress());
+    }
+
+    private static void succeed(ProxyHandler handler) {
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channel.writeInbound(TestProxyHandler.OK);
+        assertTrue(handler.isConnected());
+        channel.finishAndReleaseAll();
+    }
+
+    private static void fail(ProxyHandler handler) {
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        assertThrows(ProxyConnectException.class, () -> channel.writeInbound("FAILED"));
+        assertTrue(handler.connectFuture().isFailed());
+    }
+
+    /**
+     * A proxy handler which sends nothing and expects a single {@link #OK} from the proxy server.
+     */
+    private static final class TestProxyHandler extends ProxyHandler {
+
+        static final String OK = "OK";
+
+        TestProxyHandler(SocketAddress proxyAddress) {
+            super(proxyAddress);
+        }
+
+        @Override
+        public String protocol() {
+            return "test";
+        }
+
+        @Override
+        public String authScheme() {
+            return AUTH_NONE;
+        }
+
+        @Override
+        protected void addCodec(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        protected void removeEncoder(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        protected void removeDecoder(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        protected Object newInitialMessage(ChannelHandlerContext ctx) {
+            return null;
+        }
+
+        @Override
+        protected boolean handleResponse(ChannelHandlerContext ctx, Object response) throws Exception {
+            if (OK.equals(response)) {
+                return true;
+            }
+            throw new ProxyConnectException(exceptionMessage("unexpected response: " + response));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.bootstrap.Bootstrap;
+import io.netty5.bootstrap.ServerBootstrap;
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelInitializer;
+import io.netty5.channel.EventLoopGroup;
+import io.netty5.channel.MultithreadEventLoopGroup;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.channel.local.LocalAddress;
+import io.netty5.channel.local.LocalChannel;
+import io.netty5.channel.local.LocalHandler;
+import io.netty5.channel.local.LocalServerChannel;
+import io.netty5.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProxyConnectionPoolTest {
+
+    @Test
+    public void testPreNegotiatedSocks5Handshake() throws Exception {
+        Socks5ProxyHandler handler = new Socks5ProxyHandler(new InetSocketAddress("localhost", 1080));
+        handler.setPreNegotiated();
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.pipeline().addLast(handler);
+
+        try (Buffer initialRequest = ch.readOutbound()) {
+            assertEquals(3, initialRequest.readableBytes());
+        }
+        ch.writeInbound(preferredAllocator().copyOf(new byte[] { 5, 0 }));
+        assertTrue(handler.negotiatedFuture().isSuccess());
+        // The CONNECT request is not sent until the destination is known.
+        assertNull(ch.readOutbound());
+
+        Future<Channel> connectFuture =
+                handler.connectToDestination(InetSocketAddress.createUnresolved("netty.io", 443));
+        try (Buffer commandRequest = ch.readOutbound()) {
+            assertEquals(5, commandRequest.getByte(commandRequest.readerOffset()));
+            assertEquals(1, commandRequest.getByte(commandRequest.readerOffset() + 1));
+        }
+        assertFalse(connectFuture.isDone());
+
+        ch.writeInbound(preferredAllocator().copyOf(new byte[] { 5, 0, 0, 1, 0, 0, 0, 0, 0, 0 }));
+        assertTrue(connectFuture.isSuccess());
+        assertEquals(InetSocketAddress.createUnresolved("netty.io", 443), handler.destinationAddress());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testPooledHttpConnection() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+        LocalAddress proxyAddress = new LocalAddress("pool");
+        AtomicInteger accepted = new AtomicInteger();
+        Queue<String> requests = new LinkedBlockingQueue<>();
+        Channel serverChannel = null;
+        ProxyConnectionPool pool = null;
+        try {
+            serverChannel = new ServerBootstrap().channel(LocalServerChannel.class).group(group).childHandler(
+                    new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            accepted.incrementAndGet();
+                            ch.pipeline().addLast(new HttpConnectResponder(requests));
+                        }
+                    }).bind(proxyAddress).asStage().get();
+
+            Bootstrap bootstrap = new Bootstrap().channel(LocalChannel.class).group(group).handler(
+                    new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            // NOOP
+                        }
+                    });
+            pool = new ProxyConnectionPool(
+                    bootstrap, () -> new HttpProxyHandler(proxyAddress, null, false, true), 2);
+            pool.fill();
+            waitFor(pool, 2);
+            assertEquals(2, accepted.get());
+            assertTrue(requests.isEmpty());
+
+            Channel channel = pool.connect(InetSocketAddress.createUnresolved("netty.io", 443)).asStage().get();
+            assertTrue(channel.pipeline().get(HttpProxyHandler.class).isConnected());
+            assertEquals("CONNECT netty.io:443 HTTP/1.1", requests.poll());
+
+            // The pool is refilled in the background.
+            waitFor(pool, 2);
+            assertEquals(3, accepted.get());
+            channel.close().asStage().sync();
+        } finally {
+            if (pool != null) {
+                pool.close();
+            }
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            group.shutdownGracefully();
+        }
+    }
+
+    private static void waitFor(ProxyConnectionPool pool, int idleConnections) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pool.idleConnections() < idleConnections && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(idleConnections, pool.idleConnections());
+    }
+}
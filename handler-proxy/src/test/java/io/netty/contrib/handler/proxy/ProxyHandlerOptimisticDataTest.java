@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProxyHandlerOptimisticDataTest {
+
+    private static final String HELLO = "HELLO";
+    private static final String CONNECT = "CONNECT";
+    private static final String DATA = "DATA";
+
+    @Test
+    public void testPendingWritesWaitForConnectResponse() {
+        TestProxyHandler handler = new TestProxyHandler();
+        EmbeddedChannel ch = newChannel(handler);
+
+        Future<Void> dataFuture = ch.writeAndFlush(DATA);
+        assertEquals(HELLO, ch.readOutbound());
+        assertNull(ch.readOutbound());
+
+        ch.writeInbound(HELLO);
+        assertEquals(CONNECT, ch.readOutbound());
+        assertNull(ch.readOutbound());
+        assertFalse(dataFuture.isDone());
+
+        ch.writeInbound(CONNECT);
+        assertTrue(handler.isConnected());
+        assertEquals(DATA, ch.readOutbound());
+        assertTrue(dataFuture.isSuccess());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testPendingWritesAreSentBehindConnectRequest() {
+        TestProxyHandler handler = new TestProxyHandler();
+        handler.setOptimisticDataEnabled(true);
+        EmbeddedChannel ch = newChannel(handler);
+
+        Future<Void> dataFuture = ch.writeAndFlush(DATA);
+        assertEquals(HELLO, ch.readOutbound());
+        assertNull(ch.readOutbound());
+
+        ch.writeInbound(HELLO);
+        assertEquals(CONNECT, ch.readOutbound());
+        assertEquals(DATA, ch.readOutbound());
+        assertTrue(dataFuture.isSuccess());
+        assertFalse(handler.isConnected());
+        assertTrue(handler.encoderRemoved);
+
+        // Writes after the connect request are not queued anymore.
+        ch.writeAndFlush(DATA);
+        assertEquals(DATA, ch.readOutbound());
+
+        ch.writeInbound(CONNECT);
+        assertTrue(handler.isConnected());
+        assertNull(ch.readOutbound());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testRejectedConnectRequestFailsConnectFuture() {
+        TestProxyHandler handler = new TestProxyHandler();
+        handler.setOptimisticDataEnabled(true);
+        EmbeddedChannel ch = newChannel(handler);
+
+        ch.writeAndFlush(DATA);
+        ch.writeInbound(HELLO);
+        assertEquals(HELLO, ch.readOutbound());
+        assertEquals(CONNECT, ch.readOutbound());
+        assertEquals(DATA, ch.readOutbound());
+
+        assertThrows(ProxyConnectException.class, () -> ch.writeInbound("REJECTED"));
+        assertTrue(handler.connectFuture().isFailed());
+        assertFalse(ch.isActive());
+    }
+
+    private static EmbeddedChannel newChannel(TestProxyHandler handler) {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.pipeline().addLast(handler);
+        return ch;
+    }
+
+    /**
+     * A proxy handler whose handshake consists of a {@code HELLO} and a {@code CONNECT} request, each of which the
+     * proxy server answers by echoing it.
+     */
+    private static final class TestProxyHandler extends ProxyHandler {
+
+        boolean encoderRemoved;
+
+        TestProxyHandler() {
+            super(new InetSocketAddress("localhost", 1080));
+        }
+
+        @Override
+        public String protocol() {
+            return "test";
+        }
+
+        @Override
+        public String authScheme() {
+            return AUTH_NONE;
+        }
+
+        @Override
+        protected void addCodec(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        protected void removeEncoder(ChannelHandlerContext ctx) {
+            encoderRemoved = true;
+        }
+
+        @Override
+        protected void removeDecoder(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        protected Object newInitialMessage(ChannelHandlerContext ctx) {
+            return HELLO;
+        }
+
+        @Override
+        protected boolean isConnectRequest(Object msg) {
+            return CONNECT.equals(msg);
+        }
+
+        @Override
+        protected boolean handleResponse(ChannelHandlerContext ctx, Object response) throws Exception {
+            if (HELLO.equals(response)) {
+                sendToProxyServer(CONNECT);
+                return false;
+            }
+            if (CONNECT.equals(response)) {
+                return true;
+            }
+            throw new ProxyConnectException(exceptionMessage("rejected"));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelOption;
+import io.netty5.channel.WriteBufferWaterMark;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProxyHandlerPendingWriteTest {
+
+    @Test
+    public void testPendingWriteLimit() {
+        HttpProxyHandler handler = new HttpProxyHandler(new InetSocketAddress("localhost", 8080));
+        handler.setPendingWriteLimit(100);
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.pipeline().addLast(handler);
+        ch.releaseOutbound();
+
+        Future<Void> first = ch.writeAndFlush(preferredAllocator().copyOf(new byte[60]));
+        assertFalse(first.isDone());
+        assertEquals(60, handler.pendingWriteBytes());
+
+        // Would exceed the limit.
+        Future<Void> second = ch.writeAndFlush(preferredAllocator().copyOf(new byte[60]));
+        assertTrue(second.isFailed());
+        assertInstanceOf(IllegalStateException.class, second.cause());
+        assertEquals(60, handler.pendingWriteBytes());
+
+        Future<Void> third = ch.writeAndFlush(preferredAllocator().copyOf(new byte[40]));
+        assertFalse(third.isDone());
+        assertEquals(100, handler.pendingWriteBytes());
+        assertEquals(100, handler.peakPendingWriteBytes());
+
+        ch.close();
+        assertTrue(first.isFailed());
+        assertTrue(third.isFailed());
+        assertEquals(0, handler.pendingWriteBytes());
+        assertEquals(100, handler.peakPendingWriteBytes());
+        assertThrows(ProxyConnectException.class, ch::checkException);
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testPendingWritesAffectWritability() {
+        HttpProxyHandler handler = new HttpProxyHandler(new InetSocketAddress("localhost", 8080));
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.setOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(16, 32));
+        ch.pipeline().addLast(handler);
+        ch.releaseOutbound();
+        assertTrue(ch.isWritable());
+
+        ch.write(preferredAllocator().copyOf(new byte[64]));
+        assertEquals(64, handler.pendingWriteBytes());
+        assertFalse(ch.isWritable());
+
+        ch.close();
+        assertEquals(0, handler.pendingWriteBytes());
+        assertThrows(ProxyConnectException.class, ch::checkException);
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testWritabilityIsRestoredAfterHandshake() {
+        HttpProxyHandler handler = new HttpProxyHandler(new InetSocketAddress("localhost", 8080));
+        handler.setPendingWriteLimit(100);
+        List<Boolean> writabilityChanges = new ArrayList<>();
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.setOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(16, 32));
+        ch.pipeline().addLast(new ChannelHandler() {
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                writabilityChanges.add(ctx.channel().isWritable());
+                ctx.fireChannelWritabilityChanged();
+            }
+        });
+        ch.pipeline().addLast(handler);
+        ch.releaseOutbound();
+
+        Future<Void> first = ch.writeAndFlush(preferredAllocator().copyOf(new byte[60]));
+        Future<Void> second = ch.writeAndFlush(preferredAllocator().copyOf(new byte[40]));
+        Future<Void> rejected = ch.writeAndFlush(preferredAllocator().copyOf(new byte[1]));
+        assertTrue(rejected.isFailed());
+        assertEquals(100, handler.pendingWriteBytes());
+        assertFalse(ch.isWritable());
+        assertEquals(1, writabilityChanges.size());
+        assertFalse(writabilityChanges.get(0));
+
+        ch.writeInbound(preferredAllocator().copyOf("HTTP/1.1 200 OK\r\n\r\n".getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(handler.isConnected());
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertEquals(0, handler.pendingWriteBytes());
+        assertTrue(ch.isWritable());
+        assertEquals(2, writabilityChanges.size());
+        assertTrue(writabilityChanges.get(1));
+        ch.finishAndReleaseAll();
+    }
+}
@@ -371,6 +371,32 @@ public class ProxyHandlerTest {
                         "SOCKS5: timeout",
                         new Socks5ProxyHandler(deadSocks5Proxy.address())),
 
+                new SuccessTestItem(
+                        "Anonymous SOCKS5: successful pipelined connection",
+                        DESTINATION,
+                        true,
+                        new FlushCounter(),
+                        new Socks5ProxyHandler(anonSocks5Proxy.address(), null, null, true)),
+
+                new SuccessTestItem(
+                        "SOCKS5: successful pipelined connection",
+                        DESTINATION,
+                        true,
+                        new FlushCounter(),
+                        new Socks5ProxyHandler(socks5Proxy.address(), USERNAME, PASSWORD, true)),
+
+                new FailureTestItem(
+                        "SOCKS5: pipelined authentication failure",
+                        DESTINATION, "authStatus: FAILURE",
+                        new FlushCounter(),
+                        new Socks5ProxyHandler(socks5Proxy.address(), BAD_USERNAME, BAD_PASSWORD, true)),
+
+                new FailureTestItem(
+                        "SOCKS5: pipelined connection to anonymous server",
+                        DESTINATION, "unexpected authMethod: NO_AUTH",
+                        new FlushCounter(),
+                        new Socks5ProxyHandler(anonSocks5Proxy.address(), USERNAME, PASSWORD, true)),
+
                 // HTTP + HTTPS + SOCKS4 + SOCKS5
 
                 new SuccessTestItem(
@@ -569,6 +595,29 @@ public class ProxyHandlerTest {
         }
     }
 
+    /**
+     * Counts the flushes issued by the handlers behind it before the first response of the proxy server is received.
+     */
+    private static final class FlushCounter implements ChannelHandler {
+
+        volatile int flushesBeforeFirstRead;
+        private volatile boolean read;
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            if (!read) {
+                flushesBeforeFirstRead ++;
+            }
+            ctx.flush();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            read = true;
+            ctx.fireChannelRead(msg);
+        }
+    }
+
     private abstract static class TestItem {
         final String name;
         final InetSocketAddress destination;
@@ -611,6 +660,9 @@ public class ProxyHandlerTest {
                     ProxyHandler ph = (ProxyHandler) h;
                     assertTrue(ph.connectFuture().isDone());
                     assertEquals(success, ph.connectFuture().isSuccess());
+                } else if (h instanceof FlushCounter) {
+                    // A pipelining handler sends all its handshake messages with a single flush.
+                    assertEquals(1, ((FlushCounter) h).flushesBeforeFirstRead);
                 }
             }
         }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.channel.EventLoopGroup;
+import io.netty5.channel.MultithreadEventLoopGroup;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.channel.local.LocalHandler;
+import io.netty5.util.concurrent.EventExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProxyHandshakeTimerTest {
+
+    @Test
+    public void testTicksPerWheelIsRoundedUp() {
+        assertEquals(1, new ProxyHandshakeTimer(1, TimeUnit.MILLISECONDS, 1).ticksPerWheel());
+        assertEquals(4, new ProxyHandshakeTimer(1, TimeUnit.MILLISECONDS, 3).ticksPerWheel());
+        assertEquals(512, new ProxyHandshakeTimer().ticksPerWheel());
+        assertThrows(IllegalArgumentException.class, () -> new ProxyHandshakeTimer(0, TimeUnit.MILLISECONDS, 512));
+        assertThrows(IllegalArgumentException.class, () -> new ProxyHandshakeTimer(1, TimeUnit.MILLISECONDS, 0));
+    }
+
+    @Test
+    public void testTimeoutsExpireAfterTheirDeadline() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+        try {
+            EventExecutor executor = group.next();
+            // A small wheel, so that the longer timeouts take more than one rotation.
+            ProxyHandshakeTimer timer = new ProxyHandshakeTimer(5, TimeUnit.MILLISECONDS, 4);
+            CountDownLatch latch = new CountDownLatch(3);
+            AtomicInteger early = new AtomicInteger();
+            long start = System.nanoTime();
+            for (long delay : new long[] { 10, 50, 100 }) {
+                timer.newTimeout(executor, () -> {
+                    if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                        early.incrementAndGet();
+                    }
+                    latch.countDown();
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(0, early.get());
+            assertEquals(0, executor.submit(() -> timer.pendingTimeouts(executor)).asStage().get());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testCancelledTimeoutsDoNotExpire() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+        try {
+            EventExecutor executor = group.next();
+            ProxyHandshakeTimer timer = new ProxyHandshakeTimer(5, TimeUnit.MILLISECONDS, 16);
+            AtomicInteger expired = new AtomicInteger();
+            List<ProxyHandshakeTimer.Timeout> timeouts = executor.submit(() -> {
+                List<ProxyHandshakeTimer.Timeout> list = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    list.add(timer.newTimeout(executor, expired::incrementAndGet, 20, TimeUnit.MILLISECONDS));
+                }
+                assertEquals(1000, timer.pendingTimeouts(executor));
+                for (int i = 0; i < 1000; i += 2) {
+                    list.get(i).cancel();
+                }
+                assertEquals(500, timer.pendingTimeouts(executor));
+                return list;
+            }).asStage().get();
+
+            Thread.sleep(200);
+            assertEquals(500, expired.get());
+            for (int i = 0; i < timeouts.size(); i++) {
+                ProxyHandshakeTimer.Timeout timeout = timeouts.get(i);
+                assertEquals(i % 2 == 0, timeout.isCancelled());
+                assertEquals(i % 2 != 0, timeout.isExpired());
+            }
+            assertEquals(0, executor.submit(() -> timer.pendingTimeouts(executor)).asStage().get());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testConnectTimeout() throws Exception {
+        HttpProxyHandler handler = new HttpProxyHandler(new InetSocketAddress("localhost", 8080));
+        handler.setConnectTimeoutMillis(20);
+        handler.setHandshakeTimer(new ProxyHandshakeTimer(5, TimeUnit.MILLISECONDS, 16));
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.pipeline().addLast(handler);
+        ch.releaseOutbound();
+
+        Thread.sleep(100);
+        ch.runPendingTasks();
+        assertThrows(ProxyConnectException.class, ch::checkException);
+        assertTrue(handler.connectFuture().isFailed());
+        assertTrue(handler.connectFuture().cause().getMessage().endsWith("timeout"));
+        assertFalse(ch.isActive());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.bootstrap.Bootstrap;
+import io.netty5.bootstrap.ServerBootstrap;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelInitializer;
+import io.netty5.channel.EventLoopGroup;
+import io.netty5.channel.MultithreadEventLoopGroup;
+import io.netty5.channel.local.LocalAddress;
+import io.netty5.channel.local.LocalChannel;
+import io.netty5.channel.local.LocalHandler;
+import io.netty5.channel.local.LocalServerChannel;
+import io.netty5.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RacingProxyConnectorTest {
+
+    private static final InetSocketAddress DESTINATION = InetSocketAddress.createUnresolved("netty.io", 443);
+
+    private final LocalAddress slowProxy = new LocalAddress("slowProxy");
+    private final LocalAddress fastProxy = new LocalAddress("fastProxy");
+    private final LocalAddress noProxy = new LocalAddress("noProxy");
+    private final Queue<String> requests = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Channel> slowChildren = new LinkedBlockingQueue<>();
+    private final List<Channel> serverChannels = new ArrayList<>();
+    private EventLoopGroup group;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+        serverChannels.add(new ServerBootstrap().channel(LocalServerChannel.class).group(group).childHandler(
+                new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        slowChildren.add(ch);
+                        ch.pipeline().addLast(UnresponsiveHandler.INSTANCE);
+                    }
+                }).bind(slowProxy).asStage().get());
+        serverChannels.add(new ServerBootstrap().channel(LocalServerChannel.class).group(group).childHandler(
+                new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpConnectResponder(requests));
+                    }
+                }).bind(fastProxy).asStage().get());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (Channel serverChannel : serverChannels) {
+            serverChannel.close();
+        }
+        group.shutdownGracefully();
+    }
+
+    @Test
+    public void testSlowProxyIsOvertaken() throws Exception {
+        RacingProxyConnector connector = newConnector(Arrays.asList(slowProxy, fastProxy), 50);
+
+        Channel channel = connector.connect(DESTINATION).asStage().get(5, TimeUnit.SECONDS);
+        assertEquals(fastProxy, channel.remoteAddress());
+        assertTrue(channel.pipeline().get(HttpProxyHandler.class).isConnected());
+        assertEquals("CONNECT netty.io:443 HTTP/1.1", requests.poll());
+
+        // The attempt via the slow proxy is cancelled.
+        Channel slowChild = slowChildren.poll(5, TimeUnit.SECONDS);
+        assertNotNull(slowChild);
+        slowChild.closeFuture().asStage().get(5, TimeUnit.SECONDS);
+        channel.close().asStage().sync();
+    }
+
+    @Test
+    public void testFailedProxyIsSkippedWithoutDelay() throws Exception {
+        RacingProxyConnector connector = newConnector(Arrays.asList(noProxy, fastProxy), 60000);
+
+        Channel channel = connector.connect(DESTINATION).asStage().get(5, TimeUnit.SECONDS);
+        assertEquals(fastProxy, channel.remoteAddress());
+        channel.close().asStage().sync();
+    }
+
+    @Test
+    public void testAllProxiesFail() {
+        RacingProxyConnector connector = newConnector(Arrays.asList(noProxy, new LocalAddress("noProxy2")), 50);
+
+        Future<Channel> future = connector.connect(DESTINATION);
+        assertThrows(ExecutionException.class, () -> future.asStage().get(5, TimeUnit.SECONDS));
+        assertTrue(future.isFailed());
+    }
+
+    private RacingProxyConnector newConnector(List<LocalAddress> proxyAddresses, long staggerDelayMillis) {
+        Bootstrap bootstrap = new Bootstrap().channel(LocalChannel.class).group(group).handler(new ChannelHandler() {
+            @Override
+            public boolean isSharable() {
+                return true;
+            }
+        });
+        return new RacingProxyConnector(bootstrap, proxyAddresses,
+                                        proxyAddress -> new HttpProxyHandler(proxyAddress, null, false, true),
+                                        staggerDelayMillis);
+    }
+}
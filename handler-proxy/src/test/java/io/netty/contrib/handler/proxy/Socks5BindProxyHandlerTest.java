@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.Channel;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Socks5BindProxyHandlerTest {
+
+    private static final InetSocketAddress PROXY_ADDRESS = new InetSocketAddress("127.0.0.1", 1080);
+    private static final InetSocketAddress EXPECTED_PEER_ADDRESS = new InetSocketAddress("10.0.0.2", 0);
+
+    private static final byte[] BIND_REPLY = { 5, 0, 0, 1, 0, 0, 0, 0, 0x10, 0x00 };
+    private static final byte[] PEER_REPLY = { 5, 0, 0, 1, 10, 0, 0, 2, 0x1F, (byte) 0x90 };
+
+    @Test
+    public void testTwoReplies() throws Exception {
+        Socks5BindProxyHandler handler = new Socks5BindProxyHandler(PROXY_ADDRESS);
+        EmbeddedChannel ch = newChannel(handler);
+
+        Future<Channel> connectFuture = handler.connectToDestination(EXPECTED_PEER_ADDRESS);
+        try (Buffer commandRequest = ch.readOutbound()) {
+            assertEquals(5, commandRequest.getByte(commandRequest.readerOffset()));
+            assertEquals(2, commandRequest.getByte(commandRequest.readerOffset() + 1));
+        }
+
+        ch.writeInbound(preferredAllocator().copyOf(BIND_REPLY));
+        // An all-zero address is replaced with the address of the proxy server.
+        assertEquals(new InetSocketAddress("127.0.0.1", 4096), handler.bindAddressFuture().getNow());
+        assertFalse(handler.peerAddressFuture().isDone());
+        assertFalse(connectFuture.isDone());
+
+        // Writes wait for the peer, rather than being sent behind the BIND request.
+        Future<Void> writeFuture = ch.writeAndFlush(preferredAllocator().copyOf(new byte[] { 42 }));
+        assertNull(ch.readOutbound());
+
+        ch.writeInbound(preferredAllocator().copyOf(PEER_REPLY));
+        assertEquals(new InetSocketAddress("10.0.0.2", 8080), handler.peerAddressFuture().getNow());
+        assertTrue(connectFuture.isSuccess());
+        assertTrue(writeFuture.isSuccess());
+        try (Buffer data = ch.readOutbound()) {
+            assertEquals(42, data.getByte(data.readerOffset()));
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testRepliesInSingleRead() throws Exception {
+        Socks5BindProxyHandler handler = new Socks5BindProxyHandler(PROXY_ADDRESS);
+        EmbeddedChannel ch = newChannel(handler);
+
+        Future<Channel> connectFuture = handler.connectToDestination(EXPECTED_PEER_ADDRESS);
+        ch.readOutbound().close();
+
+        byte[] replies = new byte[BIND_REPLY.length + PEER_REPLY.length + 1];
+        System.arraycopy(BIND_REPLY, 0, replies, 0, BIND_REPLY.length);
+        System.arraycopy(PEER_REPLY, 0, replies, BIND_REPLY.length, PEER_REPLY.length);
+        replies[replies.length - 1] = 42;
+        ch.writeInbound(preferredAllocator().copyOf(replies));
+
+        assertTrue(handler.bindAddressFuture().isSuccess());
+        assertTrue(handler.peerAddressFuture().isSuccess());
+        assertTrue(connectFuture.isSuccess());
+        try (Buffer data = ch.readInbound()) {
+            assertEquals(1, data.readableBytes());
+            assertEquals(42, data.getByte(data.readerOffset()));
+        }
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testFailedReplyFailsFutures() throws Exception {
+        Socks5BindProxyHandler handler = new Socks5BindProxyHandler(PROXY_ADDRESS);
+        EmbeddedChannel ch = newChannel(handler);
+
+        handler.connectToDestination(EXPECTED_PEER_ADDRESS);
+        ch.readOutbound().close();
+        ch.writeInbound(preferredAllocator().copyOf(BIND_REPLY));
+        assertTrue(handler.bindAddressFuture().isSuccess());
+
+        // TTL expired: nobody has connected in time.
+        assertThrows(ProxyConnectException.class, () -> ch.writeInbound(
+                preferredAllocator().copyOf(new byte[] { 5, 6, 0, 1, 0, 0, 0, 0, 0, 0 })));
+        assertInstanceOf(ProxyConnectException.class, handler.peerAddressFuture().cause());
+        assertTrue(handler.connectFuture().isFailed());
+        assertFalse(ch.isActive());
+    }
+
+    private static EmbeddedChannel newChannel(Socks5BindProxyHandler handler) throws Exception {
+        handler.setPreNegotiated();
+        EmbeddedChannel ch = new EmbeddedChannel();
+        ch.pipeline().addLast(handler);
+        try (Buffer initialRequest = ch.readOutbound()) {
+            assertEquals(3, initialRequest.readableBytes());
+        }
+        ch.writeInbound(preferredAllocator().copyOf(new byte[] { 5, 0 }));
+        assertTrue(handler.negotiatedFuture().isSuccess());
+        return ch;
+    }
+}
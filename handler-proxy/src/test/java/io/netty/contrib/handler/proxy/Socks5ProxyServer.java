@@ -24,16 +24,14 @@ import io.netty.contrib.handler.codec.socksx.v5.DefaultSocks5PasswordAuthRespons
 import io.netty.contrib.handler.codec.socksx.v5.Socks5AddressType;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5AuthMethod;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandRequest;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandRequestDecoder;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandResponse;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandStatus;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5CommandType;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialRequest;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5InitialRequestDecoder;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthRequest;
-import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthRequestDecoder;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5PasswordAuthStatus;
 import io.netty.contrib.handler.codec.socksx.v5.Socks5ServerEncoder;
+import io.netty.contrib.handler.codec.socksx.v5.Socks5ServerHandshakeDecoder;
 import io.netty5.handler.codec.LineBasedFrameDecoder;
 import java.nio.charset.StandardCharsets;
 import io.netty5.util.internal.SocketUtils;
@@ -64,13 +62,13 @@ final class Socks5ProxyServer extends ProxyServer {
         ChannelPipeline p = ch.pipeline();
         switch (testMode) {
         case INTERMEDIARY:
-            p.addLast(DECODER, new Socks5InitialRequestDecoder());
             p.addLast(ENCODER, Socks5ServerEncoder.DEFAULT);
+            p.addLast(DECODER, new Socks5ServerHandshakeDecoder());
             p.addLast(new Socks5IntermediaryHandler());
             break;
         case TERMINAL:
-            p.addLast(DECODER, new Socks5InitialRequestDecoder());
             p.addLast(ENCODER, Socks5ServerEncoder.DEFAULT);
+            p.addLast(DECODER, new Socks5ServerHandshakeDecoder());
             p.addLast(new Socks5TerminalHandler());
             break;
         case UNRESPONSIVE:
@@ -81,25 +79,21 @@ final class Socks5ProxyServer extends ProxyServer {
 
     boolean authenticate(ChannelHandlerContext ctx, Object msg) {
         if (username == null) {
-            ctx.pipeline().replace(DECODER, DECODER, new Socks5CommandRequestDecoder());
             ctx.write(new DefaultSocks5InitialResponse(Socks5AuthMethod.NO_AUTH));
             return true;
         }
 
         if (msg instanceof Socks5InitialRequest) {
-            ctx.pipeline().replace(DECODER, DECODER, new Socks5PasswordAuthRequestDecoder());
             ctx.write(new DefaultSocks5InitialResponse(Socks5AuthMethod.PASSWORD));
             return false;
         }
 
         Socks5PasswordAuthRequest req = (Socks5PasswordAuthRequest) msg;
         if (req.username().equals(username) && req.password().equals(password)) {
-            ctx.pipeline().replace(DECODER, DECODER, new Socks5CommandRequestDecoder());
             ctx.write(new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.SUCCESS));
             return true;
         }
 
-        ctx.pipeline().replace(DECODER, DECODER, new Socks5PasswordAuthRequestDecoder());
         ctx.write(new DefaultSocks5PasswordAuthResponse(Socks5PasswordAuthStatus.FAILURE));
         return false;
     }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.contrib.handler.proxy;
+
+import io.netty5.bootstrap.Bootstrap;
+import io.netty5.bootstrap.ServerBootstrap;
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.ChannelInitializer;
+import io.netty5.channel.EventLoopGroup;
+import io.netty5.channel.MultithreadEventLoopGroup;
+import io.netty5.channel.embedded.EmbeddedChannel;
+import io.netty5.channel.local.LocalAddress;
+import io.netty5.channel.local.LocalChannel;
+import io.netty5.channel.local.LocalHandler;
+import io.netty5.channel.local.LocalServerChannel;
+import io.netty5.channel.socket.DatagramPacket;
+import io.netty5.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty5.buffer.DefaultBufferAllocators.preferredAllocator;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Socks5UdpAssociateHandlerTest {
+
+    private static final InetSocketAddress RELAY_ADDRESS = new InetSocketAddress("10.0.0.1", 5353);
+    private static final InetSocketAddress DNS_SERVER_ADDRESS = new InetSocketAddress("10.0.0.9", 53);
+    private static final InetSocketAddress LOCAL_ADDRESS = new InetSocketAddress("127.0.0.1", 10053);
+
+    @Test
+    public void testDatagramsAreRelayed() throws Exception {
+        EventLoopGroup group = new MultithreadEventLoopGroup(1, LocalHandler.newFactory());
+        LocalAddress proxyAddress = new LocalAddress("udp-associate");
+        Channel serverChannel = null;
+        try {
+            serverChannel = new ServerBootstrap().channel(LocalServerChannel.class).group(group).childHandler(
+                    new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(new UdpAssociateResponder());
+                        }
+                    }).bind(proxyAddress).asStage().get();
+
+            Bootstrap bootstrap = new Bootstrap().channel(LocalChannel.class).group(group);
+            Socks5UdpAssociateHandler handler = new Socks5UdpAssociateHandler(bootstrap, proxyAddress);
+            EmbeddedChannel ch = new EmbeddedChannel(handler);
+
+            // Written before the relay address is known, so held back.
+            Future<Void> writeFuture = ch.writeAndFlush(
+                    new DatagramPacket(preferredAllocator().copyOf("query".getBytes(US_ASCII)), DNS_SERVER_ADDRESS));
+            assertNull(ch.readOutbound());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!handler.relayAddressFuture().isDone() && System.nanoTime() < deadline) {
+                ch.runPendingTasks();
+                Thread.sleep(10);
+            }
+            assertEquals(RELAY_ADDRESS, handler.relayAddressFuture().getNow());
+            assertTrue(writeFuture.isSuccess());
+
+            try (DatagramPacket packet = ch.readOutbound()) {
+                assertEquals(RELAY_ADDRESS, packet.recipient());
+                byte[] encoded = new byte[packet.content().readableBytes()];
+                packet.content().readBytes(encoded, 0, encoded.length);
+                assertArrayEquals(new byte[] { 0, 0, 0, 1, 10, 0, 0, 9, 0, 53, 'q', 'u', 'e', 'r', 'y' }, encoded);
+            }
+
+            byte[] reply = { 0, 0, 0, 1, 10, 0, 0, 9, 0, 53, 'a', 'n', 's' };
+            ch.writeInbound(new DatagramPacket(preferredAllocator().copyOf(reply), LOCAL_ADDRESS, RELAY_ADDRESS));
+            try (DatagramPacket packet = ch.readInbound()) {
+                assertEquals(DNS_SERVER_ADDRESS, packet.sender());
+                assertEquals("ans", packet.content().toString(US_ASCII));
+            }
+
+            // Datagrams which do not come from the relay are dropped.
+            ch.writeInbound(new DatagramPacket(preferredAllocator().copyOf(reply), LOCAL_ADDRESS, DNS_SERVER_ADDRESS));
+            assertNull(ch.readInbound());
+
+            assertFalse(ch.finish());
+        } finally {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            group.shutdownGracefully();
+        }
+    }
+
+    /**
+     * Answers the initial request without authentication, and the UDP ASSOCIATE request with {@link #RELAY_ADDRESS}.
+     */
+    private static final class UdpAssociateResponder implements ChannelHandler {
+
+        private boolean initialRequestReceived;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try (Buffer request = (Buffer) msg) {
+                if (!initialRequestReceived) {
+                    initialRequestReceived = true;
+                    ctx.writeAndFlush(ctx.bufferAllocator().copyOf(new byte[] { 5, 0 }));
+                } else {
+                    // The request carries the UDP ASSOCIATE command.
+                    assertEquals(3, request.getByte(request.readerOffset() + 1));
+                    ctx.writeAndFlush(ctx.bufferAllocator().copyOf(
+                            new byte[] { 5, 0, 0, 1, 10, 0, 0, 1, 0x14, (byte) 0xe9 }));
+                }
+            }
+        }
+    }
+}